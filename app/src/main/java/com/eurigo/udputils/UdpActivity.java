@@ -14,6 +14,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.blankj.utilcode.util.NetworkUtils;
 import com.blankj.utilcode.util.TimeUtils;
 import com.blankj.utilcode.util.ToastUtils;
+import com.eurigo.udplibrary.MainThreadDispatcher;
 import com.eurigo.udplibrary.UdpUtils;
 import com.google.android.material.button.MaterialButton;
 
@@ -38,10 +39,13 @@ public class UdpActivity extends AppCompatActivity implements
         super.onCreate(savedInstanceState);
         setContentView(R.layout.udp_receive_activity);
         initView();
+        // 接收回调批量切换到主线程，onReceived中可以直接更新UI
+        UdpUtils.getInstance().setDispatcher(new MainThreadDispatcher());
         mAdapter.addDataAndScroll("本机WiFi地址: " + NetworkUtils.getIpAddressByWifi());
         mAdapter.addDataAndScroll("本机IPV4地址: " + NetworkUtils.getIPAddress(true));
-        mAdapter.addDataAndScroll("本机广播地址: " + UdpUtils.getInstance().getBroadcastHost(this));
+        mAdapter.addDataAndScroll("本机广播地址: " + UdpUtils.getInstance().getSubnetBroadcastAddress());
         mAdapter.addDataAndScroll("本机子网广播地址: " + UdpUtils.getInstance().getSubnetBroadcastAddress());
+        mAdapter.addDataAndScroll("广播网卡: " + UdpUtils.getInstance().getNetworkInterface());
         NetworkUtils.registerNetworkStatusChangedListener(this);
     }
 
@@ -124,38 +128,41 @@ public class UdpActivity extends AppCompatActivity implements
 
     @Override
     public void onDisconnected() {
+        UdpUtils.getInstance().onNetworkChanged();
         if (isStartUdp) {
-            mAdapter.addDataAndScroll("网络已断开，停止UDP传输");
-            UdpUtils.getInstance().stopUdpSocket();
-            btnReceive.setText("开始接收");
-            isStartUdp = false;
+            // 不停止UDP，网络恢复后重新绑定即可，无需重建线程和回调
+            mAdapter.addDataAndScroll("网络已断开，等待网络恢复");
         }
     }
 
     @Override
     public void onConnected(NetworkUtils.NetworkType networkType) {
-        if (!isStartUdp) {
-            UdpUtils.getInstance().setUdpPort(9090);
-            UdpUtils.getInstance().setReceiveListener(this);
-            UdpUtils.getInstance().startUdpSocket();
-            mAdapter.addDataAndScroll("网络已连接，开始UDP传输，接听接口为：" + UdpUtils.getInstance().getCurrentPort());
-            mAdapter.addDataAndScroll("本机WiFi地址:  " + NetworkUtils.getIpAddressByWifi());
-            mAdapter.addDataAndScroll("本机Ipv4地址:  " + NetworkUtils.getIPAddress(true));
-            mAdapter.addDataAndScroll("本机广播地址:  " + UdpUtils.getInstance().getBroadcastHost(this));
-            btnReceive.setText("停止接收");
-            isStartUdp = true;
+        if (isStartUdp) {
+            // 网络切换后只替换Socket，线程、回调和待发送消息都保留
+            if (UdpUtils.getInstance().rebindUdpSocket()) {
+                mAdapter.addDataAndScroll("网络已切换，UDP已重新绑定");
+                mAdapter.addDataAndScroll("本机广播地址:  " + UdpUtils.getInstance().getSubnetBroadcastAddress());
+            }
+            return;
         }
+        // 网络切换后网卡和广播地址可能变化，清空缓存
+        UdpUtils.getInstance().onNetworkChanged();
+        UdpUtils.getInstance().setUdpPort(9090);
+        UdpUtils.getInstance().setReceiveListener(this);
+        UdpUtils.getInstance().startUdpSocket();
+        mAdapter.addDataAndScroll("网络已连接，开始UDP传输，接听接口为：" + UdpUtils.getInstance().getCurrentPort());
+        mAdapter.addDataAndScroll("本机WiFi地址:  " + NetworkUtils.getIpAddressByWifi());
+        mAdapter.addDataAndScroll("本机Ipv4地址:  " + NetworkUtils.getIPAddress(true));
+        mAdapter.addDataAndScroll("本机广播地址:  " + UdpUtils.getInstance().getSubnetBroadcastAddress());
+        mAdapter.addDataAndScroll("广播网卡:  " + UdpUtils.getInstance().getNetworkInterface());
+        btnReceive.setText("停止接收");
+        isStartUdp = true;
     }
 
     @Override
     public void onReceived(String data) {
-        runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                mAdapter.addDataAndScroll(TimeUtils.getNowString()
-                        .concat("\n接收到数据>>>".concat(data)));
-            }
-        });
+        mAdapter.addDataAndScroll(TimeUtils.getNowString()
+                .concat("\n接收到数据>>>".concat(data)));
     }
 
     @Override
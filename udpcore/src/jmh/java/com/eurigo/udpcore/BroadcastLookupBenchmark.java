@@ -0,0 +1,39 @@
+package com.eurigo.udpcore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Eurigo
+ * desc   : 广播地址查询开销，每次发送广播都会执行一次，对比缓存命中与网络变化后重新解析
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BroadcastLookupBenchmark {
+
+    private UdpEndpoint endpoint;
+
+    @Setup
+    public void setUp() {
+        endpoint = new UdpEndpoint();
+    }
+
+    @Benchmark
+    public String subnetBroadcastAddress() {
+        return endpoint.getSubnetBroadcastAddress();
+    }
+
+    @Benchmark
+    public String subnetBroadcastAddressAfterNetworkChange() {
+        endpoint.onNetworkChanged();
+        return endpoint.getSubnetBroadcastAddress();
+    }
+}
@@ -0,0 +1,64 @@
+package com.eurigo.udpcore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Eurigo
+ * desc   : sendMessage(Map)的Json编码与Json接收回调的解析开销，不经过Socket
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class JsonCodecBenchmark {
+
+    @Param({"4", "32"})
+    public int fieldCount;
+
+    private Map<String, Object> map;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() {
+        map = new LinkedHashMap<>();
+        for (int i = 0; i < fieldCount; i++) {
+            switch (i % 4) {
+                case 0:
+                    map.put("name" + i, "value-" + i);
+                    break;
+                case 1:
+                    map.put("count" + i, i * 1000L);
+                    break;
+                case 2:
+                    map.put("ratio" + i, i / 3.0);
+                    break;
+                default:
+                    map.put("flag" + i, i % 2 == 0);
+                    break;
+            }
+        }
+        encoded = ByteBuffer.wrap(JsonWriter.encode(map)).asReadOnlyBuffer();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return JsonWriter.encode(map);
+    }
+
+    @Benchmark
+    public Map<String, Object> decode() {
+        encoded.rewind();
+        return JsonReader.parseObject(encoded);
+    }
+}
@@ -0,0 +1,138 @@
+package com.eurigo.udpcore;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Eurigo
+ * desc   : 本机回环收发吞吐，分数为发送入队速率，received为同一时间内接收端实际回调的数量，
+ * 两者的差值即为丢包（接收缓冲区溢出）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class LoopbackThroughputBenchmark {
+
+    private static final int RECEIVE_PORT = 19090;
+    private static final int SEND_PORT = 19091;
+
+    @Param({"BLOCKING", "SELECTOR"})
+    public ReceiveMode receiveMode;
+
+    /**
+     * BYTES：字节级回调，STRING：文本回调（每个包解码为String）
+     */
+    @Param({"BYTES", "STRING"})
+    public String listener;
+
+    @Param({"64", "1024"})
+    public int payloadSize;
+
+    private final AtomicLong received = new AtomicLong();
+    private UdpEndpoint receiver;
+    private UdpEndpoint sender;
+    private byte[] bytes;
+    private String text;
+    private Map<String, Object> map;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        UdpEndpoint.Builder builder = new UdpEndpoint.Builder()
+                .setPort(RECEIVE_PORT)
+                .setReceiveMode(receiveMode)
+                .setSocketBufferSizes(4 * 1024 * 1024, 0);
+        if ("BYTES".equals(listener)) {
+            builder.setByteReceiveListener(new OnUdpByteReceiveListener() {
+                @Override
+                public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                    received.incrementAndGet();
+                }
+            });
+        } else {
+            builder.setReceiveListener(new OnUdpReceiveListener() {
+                @Override
+                public void onReceived(String data) {
+                    received.incrementAndGet();
+                }
+            });
+        }
+        receiver = builder.build();
+        receiver.startUdpSocket();
+
+        sender = new UdpEndpoint.Builder()
+                .setHost("127.0.0.1")
+                .setPort(SEND_PORT)
+                .build();
+        sender.startUdpSocket();
+        // 监听端口与发送目标端口共用同一配置，打开后再切换目标端口
+        sender.setUdpPort(RECEIVE_PORT);
+
+        StringBuilder sb = new StringBuilder(payloadSize);
+        for (int i = 0; i < payloadSize; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        text = sb.toString();
+        bytes = text.getBytes();
+        map = new HashMap<>();
+        map.put("type", "status");
+        map.put("seq", 1);
+        map.put("payload", text.substring(0, Math.max(0, payloadSize - 40)));
+        // 等待接收线程就绪
+        Thread.sleep(100);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sender.stopUdpSocket();
+        receiver.stopUdpSocket();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        private LoopbackThroughputBenchmark benchmark;
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void reset(LoopbackThroughputBenchmark benchmark) {
+            this.benchmark = benchmark;
+            this.start = benchmark.received.get();
+        }
+
+        public long received() {
+            return benchmark == null ? 0 : benchmark.received.get() - start;
+        }
+    }
+
+    @Benchmark
+    public SendStatus sendBytes(Counters counters) {
+        return sender.sendMessage(bytes);
+    }
+
+    @Benchmark
+    public SendStatus sendString(Counters counters) {
+        return sender.sendMessage(text);
+    }
+
+    @Benchmark
+    public SendStatus sendMap(Counters counters) {
+        return sender.sendMessage(map);
+    }
+}
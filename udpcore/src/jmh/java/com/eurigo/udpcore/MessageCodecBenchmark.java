@@ -0,0 +1,137 @@
+package com.eurigo.udpcore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Eurigo
+ * desc   : 同样内容的消息，二进制编解码与Json编解码的开销对比，不经过Socket
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MessageCodecBenchmark {
+
+    static final class Status {
+        long seq;
+        int battery;
+        boolean isCharging;
+        String name;
+        double latitude;
+        double longitude;
+    }
+
+    static final UdpCodec<Status> CODEC = new UdpCodec<Status>() {
+        @Override
+        public void encode(Status message, BinaryWriter writer) {
+            writer.writeInt(1, message.seq)
+                    .writeInt(2, message.battery)
+                    .writeBool(3, message.isCharging)
+                    .writeString(4, message.name)
+                    .writeDouble(5, message.latitude)
+                    .writeDouble(6, message.longitude);
+        }
+
+        @Override
+        public Status decode(BinaryReader reader) {
+            Status status = new Status();
+            int field;
+            while ((field = reader.nextField()) != 0) {
+                switch (field) {
+                    case 1:
+                        status.seq = reader.readInt();
+                        break;
+                    case 2:
+                        status.battery = (int) reader.readInt();
+                        break;
+                    case 3:
+                        status.isCharging = reader.readBool();
+                        break;
+                    case 4:
+                        status.name = reader.readString();
+                        break;
+                    case 5:
+                        status.latitude = reader.readDouble();
+                        break;
+                    case 6:
+                        status.longitude = reader.readDouble();
+                        break;
+                    default:
+                        reader.skipField();
+                        break;
+                }
+            }
+            return status;
+        }
+    };
+
+    private final MessageRegistry registry = new MessageRegistry();
+    private Status status;
+    private Map<String, Object> map;
+    private ByteBuffer binaryFrame;
+    private ByteBuffer jsonFrame;
+    private InetSocketAddress source;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        status = new Status();
+        status.seq = 1024;
+        status.battery = 87;
+        status.isCharging = true;
+        status.name = "device-01";
+        status.latitude = 22.5431;
+        status.longitude = 114.0579;
+        map = new LinkedHashMap<>();
+        map.put("seq", status.seq);
+        map.put("battery", status.battery);
+        map.put("isCharging", status.isCharging);
+        map.put("name", status.name);
+        map.put("latitude", status.latitude);
+        map.put("longitude", status.longitude);
+
+        registry.register(1, Status.class, CODEC);
+        registry.setListener(Status.class, new OnUdpObjectReceiveListener<Status>() {
+            @Override
+            public void onReceived(Status object, InetSocketAddress source) {
+                blackhole.consume(object);
+            }
+        });
+        binaryFrame = ByteBuffer.wrap(registry.encode(status)).asReadOnlyBuffer();
+        jsonFrame = ByteBuffer.wrap(JsonWriter.encode(map)).asReadOnlyBuffer();
+        source = new InetSocketAddress("127.0.0.1", 9090);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return registry.encode(status);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return JsonWriter.encode(map);
+    }
+
+    @Benchmark
+    public void decodeBinary() {
+        binaryFrame.rewind();
+        registry.onReceived(binaryFrame, source);
+    }
+
+    @Benchmark
+    public Map<String, Object> decodeJson() {
+        jsonFrame.rewind();
+        return JsonReader.parseObject(jsonFrame);
+    }
+}
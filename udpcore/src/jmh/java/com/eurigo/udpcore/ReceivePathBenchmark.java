@@ -0,0 +1,69 @@
+package com.eurigo.udpcore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Eurigo
+ * desc   : 不经过Socket，只比较回调路径：字节级回调直接读取只读视图，文本回调需拷贝并解码为String
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ReceivePathBenchmark {
+
+    @Param({"64", "1024"})
+    public int payloadSize;
+
+    private PacketBuffer buffer;
+    private InetSocketAddress source;
+    private OnUdpByteReceiveListener byteListener;
+    private OnUdpByteReceiveListener stringListener;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        this.blackhole = blackhole;
+        buffer = new PacketBuffer(payloadSize);
+        for (int i = 0; i < payloadSize; i++) {
+            buffer.buffer().put((byte) ('a' + i % 26));
+        }
+        buffer.buffer().flip();
+        source = new InetSocketAddress("127.0.0.1", 9090);
+        byteListener = new OnUdpByteReceiveListener() {
+            @Override
+            public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                // 原地解析：读取首尾字节代表协议头解析
+                blackhole.consume(data.get(data.position()));
+                blackhole.consume(data.get(data.limit() - 1));
+            }
+        };
+        stringListener = new StringReceiveAdapter(new OnUdpReceiveListener() {
+            @Override
+            public void onReceived(String data) {
+                blackhole.consume(data);
+            }
+        });
+    }
+
+    @Benchmark
+    public void bytePath() {
+        byteListener.onReceived(buffer.readOnlyView(), source);
+    }
+
+    @Benchmark
+    public void stringPath() {
+        stringListener.onReceived(buffer.readOnlyView(), source);
+    }
+}
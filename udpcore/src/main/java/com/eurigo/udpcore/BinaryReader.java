@@ -0,0 +1,173 @@
+package com.eurigo.udpcore;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * @author Eurigo
+ * desc   : {@link BinaryWriter}对应的解码器，直接读取接收缓冲区，按线程复用。
+ * 使用方式：循环调用{@link #nextField()}，按字段号读取，不认识的字段调用{@link #skipField()}跳过，
+ * 新旧版本的消息定义可以互通
+ */
+public final class BinaryReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private byte[] scratch = new byte[64];
+    private ByteBuffer in;
+    private int wireType;
+
+    BinaryReader() {
+    }
+
+    void reset(ByteBuffer data) {
+        this.in = data;
+        this.wireType = -1;
+        if (data == null && scratch.length > 4096) {
+            scratch = new byte[64];
+        }
+    }
+
+    /**
+     * @return 下一个字段号，读到末尾时返回0
+     */
+    public int nextField() {
+        if (!in.hasRemaining()) {
+            return 0;
+        }
+        long tag = readVarint();
+        wireType = (int) (tag & 0x7);
+        int field = (int) (tag >>> 3);
+        if (field <= 0) {
+            throw new IllegalArgumentException("Invalid field number: " + field);
+        }
+        return field;
+    }
+
+    public long readInt() {
+        checkWireType(BinaryWriter.WIRE_VARINT);
+        return readVarint();
+    }
+
+    public long readSInt() {
+        checkWireType(BinaryWriter.WIRE_VARINT);
+        long v = readVarint();
+        return v >>> 1 ^ -(v & 1);
+    }
+
+    public boolean readBool() {
+        return readInt() != 0;
+    }
+
+    public float readFloat() {
+        checkWireType(BinaryWriter.WIRE_FIXED32);
+        return Float.intBitsToFloat(readFixed32());
+    }
+
+    public double readDouble() {
+        checkWireType(BinaryWriter.WIRE_FIXED64);
+        long low = readFixed32() & 0xFFFFFFFFL;
+        long high = readFixed32() & 0xFFFFFFFFL;
+        return Double.longBitsToDouble(high << 32 | low);
+    }
+
+    public String readString() {
+        int length = readLength();
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        // 只读视图无法直接访问数组，先拷贝到复用的临时数组
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length << 1)];
+        }
+        in.get(scratch, 0, length);
+        return new String(scratch, 0, length, UTF_8);
+    }
+
+    public byte[] readBytes() {
+        byte[] value = new byte[readLength()];
+        in.get(value);
+        return value;
+    }
+
+    public <T> T readMessage(UdpCodec<T> codec) {
+        int length = readLength();
+        int limit = in.limit();
+        int end = in.position() + length;
+        in.limit(end);
+        try {
+            return codec.decode(this);
+        } finally {
+            in.limit(limit);
+            in.position(end);
+        }
+    }
+
+    /**
+     * 跳过当前字段的值
+     */
+    public void skipField() {
+        switch (wireType) {
+            case BinaryWriter.WIRE_VARINT:
+                readVarint();
+                break;
+            case BinaryWriter.WIRE_FIXED64:
+                skip(8);
+                break;
+            case BinaryWriter.WIRE_LENGTH:
+                skip(readLength());
+                break;
+            case BinaryWriter.WIRE_FIXED32:
+                skip(4);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported wire type: " + wireType);
+        }
+    }
+
+    long readVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!in.hasRemaining()) {
+                throw new IllegalArgumentException("Truncated varint");
+            }
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private int readFixed32() {
+        if (in.remaining() < 4) {
+            throw new IllegalArgumentException("Truncated fixed32");
+        }
+        return in.get() & 0xFF | (in.get() & 0xFF) << 8 | (in.get() & 0xFF) << 16 | (in.get() & 0xFF) << 24;
+    }
+
+    private int readLength() {
+        checkWireType(BinaryWriter.WIRE_LENGTH);
+        long length = readVarint();
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Invalid length: " + length);
+        }
+        return (int) length;
+    }
+
+    private void skip(int length) {
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException("Truncated field");
+        }
+        in.position(in.position() + length);
+    }
+
+    private void checkWireType(int expected) {
+        if (wireType != expected) {
+            throw new IllegalArgumentException("Wire type " + wireType + " does not match " + expected);
+        }
+    }
+}
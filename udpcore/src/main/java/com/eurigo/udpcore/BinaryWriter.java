@@ -0,0 +1,212 @@
+package com.eurigo.udpcore;
+
+import java.util.Arrays;
+
+/**
+ * @author Eurigo
+ * desc   : 紧凑二进制编码，字段格式与protobuf兼容：[varint标签(字段号<<3|类型)][值]，
+ * 整数为varint，有符号整数为zigzag varint，字符串/字节/嵌套消息带varint长度前缀。
+ * 由{@link UdpCodec#encode}按线程复用，不要在回调之外持有
+ */
+public final class BinaryWriter {
+
+    static final int WIRE_VARINT = 0;
+    static final int WIRE_FIXED64 = 1;
+    static final int WIRE_LENGTH = 2;
+    static final int WIRE_FIXED32 = 5;
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int count;
+
+    BinaryWriter() {
+    }
+
+    /**
+     * 整数，负数固定占10字节，可能为负时使用{@link #writeSInt}
+     */
+    public BinaryWriter writeInt(int field, long value) {
+        writeTag(field, WIRE_VARINT);
+        writeVarint(value);
+        return this;
+    }
+
+    /**
+     * 有符号整数，zigzag编码后绝对值小的负数同样只占1~2字节
+     */
+    public BinaryWriter writeSInt(int field, long value) {
+        writeTag(field, WIRE_VARINT);
+        writeVarint(value << 1 ^ value >> 63);
+        return this;
+    }
+
+    public BinaryWriter writeBool(int field, boolean value) {
+        writeTag(field, WIRE_VARINT);
+        writeRaw(value ? 1 : 0);
+        return this;
+    }
+
+    public BinaryWriter writeFloat(int field, float value) {
+        writeTag(field, WIRE_FIXED32);
+        writeFixed32(Float.floatToIntBits(value));
+        return this;
+    }
+
+    public BinaryWriter writeDouble(int field, double value) {
+        writeTag(field, WIRE_FIXED64);
+        long bits = Double.doubleToLongBits(value);
+        writeFixed32((int) bits);
+        writeFixed32((int) (bits >>> 32));
+        return this;
+    }
+
+    /**
+     * 字符串按UTF-8编码，null不写入，解码端读不到该字段即为null
+     */
+    public BinaryWriter writeString(int field, String value) {
+        if (value == null) {
+            return this;
+        }
+        writeTag(field, WIRE_LENGTH);
+        int length = value.length();
+        // 先按最大长度预留，写完后再回填实际长度
+        int reserved = varintSize(length * 3L);
+        ensureCapacity(reserved + length * 3);
+        int prefix = count;
+        int pos = prefix + reserved;
+        byte[] b = buf;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                b[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                b[pos++] = (byte) (0xC0 | c >> 6);
+                b[pos++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                b[pos++] = (byte) (0xF0 | cp >> 18);
+                b[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                b[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                b[pos++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                b[pos++] = '?';
+            } else {
+                b[pos++] = (byte) (0xE0 | c >> 12);
+                b[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                b[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        finishLength(prefix, reserved, pos);
+        return this;
+    }
+
+    /**
+     * 字节数组，null不写入
+     */
+    public BinaryWriter writeBytes(int field, byte[] value) {
+        if (value == null) {
+            return this;
+        }
+        writeTag(field, WIRE_LENGTH);
+        writeVarint(value.length);
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, buf, count, value.length);
+        count += value.length;
+        return this;
+    }
+
+    /**
+     * 嵌套消息，null不写入
+     */
+    public <T> BinaryWriter writeMessage(int field, T value, UdpCodec<T> codec) {
+        if (value == null) {
+            return this;
+        }
+        writeTag(field, WIRE_LENGTH);
+        // 长度未知，先预留1字节，超过127字节时再整体后移
+        ensureCapacity(1);
+        int prefix = count++;
+        codec.encode(value, this);
+        finishLength(prefix, 1, count);
+        return this;
+    }
+
+    /**
+     * 在prefix处回填长度前缀，数据位于prefix+reserved~end，实际前缀长度与预留不同时整体移动数据
+     */
+    private void finishLength(int prefix, int reserved, int end) {
+        int start = prefix + reserved;
+        int length = end - start;
+        int size = varintSize(length);
+        if (size != reserved) {
+            count = end;
+            ensureCapacity(Math.max(0, size - reserved));
+            System.arraycopy(buf, start, buf, prefix + size, length);
+        }
+        count = prefix;
+        writeVarint(length);
+        count += length;
+    }
+
+    void writeTag(int field, int wireType) {
+        if (field <= 0 || field > 0x1FFFFFFF) {
+            throw new IllegalArgumentException("Invalid field number: " + field);
+        }
+        writeVarint((long) field << 3 | wireType);
+    }
+
+    void writeVarint(long value) {
+        ensureCapacity(10);
+        byte[] b = buf;
+        int pos = count;
+        while ((value & ~0x7FL) != 0) {
+            b[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        b[pos++] = (byte) value;
+        count = pos;
+    }
+
+    private void writeFixed32(int value) {
+        ensureCapacity(4);
+        buf[count++] = (byte) value;
+        buf[count++] = (byte) (value >> 8);
+        buf[count++] = (byte) (value >> 16);
+        buf[count++] = (byte) (value >> 24);
+    }
+
+    void writeRaw(int b) {
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+    }
+
+    void reset() {
+        count = 0;
+        if (buf.length > MAX_RETAINED_CAPACITY) {
+            buf = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    private void ensureCapacity(int extra) {
+        int required = count + extra;
+        if (required > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(required, buf.length << 1));
+        }
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,37 @@
+package com.eurigo.udpcore;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * @author Eurigo
+ * desc   : 接收缓冲池，池空时临时创建，池满时多余的缓冲区交给GC
+ */
+final class ByteBufferPool {
+
+    private final int bufferSize;
+    private final ArrayBlockingQueue<PacketBuffer> pool;
+
+    ByteBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.pool = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    PacketBuffer acquire() {
+        PacketBuffer buffer = pool.poll();
+        if (buffer == null) {
+            return new PacketBuffer(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    void release(PacketBuffer buffer) {
+        if (buffer != null && buffer.buffer().capacity() == bufferSize) {
+            pool.offer(buffer);
+        }
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,192 @@
+package com.eurigo.udpcore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * @author Eurigo
+ * desc   : 小消息合并，只在发送线程中使用。发往同一目标的小消息先写入该目标的缓冲区，
+ * 缓冲区将满或最早的消息等待超过合并延迟时作为一个数据报发出，类似Nagle算法。
+ * 合并帧：[标记(1)]{[长度(2)][消息]}，缓冲区中只有一条消息时按原样发送。
+ * 一个数据报只合并同一优先级的消息，发出时按该优先级标记
+ */
+final class Coalescer {
+
+    /**
+     * 合并帧中单条消息的长度前缀
+     */
+    static final int LENGTH_PREFIX = 2;
+
+    interface Output {
+        /**
+         * 写出数据报
+         *
+         * @param destination 目标
+         * @param datagram    数据报，position~limit为有效数据
+         * @param priority    合并的消息的优先级
+         * @return 是否写入，发送缓冲区已满时为false
+         */
+        boolean write(DestinationCache.Destination destination, ByteBuffer datagram, SendPriority priority)
+                throws IOException;
+    }
+
+    static final class Buffer {
+        final Coalescer owner;
+        final DestinationCache.Destination destination;
+        final ByteBuffer data;
+        SendPriority priority;
+        int count;
+        long deadlineNanos;
+        /**
+         * 已合并的异步发送的完成回调，数据报发出后依次回调
+         */
+        final ArrayList<OnSendCompleteListener> callbacks = new ArrayList<>();
+
+        Buffer(Coalescer owner, DestinationCache.Destination destination, int size) {
+            this.owner = owner;
+            this.destination = destination;
+            this.data = ByteBuffer.allocate(size);
+        }
+    }
+
+    private final int maxSize;
+    private final long delayNanos;
+    private final Output output;
+    private final UdpMetrics metrics;
+    /**
+     * 有待发消息的缓冲区，按第一条消息的加入时间排序，到期时间随之递增
+     */
+    private final ArrayDeque<Buffer> pending = new ArrayDeque<>();
+
+    /**
+     * @param maxSize    合并后数据报的最大长度
+     * @param delayNanos 消息最多等待的时间，为0时只合并发送线程一次取出的积压消息
+     */
+    Coalescer(int maxSize, long delayNanos, Output output, UdpMetrics metrics) {
+        this.maxSize = maxSize;
+        this.delayNanos = delayNanos;
+        this.output = output;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param length 消息长度
+     * @return 是否可以合并，过大的消息直接发送
+     */
+    boolean accepts(int length) {
+        return 1 + LENGTH_PREFIX + length <= maxSize;
+    }
+
+    /**
+     * 加入目标的缓冲区，放不下或优先级不同时先发出已有的消息
+     */
+    void add(DestinationCache.Destination destination, UdpSender.SendTask task, long now) throws IOException {
+        byte[] message = task.data;
+        SendPriority priority = task.priority;
+        Buffer buffer = destination.coalesceBuffer;
+        // 目标缓存跨越多次打开UDP，上次的缓冲区不再使用
+        if (buffer == null || buffer.owner != this) {
+            buffer = new Buffer(this, destination, maxSize);
+            destination.coalesceBuffer = buffer;
+        }
+        ByteBuffer data = buffer.data;
+        if (buffer.count > 0
+                && (data.remaining() < LENGTH_PREFIX + message.length || buffer.priority != priority)) {
+            pending.remove(buffer);
+            flush(buffer);
+        }
+        if (buffer.count == 0) {
+            data.clear();
+            data.put(Frames.COALESCED);
+            buffer.priority = priority;
+            buffer.deadlineNanos = now + delayNanos;
+            pending.add(buffer);
+        }
+        data.putShort((short) message.length).put(message);
+        buffer.count++;
+        if (task.callback != null) {
+            buffer.callbacks.add(task.callback);
+        }
+    }
+
+    /**
+     * 先发出目标中已合并的消息，保证直接发送的大消息不会越过之前的小消息
+     */
+    void flush(DestinationCache.Destination destination) throws IOException {
+        Buffer buffer = destination.coalesceBuffer;
+        if (buffer != null && buffer.owner == this && buffer.count > 0) {
+            pending.remove(buffer);
+            flush(buffer);
+        }
+    }
+
+    /**
+     * 发出所有到期的缓冲区
+     *
+     * @return 距离下一个缓冲区到期的纳秒数，没有待发消息时返回Long.MAX_VALUE
+     */
+    long flushExpired(long now) throws IOException {
+        Buffer buffer;
+        while ((buffer = pending.peek()) != null) {
+            long wait = buffer.deadlineNanos - now;
+            if (wait > 0) {
+                return wait;
+            }
+            pending.poll();
+            flush(buffer);
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * 发送线程退出时丢弃所有缓冲区，与发送队列中未发送的消息一样回调{@link SendResult#DROPPED}
+     *
+     * @return 丢弃的消息数量
+     */
+    int dropAll() {
+        int dropped = 0;
+        Buffer buffer;
+        while ((buffer = pending.poll()) != null) {
+            dropped += buffer.count;
+            buffer.count = 0;
+            complete(buffer, SendResult.DROPPED);
+        }
+        return dropped;
+    }
+
+    private void flush(Buffer buffer) throws IOException {
+        ByteBuffer data = buffer.data;
+        int count = buffer.count;
+        buffer.count = 0;
+        data.flip();
+        if (count == 1) {
+            // 只有一条消息时去掉帧头，与未开启合并时完全相同
+            data.position(1 + LENGTH_PREFIX);
+        } else {
+            metrics.coalescedDatagrams.increment();
+            metrics.coalescedMessages.add(count);
+        }
+        SendResult result;
+        try {
+            result = output.write(buffer.destination, data, buffer.priority)
+                    ? SendResult.SENT : SendResult.failed(new IOException("send buffer full"));
+        } catch (IOException | RuntimeException e) {
+            complete(buffer, SendResult.failed(e));
+            throw e;
+        }
+        complete(buffer, result);
+    }
+
+    private static void complete(Buffer buffer, SendResult result) {
+        ArrayList<OnSendCompleteListener> callbacks = buffer.callbacks;
+        if (callbacks.isEmpty()) {
+            return;
+        }
+        for (int i = 0, size = callbacks.size(); i < size; i++) {
+            UdpSender.SendTask.complete(callbacks.get(i), result);
+        }
+        callbacks.clear();
+    }
+}
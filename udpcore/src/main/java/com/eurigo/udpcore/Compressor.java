@@ -0,0 +1,151 @@
+package com.eurigo.udpcore;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @author Eurigo
+ * desc   : 载荷压缩，帧格式：[标记(1)][varint原始长度][raw deflate数据]。
+ * Deflater/Inflater按线程复用，避免每条消息创建本地压缩上下文
+ */
+final class Compressor {
+
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    /**
+     * deflate的理论最大压缩率约为1032:1，声明的原始长度超出该比例的帧不可能合法
+     */
+    static final int MAX_DEFLATE_RATIO = 1032;
+
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            // 延迟优先，压缩率与BEST_COMPRESSION相差不大
+            return new Deflater(Deflater.BEST_SPEED, true);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<>();
+    /**
+     * 输出已满时探测是否还有多余数据，内容无意义，多线程共用
+     */
+    private static final byte[] PROBE = new byte[1];
+
+    private Compressor() {
+    }
+
+    /**
+     * @param data 原始载荷
+     * @return 压缩帧，压缩后不比原始数据小时返回null
+     */
+    static byte[] compress(byte[] data) {
+        // 输出不超过原始长度才有意义，以此作为输出缓冲区大小
+        int capacity = data.length;
+        if (capacity < 16) {
+            return null;
+        }
+        byte[] out = scratch(capacity);
+        int pos = 0;
+        out[pos++] = Frames.COMPRESSED;
+        int length = data.length;
+        while ((length & ~0x7F) != 0) {
+            out[pos++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out[pos++] = (byte) length;
+
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        while (!deflater.finished() && pos < capacity) {
+            pos += deflater.deflate(out, pos, capacity - pos);
+        }
+        if (!deflater.finished()) {
+            return null;
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    /**
+     * @param data      压缩帧，读取后position移动到limit
+     * @param maxLength 允许的最大原始长度，防止恶意数据占用过多内存
+     * @return 原始载荷
+     * @throws IllegalArgumentException 帧格式错误或数据损坏
+     */
+    static byte[] decompress(ByteBuffer data, int maxLength) {
+        data.get();
+        long length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (!data.hasRemaining() || shift > 28) {
+                throw new IllegalArgumentException("Malformed compressed header");
+            }
+            byte b = data.get();
+            length |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        if (length > maxLength) {
+            throw new IllegalArgumentException("Decompressed length " + length + " exceeds " + maxLength);
+        }
+        int count = data.remaining();
+        // 原始长度来自对端，按压缩率校验后再分配输出数组
+        if (length > (long) count * MAX_DEFLATE_RATIO) {
+            throw new IllegalArgumentException("Decompressed length " + length + " implausible for " + count + " bytes");
+        }
+        byte[] input;
+        int offset;
+        if (data.hasArray()) {
+            input = data.array();
+            offset = data.arrayOffset() + data.position();
+        } else {
+            // 只读视图无法直接访问数组，先拷贝到复用的临时数组
+            input = scratch(count);
+            offset = 0;
+            data.get(input, 0, count);
+        }
+        data.position(data.limit());
+
+        byte[] out = new byte[(int) length];
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(input, offset, count);
+        int pos = 0;
+        try {
+            while (pos < out.length) {
+                int n = inflater.inflate(out, pos, out.length - pos);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary() || inflater.finished())) {
+                    break;
+                }
+                pos += n;
+            }
+            if (pos != out.length || (!inflater.finished() && inflater.inflate(PROBE) != 0)) {
+                throw new IllegalArgumentException("Decompressed length mismatch");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed data", e);
+        }
+        return out;
+    }
+
+    private static byte[] scratch(int capacity) {
+        byte[] scratch = SCRATCH.get();
+        if (scratch == null || scratch.length < capacity) {
+            scratch = new byte[capacity];
+            if (capacity <= MAX_RETAINED_CAPACITY) {
+                SCRATCH.set(scratch);
+            }
+        }
+        return scratch;
+    }
+}
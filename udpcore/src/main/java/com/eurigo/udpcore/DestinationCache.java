@@ -0,0 +1,273 @@
+package com.eurigo.udpcore;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Eurigo
+ * desc   : 目标地址LRU缓存，避免每次发送都解析域名/IP，
+ * 可选为高频目标建立已connect的通道，发送时内核无需重复查路由。
+ * 已connect的通道绑定本地监听端口，内核把该对端发来的数据包交给它，因此注册到{@link ConnectedReceiver}读取
+ */
+final class DestinationCache {
+
+    interface ConnectedReceiver {
+        /**
+         * @return 本地监听端口，未打开UDP时为0
+         */
+        int getLocalPort();
+
+        /**
+         * 读取已connect的通道，数据与监听端口收到的一样回调
+         */
+        void register(DatagramChannel channel) throws IOException;
+
+        /**
+         * 停止读取并关闭通道
+         */
+        void unregister(DatagramChannel channel);
+    }
+
+    /**
+     * 命中次数达到该值后，若开启了connected发送则为该目标建立已connect的通道
+     */
+    static final int CONNECT_THRESHOLD = 32;
+
+    private final int capacity;
+    private final ConnectedReceiver receiver;
+    private final LinkedHashMap<String, Destination> cache;
+    private volatile boolean connectedSendEnabled = false;
+    /**
+     * 最近一次命中的目标，连续向同一目标发送时无需拼接key
+     */
+    private volatile Destination last;
+
+    DestinationCache(int capacity, ConnectedReceiver receiver) {
+        this.capacity = capacity;
+        this.receiver = receiver;
+        this.cache = new LinkedHashMap<String, Destination>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Destination> eldest) {
+                if (size() > DestinationCache.this.capacity) {
+                    eldest.getValue().dispose();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取目标，未缓存时解析并加入缓存
+     *
+     * @param host 目标地址
+     * @param port 目标端口
+     * @return 已解析的目标
+     * @throws UnknownHostException 无法解析
+     */
+    Destination get(String host, int port) throws UnknownHostException {
+        Destination destination = last;
+        if (destination != null && !destination.isClosed
+                && destination.port == port && destination.host.equals(host)) {
+            destination.onHit(connectedSendEnabled ? receiver : null);
+            return destination;
+        }
+        String key = host + ":" + port;
+        synchronized (cache) {
+            destination = cache.get(key);
+        }
+        if (destination == null) {
+            // 解析可能较慢，不在锁内进行
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getByName(host), port);
+            destination = new Destination(host, port, address);
+            synchronized (cache) {
+                Destination exist = cache.get(key);
+                if (exist == null) {
+                    cache.put(key, destination);
+                } else {
+                    destination = exist;
+                }
+            }
+        }
+        last = destination;
+        destination.onHit(connectedSendEnabled ? receiver : null);
+        return destination;
+    }
+
+    /**
+     * 开启后高频目标使用已connect的独立通道发送，该通道与监听Socket绑定同一端口
+     */
+    void setConnectedSendEnabled(boolean enabled) {
+        connectedSendEnabled = enabled;
+        if (!enabled) {
+            closeConnectedChannels();
+        }
+    }
+
+    boolean isConnectedSendEnabled() {
+        return connectedSendEnabled;
+    }
+
+    /**
+     * 网络变化后清空缓存，关闭所有已connect的通道
+     */
+    void invalidate() {
+        List<Destination> removed;
+        synchronized (cache) {
+            removed = new ArrayList<>(cache.values());
+            cache.clear();
+            last = null;
+        }
+        for (Destination destination : removed) {
+            destination.dispose();
+        }
+    }
+
+    private void closeConnectedChannels() {
+        synchronized (cache) {
+            for (Destination destination : cache.values()) {
+                destination.close();
+            }
+        }
+    }
+
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    static final class Destination {
+
+        final String host;
+        final int port;
+        final InetSocketAddress address;
+        /**
+         * 组播目标经由组播发送通道，不建立connected通道
+         */
+        final boolean isMulticast;
+        /**
+         * 小消息合并缓冲区，仅在发送线程中使用，见{@link Coalescer}
+         */
+        Coalescer.Buffer coalesceBuffer;
+        /**
+         * 该目标的限速令牌桶，仅在发送线程中使用，见{@link Pacer}
+         */
+        Pacer.Buckets rateBuckets;
+        /**
+         * 等待该目标令牌的消息及可发送时间，仅在发送线程中使用，见{@link Pacer#defer}
+         */
+        ArrayDeque<UdpSender.SendTask> pacedTasks;
+        long pacedReadyNanos;
+        /**
+         * 已connect通道当前的IP_TOS，仅在发送线程中使用，重新connect后恢复为0
+         */
+        int connectedTrafficClass;
+        private int hits;
+        private volatile DatagramChannel connectedChannel;
+        private ConnectedReceiver receiver;
+        private volatile boolean isClosed = false;
+
+        Destination(String host, int port, InetSocketAddress address) {
+            this.host = host;
+            this.port = port;
+            this.address = address;
+            this.isMulticast = address.getAddress().isMulticastAddress();
+        }
+
+        /**
+         * 命中计数不要求精确，无需同步
+         *
+         * @param receiver 读取已connect通道的接收方，为null表示未开启
+         */
+        void onHit(ConnectedReceiver receiver) {
+            if (receiver == null || isMulticast || connectedChannel != null || isClosed) {
+                return;
+            }
+            if (++hits >= CONNECT_THRESHOLD) {
+                connect(receiver);
+            }
+        }
+
+        private synchronized void connect(ConnectedReceiver receiver) {
+            if (connectedChannel != null || isClosed) {
+                return;
+            }
+            int localPort = receiver.getLocalPort();
+            if (localPort <= 0) {
+                hits = 0;
+                return;
+            }
+            DatagramChannel channel = null;
+            try {
+                // 绑定到去往该目标的本机地址而不是通配地址，否则广播会被该通道重复收到
+                InetAddress localAddress = routeSource();
+                channel = DatagramChannel.open();
+                channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                SocketOptionsCompat.setReusePort(channel);
+                channel.socket().setBroadcast(true);
+                channel.bind(new InetSocketAddress(localAddress, localPort));
+                channel.connect(address);
+                receiver.register(channel);
+                connectedTrafficClass = 0;
+                this.receiver = receiver;
+                connectedChannel = channel;
+            } catch (IOException e) {
+                // 无法connect时继续使用普通发送
+                hits = 0;
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        /**
+         * connect一个临时通道，由内核选路得到发往该目标使用的本机地址
+         */
+        private InetAddress routeSource() throws IOException {
+            DatagramChannel probe = DatagramChannel.open();
+            try {
+                probe.connect(address);
+                return ((InetSocketAddress) probe.getLocalAddress()).getAddress();
+            } finally {
+                probe.close();
+            }
+        }
+
+        /**
+         * @return 已connect的通道，未建立时返回null
+         */
+        DatagramChannel getConnectedChannel() {
+            return connectedChannel;
+        }
+
+        synchronized void close() {
+            DatagramChannel channel = connectedChannel;
+            connectedChannel = null;
+            hits = 0;
+            if (channel != null) {
+                receiver.unregister(channel);
+            }
+        }
+
+        /**
+         * 彻底废弃，不再建立connected通道
+         */
+        synchronized void dispose() {
+            isClosed = true;
+            close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author Eurigo
+ * desc   : 重复消息过滤，每个发送方一个定长环形数组记录最近的消息ID及收到时间，
+ * 超过时间窗口的ID视为未见过。发送方数量有上限，按最近使用淘汰，内存占用固定
+ */
+final class DuplicateFilter {
+
+    private static final class Ring {
+        final long[] ids;
+        final long[] times;
+        int size;
+        int next;
+
+        Ring(int capacity) {
+            ids = new long[capacity];
+            times = new long[capacity];
+        }
+
+        /**
+         * @return 时间窗口内已收到过该ID时返回true，否则记录该ID
+         */
+        synchronized boolean seen(long id, long now, long windowNanos) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id && now - times[i] <= windowNanos) {
+                    return true;
+                }
+            }
+            ids[next] = id;
+            times[next] = now;
+            next = (next + 1) % ids.length;
+            size = Math.max(size, next == 0 ? ids.length : next);
+            return false;
+        }
+    }
+
+    private final int idsPerSource;
+    private final long windowNanos;
+    private final Map<InetSocketAddress, Ring> rings;
+
+    /**
+     * @param maxSources   最多记录的发送方数量
+     * @param idsPerSource 每个发送方记录的最近消息ID数量
+     * @param windowNanos  时间窗口，纳秒
+     */
+    DuplicateFilter(final int maxSources, int idsPerSource, long windowNanos) {
+        this.idsPerSource = idsPerSource;
+        this.windowNanos = windowNanos;
+        this.rings = new LinkedHashMap<InetSocketAddress, Ring>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InetSocketAddress, Ring> eldest) {
+                return size() > maxSources;
+            }
+        };
+    }
+
+    /**
+     * @param source 发送方地址
+     * @param id     消息ID
+     * @return 是否为重复消息
+     */
+    boolean isDuplicate(InetSocketAddress source, long id, long now) {
+        Ring ring;
+        synchronized (rings) {
+            ring = rings.get(source);
+            if (ring == null) {
+                ring = new Ring(idsPerSource);
+                rings.put(source, ring);
+            }
+        }
+        return ring.seen(id, now, windowNanos);
+    }
+}
@@ -0,0 +1,85 @@
+package com.eurigo.udpcore;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author Eurigo
+ * desc   : 发送端分片，只在发送线程中使用，复用同一个缓冲区拼装分片帧
+ */
+final class Fragmenter {
+
+    /**
+     * 分片总数使用无符号short表示
+     */
+    private static final int MAX_FRAGMENTS = 0xFFFF;
+
+    private final int fragmentSize;
+    private final int payloadSize;
+    private final ByteBuffer frame;
+    /**
+     * 从随机值开始递增，重启后不会与对端尚未重组完成的旧消息ID重复
+     */
+    private int nextMessageId = ThreadLocalRandom.current().nextInt();
+
+    /**
+     * @param fragmentSize 每个分片数据报的最大长度（含帧头）
+     */
+    Fragmenter(int fragmentSize) {
+        if (fragmentSize <= Frames.FRAGMENT_HEADER_LENGTH) {
+            throw new IllegalArgumentException("fragmentSize too small: " + fragmentSize);
+        }
+        this.fragmentSize = fragmentSize;
+        this.payloadSize = fragmentSize - Frames.FRAGMENT_HEADER_LENGTH;
+        this.frame = ByteBuffer.allocate(fragmentSize);
+    }
+
+    /**
+     * @param length 消息长度
+     * @return 是否需要分片
+     */
+    boolean needsFragment(int length) {
+        return length > fragmentSize;
+    }
+
+    /**
+     * @return 分配一个新的消息ID，同一消息的所有分片共用
+     */
+    int nextMessageId() {
+        return nextMessageId++;
+    }
+
+    /**
+     * @param length 消息长度
+     * @return 分片数量
+     */
+    int fragmentCount(int length) {
+        int count = (length + payloadSize - 1) / payloadSize;
+        if (count > MAX_FRAGMENTS) {
+            throw new IllegalArgumentException("message too large: " + length);
+        }
+        return count;
+    }
+
+    /**
+     * 拼装第index个分片，返回的缓冲区在下次调用前有效
+     *
+     * @return position~limit为完整的分片帧
+     */
+    ByteBuffer fragment(byte[] data, int messageId, int index, int count) {
+        int offset = index * payloadSize;
+        int length = Math.min(payloadSize, data.length - offset);
+        frame.clear();
+        frame.put(Frames.FRAGMENT)
+                .putInt(messageId)
+                .putShort((short) index)
+                .putShort((short) count)
+                .put(data, offset, length);
+        frame.flip();
+        return frame;
+    }
+
+    int getFragmentSize() {
+        return fragmentSize;
+    }
+}
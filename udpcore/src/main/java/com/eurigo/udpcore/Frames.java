@@ -0,0 +1,64 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : 内部帧类型标记，统一在此分配。
+ * 标记取值0xF5~0xFF在UTF-8中不会作为首字节出现，文本/Json消息不会被误判。
+ * 二进制消息可能以这些字节开头，接收端只在开启对应功能时解析，见{@link OnUdpByteReceiveListener}
+ */
+final class Frames {
+
+    /**
+     * 编解码帧：[标记(1)][varint类型ID][编码后的消息]，见{@link MessageRegistry}
+     */
+    static final byte CODEC = (byte) 0xF5;
+
+    /**
+     * 压缩帧：[标记(1)][varint原始长度][raw deflate数据]，见{@link Compressor}
+     */
+    static final byte COMPRESSED = (byte) 0xF6;
+
+    /**
+     * 分片帧：[标记(1)][消息ID(4)][分片序号(2)][分片总数(2)][数据]
+     */
+    static final byte FRAGMENT = (byte) 0xF7;
+    static final int FRAGMENT_HEADER_LENGTH = 9;
+
+    /**
+     * 可靠通道帧：[标记(1)][类型(1)]...，见{@link ReliableChannel}
+     */
+    static final byte RELIABLE = (byte) 0xF8;
+
+    /**
+     * 请求/响应帧：[标记(1)][类型(1)][关联ID(8)][数据]
+     */
+    static final byte REQUEST = (byte) 0xF9;
+    static final byte TYPE_REQUEST = 0;
+    static final byte TYPE_RESPONSE = 1;
+    static final int REQUEST_HEADER_LENGTH = 10;
+
+    /**
+     * 合并帧：[标记(1)]{[长度(2)][消息]}，见{@link Coalescer}
+     */
+    static final byte COALESCED = (byte) 0xFA;
+
+    /**
+     * 消息ID帧：[标记(1)][消息ID(8)][消息]，接收端按发送方和ID过滤重复消息，见{@link DuplicateFilter}
+     */
+    static final byte DEDUP = (byte) 0xFB;
+    static final int DEDUP_HEADER_LENGTH = 9;
+
+    /**
+     * 主题帧：[标记(1)][主题ID(2)][消息]，消息在主题头之后压缩，没有订阅时无需解压，见{@link TopicRouter}
+     */
+    static final byte TOPIC = (byte) 0xFC;
+    static final int TOPIC_HEADER_LENGTH = 3;
+
+    /**
+     * 对端发现帧：[标记(1)][类型(1)]...，见{@link PeerDiscovery}
+     */
+    static final byte DISCOVERY = (byte) 0xFD;
+
+    private Frames() {
+    }
+}
@@ -0,0 +1,281 @@
+package com.eurigo.udpcore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Eurigo
+ * desc   : 流式Json解析，直接从接收缓冲区读取UTF-8字节，不先拷贝为String，
+ * 对象解析为LinkedHashMap，数组为ArrayList，整数为Long（超出范围为Double），小数为Double
+ */
+final class JsonReader {
+
+    private static final int MAX_DEPTH = 64;
+
+    private static final ThreadLocal<JsonReader> READER = new ThreadLocal<JsonReader>() {
+        @Override
+        protected JsonReader initialValue() {
+            return new JsonReader();
+        }
+    };
+
+    private final StringBuilder text = new StringBuilder(64);
+    private ByteBuffer in;
+
+    private JsonReader() {
+    }
+
+    /**
+     * 解析Json对象，读取完成后data的position移动到limit
+     *
+     * @param data 数据包视图
+     * @return 解析结果
+     * @throws IllegalArgumentException 不是合法的Json对象
+     */
+    static Map<String, Object> parseObject(ByteBuffer data) {
+        JsonReader reader = READER.get();
+        reader.in = data;
+        try {
+            if (reader.nextToken() != '{') {
+                throw reader.error("expected '{'");
+            }
+            Map<String, Object> map = reader.readObject(0);
+            if (reader.in.hasRemaining() && reader.nextToken() != -1) {
+                throw reader.error("trailing data");
+            }
+            return map;
+        } finally {
+            reader.in = null;
+            if (reader.text.capacity() > 4096) {
+                reader.text.setLength(0);
+                reader.text.trimToSize();
+            }
+        }
+    }
+
+    /**
+     * @return 跳过空白后的下一个字节，已读到末尾时返回-1
+     */
+    private int nextToken() {
+        while (in.hasRemaining()) {
+            int b = in.get() & 0xFF;
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return b;
+            }
+        }
+        return -1;
+    }
+
+    private Map<String, Object> readObject(int depth) {
+        checkDepth(depth);
+        Map<String, Object> map = new LinkedHashMap<>();
+        int b = nextToken();
+        if (b == '}') {
+            return map;
+        }
+        while (true) {
+            if (b != '"') {
+                throw error("expected name");
+            }
+            String key = readString();
+            if (nextToken() != ':') {
+                throw error("expected ':'");
+            }
+            map.put(key, readValue(nextToken(), depth + 1));
+            b = nextToken();
+            if (b == '}') {
+                return map;
+            }
+            if (b != ',') {
+                throw error("expected ',' or '}'");
+            }
+            b = nextToken();
+        }
+    }
+
+    private List<Object> readArray(int depth) {
+        checkDepth(depth);
+        List<Object> list = new ArrayList<>();
+        int b = nextToken();
+        if (b == ']') {
+            return list;
+        }
+        while (true) {
+            list.add(readValue(b, depth + 1));
+            b = nextToken();
+            if (b == ']') {
+                return list;
+            }
+            if (b != ',') {
+                throw error("expected ',' or ']'");
+            }
+            b = nextToken();
+        }
+    }
+
+    private Object readValue(int b, int depth) {
+        switch (b) {
+            case '{':
+                return readObject(depth);
+            case '[':
+                return readArray(depth);
+            case '"':
+                return readString();
+            case 't':
+                expectLiteral("rue");
+                return Boolean.TRUE;
+            case 'f':
+                expectLiteral("alse");
+                return Boolean.FALSE;
+            case 'n':
+                expectLiteral("ull");
+                return null;
+            default:
+                if (b == '-' || (b >= '0' && b <= '9')) {
+                    return readNumber(b);
+                }
+                throw error("unexpected character");
+        }
+    }
+
+    private String readString() {
+        StringBuilder sb = text;
+        sb.setLength(0);
+        while (true) {
+            if (!in.hasRemaining()) {
+                throw error("unterminated string");
+            }
+            int b = in.get() & 0xFF;
+            if (b == '"') {
+                return sb.toString();
+            }
+            if (b == '\\') {
+                readEscape(sb);
+            } else if (b < 0x80) {
+                sb.append((char) b);
+            } else if (b >= 0xC2 && b < 0xE0) {
+                sb.append((char) ((b & 0x1F) << 6 | continuation()));
+            } else if (b >= 0xE0 && b < 0xF0) {
+                sb.append((char) ((b & 0x0F) << 12 | continuation() << 6 | continuation()));
+            } else if (b >= 0xF0 && b < 0xF5) {
+                int cp = (b & 0x07) << 18 | continuation() << 12 | continuation() << 6 | continuation();
+                sb.appendCodePoint(cp);
+            } else {
+                throw error("invalid UTF-8");
+            }
+        }
+    }
+
+    private int continuation() {
+        if (!in.hasRemaining()) {
+            throw error("truncated UTF-8");
+        }
+        int b = in.get() & 0xFF;
+        if ((b & 0xC0) != 0x80) {
+            throw error("invalid UTF-8");
+        }
+        return b & 0x3F;
+    }
+
+    private void readEscape(StringBuilder sb) {
+        if (!in.hasRemaining()) {
+            throw error("unterminated escape");
+        }
+        int b = in.get() & 0xFF;
+        switch (b) {
+            case '"':
+            case '\\':
+            case '/':
+                sb.append((char) b);
+                break;
+            case 'n':
+                sb.append('\n');
+                break;
+            case 'r':
+                sb.append('\r');
+                break;
+            case 't':
+                sb.append('\t');
+                break;
+            case 'b':
+                sb.append('\b');
+                break;
+            case 'f':
+                sb.append('\f');
+                break;
+            case 'u':
+                int c = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = in.hasRemaining() ? Character.digit(in.get(), 16) : -1;
+                    if (digit < 0) {
+                        throw error("invalid unicode escape");
+                    }
+                    c = c << 4 | digit;
+                }
+                sb.append((char) c);
+                break;
+            default:
+                throw error("invalid escape");
+        }
+    }
+
+    private Object readNumber(int first) {
+        StringBuilder sb = text;
+        sb.setLength(0);
+        sb.append((char) first);
+        boolean negative = first == '-';
+        // 按负数累加，Long.MIN_VALUE也不会溢出
+        long value = negative ? 0 : -(first - '0');
+        boolean integral = true;
+        boolean overflow = false;
+        while (in.hasRemaining()) {
+            int b = in.get(in.position()) & 0xFF;
+            if (b >= '0' && b <= '9') {
+                if (integral && !overflow) {
+                    if (value < (Long.MIN_VALUE + (b - '0')) / 10) {
+                        overflow = true;
+                    } else {
+                        value = value * 10 - (b - '0');
+                    }
+                }
+            } else if (b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-') {
+                integral = false;
+            } else {
+                break;
+            }
+            sb.append((char) in.get());
+        }
+        if (sb.length() == 1 && negative) {
+            throw error("invalid number");
+        }
+        if (integral && !overflow && (negative || value != Long.MIN_VALUE)) {
+            return negative ? value : -value;
+        }
+        try {
+            return Double.parseDouble(sb.toString());
+        } catch (NumberFormatException e) {
+            throw error("invalid number");
+        }
+    }
+
+    private void expectLiteral(String rest) {
+        for (int i = 0; i < rest.length(); i++) {
+            if (!in.hasRemaining() || in.get() != rest.charAt(i)) {
+                throw error("invalid literal");
+            }
+        }
+    }
+
+    private void checkDepth(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw error("nesting exceeds " + MAX_DEPTH);
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Malformed json at " + in.position() + ": " + message);
+    }
+}
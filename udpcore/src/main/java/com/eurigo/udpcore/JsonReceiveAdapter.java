@@ -0,0 +1,32 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * @author Eurigo
+ * desc   : 将字节级回调适配为{@link OnUdpJsonReceiveListener}
+ */
+final class JsonReceiveAdapter implements OnUdpByteReceiveListener {
+
+    private static final String TAG = "JsonReceiveAdapter";
+
+    private final OnUdpJsonReceiveListener listener;
+
+    JsonReceiveAdapter(OnUdpJsonReceiveListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+        Map<String, Object> json;
+        try {
+            json = JsonReader.parseObject(data);
+        } catch (IllegalArgumentException e) {
+            UdpLog.e(TAG, "drop packet from " + source + ": " + e.getMessage());
+            return;
+        }
+        listener.onReceived(json, source);
+    }
+}
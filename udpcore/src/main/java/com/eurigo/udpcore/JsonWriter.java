@@ -0,0 +1,245 @@
+package com.eurigo.udpcore;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * @author Eurigo
+ * desc   : 流式Json编码，直接把Map写成UTF-8字节，按线程复用缓冲区，
+ * 数字、布尔、null、嵌套Map、集合和数组保留Json类型，其余对象按String.valueOf写为字符串
+ */
+final class JsonWriter {
+
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * 编码过超大消息后不保留过大的缓冲区
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    /**
+     * 嵌套层数上限，防止循环引用导致栈溢出
+     */
+    private static final int MAX_DEPTH = 64;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = "null".getBytes();
+    private static final byte[] TRUE = "true".getBytes();
+    private static final byte[] FALSE = "false".getBytes();
+    private static final byte[] LONG_MIN = String.valueOf(Long.MIN_VALUE).getBytes();
+
+    private static final ThreadLocal<JsonWriter> WRITER = new ThreadLocal<JsonWriter>() {
+        @Override
+        protected JsonWriter initialValue() {
+            return new JsonWriter();
+        }
+    };
+
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int count;
+
+    private JsonWriter() {
+    }
+
+    /**
+     * 编码为Json字节，返回的数组长度即为消息长度，可直接交给发送队列
+     *
+     * @param map 数据Map
+     * @return UTF-8编码的Json
+     */
+    static byte[] encode(Map<?, ?> map) {
+        JsonWriter writer = WRITER.get();
+        writer.count = 0;
+        try {
+            writer.writeMap(map, 0);
+            return Arrays.copyOf(writer.buf, writer.count);
+        } finally {
+            if (writer.buf.length > MAX_RETAINED_CAPACITY) {
+                writer.buf = new byte[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    private void writeMap(Map<?, ?> map, int depth) {
+        checkDepth(depth);
+        writeByte('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!first) {
+                writeByte(',');
+            }
+            first = false;
+            writeString(String.valueOf(entry.getKey()));
+            writeByte(':');
+            writeValue(entry.getValue(), depth + 1);
+        }
+        writeByte('}');
+    }
+
+    private void writeValue(Object value, int depth) {
+        if (value == null) {
+            writeBytes(NULL);
+        } else if (value instanceof CharSequence) {
+            writeString((CharSequence) value);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                // Json不支持NaN和Infinity
+                writeBytes(NULL);
+            } else {
+                writeAscii(value.toString());
+            }
+        } else if (value instanceof BigInteger || value instanceof BigDecimal) {
+            writeAscii(value.toString());
+        } else if (value instanceof Boolean) {
+            writeBytes((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Map) {
+            writeMap((Map<?, ?>) value, depth);
+        } else if (value instanceof Iterable) {
+            checkDepth(depth);
+            writeByte('[');
+            boolean first = true;
+            for (Object item : (Iterable<?>) value) {
+                if (!first) {
+                    writeByte(',');
+                }
+                first = false;
+                writeValue(item, depth + 1);
+            }
+            writeByte(']');
+        } else if (value.getClass().isArray()) {
+            checkDepth(depth);
+            writeByte('[');
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeValue(Array.get(value, i), depth + 1);
+            }
+            writeByte(']');
+        } else {
+            writeString(String.valueOf(value));
+        }
+    }
+
+    private void writeString(CharSequence s) {
+        int length = s.length();
+        // 每个char最多编码为6字节（\\u00XX），提前扩容一次避免逐字节检查
+        ensureCapacity(length * 6 + 2);
+        byte[] b = buf;
+        int pos = count;
+        b[pos++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    b[pos++] = '\\';
+                }
+                b[pos++] = (byte) c;
+            } else if (c < 0x20) {
+                b[pos++] = '\\';
+                switch (c) {
+                    case '\n':
+                        b[pos++] = 'n';
+                        break;
+                    case '\r':
+                        b[pos++] = 'r';
+                        break;
+                    case '\t':
+                        b[pos++] = 't';
+                        break;
+                    case '\b':
+                        b[pos++] = 'b';
+                        break;
+                    case '\f':
+                        b[pos++] = 'f';
+                        break;
+                    default:
+                        b[pos++] = 'u';
+                        b[pos++] = '0';
+                        b[pos++] = '0';
+                        b[pos++] = HEX[c >> 4];
+                        b[pos++] = HEX[c & 0xF];
+                        break;
+                }
+            } else if (c < 0x800) {
+                b[pos++] = (byte) (0xC0 | c >> 6);
+                b[pos++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[pos++] = (byte) (0xF0 | cp >> 18);
+                b[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                b[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                b[pos++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符无法编码，与String.getBytes一致替换为'?'
+                b[pos++] = '?';
+            } else {
+                b[pos++] = (byte) (0xE0 | c >> 12);
+                b[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                b[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        b[pos++] = '"';
+        count = pos;
+    }
+
+    private void writeLong(long v) {
+        if (v == Long.MIN_VALUE) {
+            writeBytes(LONG_MIN);
+            return;
+        }
+        ensureCapacity(20);
+        if (v < 0) {
+            buf[count++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) {
+            digits++;
+        }
+        int pos = count + digits;
+        count = pos;
+        do {
+            buf[--pos] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+    }
+
+    private void writeAscii(String s) {
+        int length = s.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buf[count++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void writeByte(char c) {
+        ensureCapacity(1);
+        buf[count++] = (byte) c;
+    }
+
+    private void ensureCapacity(int extra) {
+        int required = count + extra;
+        if (required > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(required, buf.length << 1));
+        }
+    }
+
+    private static void checkDepth(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Json nesting exceeds " + MAX_DEPTH);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.eurigo.udpcore;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Eurigo
+ * desc   : 纳秒级延迟直方图，按2的幂划分桶，记录只需一次原子累加，
+ * 分位数精度为所在桶的上界（误差不超过2倍），足够观察尾延迟的数量级
+ */
+final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        // 桶i记录[2^i, 2^(i+1))，0记入桶0
+        int index = BUCKETS - 1 - Long.numberOfLeadingZeros(nanos);
+        buckets.incrementAndGet(index < 0 ? 0 : index);
+        totalNanos.add(nanos);
+    }
+
+    UdpMetricsSnapshot.Latency snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        long mean = count == 0 ? 0 : totalNanos.sum() / count;
+        return new UdpMetricsSnapshot.Latency(count, mean
+                , percentile(counts, count, 0.50)
+                , percentile(counts, count, 0.90)
+                , percentile(counts, count, 0.99)
+                , percentile(counts, count, 0.999)
+                , percentile(counts, count, 1.0));
+    }
+
+    /**
+     * @return 分位数所在桶的上界，纳秒
+     */
+    private static long percentile(long[] counts, long count, double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
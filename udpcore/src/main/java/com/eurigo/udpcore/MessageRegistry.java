@@ -0,0 +1,168 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Eurigo
+ * desc   : 消息类型注册表，帧格式：[标记(1)][varint类型ID][编码后的消息]。
+ * 注册很少发生，按类型ID索引的数组写时复制，接收线程查找时无需加锁
+ */
+final class MessageRegistry implements OnUdpByteReceiveListener {
+
+    private static final String TAG = "MessageRegistry";
+
+    /**
+     * 类型ID上限，ID小于128时帧头只占2字节
+     */
+    static final int MAX_TYPE_ID = 4095;
+
+    private static final ThreadLocal<BinaryWriter> WRITER = new ThreadLocal<BinaryWriter>() {
+        @Override
+        protected BinaryWriter initialValue() {
+            return new BinaryWriter();
+        }
+    };
+
+    private static final ThreadLocal<BinaryReader> READER = new ThreadLocal<BinaryReader>() {
+        @Override
+        protected BinaryReader initialValue() {
+            return new BinaryReader();
+        }
+    };
+
+    static final class Entry<T> {
+        final int typeId;
+        final Class<T> type;
+        final UdpCodec<T> codec;
+        volatile OnUdpObjectReceiveListener<T> listener;
+
+        Entry(int typeId, Class<T> type, UdpCodec<T> codec) {
+            this.typeId = typeId;
+            this.type = type;
+            this.codec = codec;
+        }
+    }
+
+    private volatile Entry<?>[] byId = new Entry<?>[0];
+    private final Map<Class<?>, Entry<?>> byType = new ConcurrentHashMap<>();
+
+    synchronized <T> void register(int typeId, Class<T> type, UdpCodec<T> codec) {
+        if (typeId < 0 || typeId > MAX_TYPE_ID) {
+            throw new IllegalArgumentException("typeId must be in [0, " + MAX_TYPE_ID + "]");
+        }
+        Entry<?> existing = typeId < byId.length ? byId[typeId] : null;
+        if (existing != null && existing.type != type) {
+            throw new IllegalArgumentException("typeId " + typeId + " already registered for " + existing.type);
+        }
+        Entry<T> entry = new Entry<>(typeId, type, codec);
+        if (existing != null) {
+            entry.listener = cast(existing, type).listener;
+        }
+        Entry<?>[] copy = Arrays.copyOf(byId, Math.max(byId.length, typeId + 1));
+        copy[typeId] = entry;
+        byType.put(type, entry);
+        byId = copy;
+    }
+
+    <T> void setListener(Class<T> type, OnUdpObjectReceiveListener<T> listener) {
+        Entry<?> entry = byType.get(type);
+        if (entry == null) {
+            throw new IllegalArgumentException(type + " is not registered");
+        }
+        cast(entry, type).listener = listener;
+    }
+
+    /**
+     * 复制另一个注册表的类型和监听，用于Builder
+     */
+    synchronized void copyFrom(MessageRegistry other) {
+        for (Entry<?> entry : other.byId) {
+            if (entry != null) {
+                copyEntry(entry);
+            }
+        }
+    }
+
+    private <T> void copyEntry(Entry<T> entry) {
+        register(entry.typeId, entry.type, entry.codec);
+        setListener(entry.type, entry.listener);
+    }
+
+    boolean isEmpty() {
+        return byType.isEmpty();
+    }
+
+    /**
+     * @param message 已注册类型的消息
+     * @return 完整的帧
+     */
+    byte[] encode(Object message) {
+        Entry<?> entry = byType.get(message.getClass());
+        if (entry == null) {
+            throw new IllegalArgumentException(message.getClass() + " is not registered");
+        }
+        return encode(entry, message);
+    }
+
+    private <T> byte[] encode(Entry<T> entry, Object message) {
+        BinaryWriter writer = WRITER.get();
+        try {
+            writer.writeRaw(Frames.CODEC);
+            writer.writeVarint(entry.typeId);
+            entry.codec.encode(entry.type.cast(message), writer);
+            return writer.toByteArray();
+        } finally {
+            writer.reset();
+        }
+    }
+
+    @Override
+    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+        BinaryReader reader = READER.get();
+        reader.reset(data);
+        try {
+            data.get();
+            long typeId;
+            try {
+                typeId = reader.readVarint();
+            } catch (IllegalArgumentException e) {
+                UdpLog.e(TAG, "drop packet from " + source + ": " + e.getMessage());
+                return;
+            }
+            Entry<?>[] entries = byId;
+            Entry<?> entry = typeId >= 0 && typeId < entries.length ? entries[(int) typeId] : null;
+            if (entry == null) {
+                UdpLog.e(TAG, "drop packet from " + source + ": unknown type " + typeId);
+                return;
+            }
+            dispatch(entry, reader, source);
+        } finally {
+            reader.reset(null);
+        }
+    }
+
+    private <T> void dispatch(Entry<T> entry, BinaryReader reader, InetSocketAddress source) {
+        OnUdpObjectReceiveListener<T> listener = entry.listener;
+        if (listener == null) {
+            return;
+        }
+        T message;
+        try {
+            message = entry.codec.decode(reader);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            UdpLog.e(TAG, "drop packet from " + source + ": " + e.getMessage());
+            return;
+        }
+        listener.onReceived(message, source);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Entry<T> cast(Entry<?> entry, Class<T> type) {
+        return (Entry<T>) entry;
+    }
+}
@@ -0,0 +1,110 @@
+package com.eurigo.udpcore;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.util.Map;
+
+/**
+ * @author Eurigo
+ * desc   : 已加入的组播组，由{@link UdpEndpoint#joinGroup}创建。
+ * 每个组单独一个接收Socket，收到的数据与单播共用接收回调；发往该组的消息使用加入时的网卡
+ */
+public final class MulticastGroup {
+
+    private final UdpEndpoint endpoint;
+    private final MulticastGroups groups;
+    private final InetSocketAddress address;
+    private final DatagramChannel channel;
+    /**
+     * 加入时指定的网卡，null表示自动选择，网络切换后重新选择
+     */
+    private final NetworkInterface requestedInterface;
+    private volatile MembershipKey key;
+
+    MulticastGroup(UdpEndpoint endpoint, MulticastGroups groups, InetSocketAddress address,
+                   DatagramChannel channel, MembershipKey key, NetworkInterface requestedInterface) {
+        this.endpoint = endpoint;
+        this.groups = groups;
+        this.address = address;
+        this.channel = channel;
+        this.key = key;
+        this.requestedInterface = requestedInterface;
+    }
+
+    /**
+     * 发送到组播组，与单播消息共用发送队列，按端点设置压缩、消息ID和分片
+     *
+     * @param message 消息
+     * @return 入队结果
+     */
+    public SendStatus send(byte[] message) {
+        return endpoint.offerFrame(endpoint.prepareMessage(message), address);
+    }
+
+    public SendStatus send(String message) {
+        return send(message.getBytes());
+    }
+
+    public SendStatus send(Map<String, Object> map) {
+        return send(JsonWriter.encode(map));
+    }
+
+    /**
+     * @param message 已通过{@link UdpEndpoint#registerMessageType}注册类型的消息
+     */
+    public SendStatus sendObject(Object message) {
+        return send(endpoint.encodeObject(message));
+    }
+
+    /**
+     * 退出组播组并关闭接收Socket
+     */
+    public void leave() {
+        groups.leave(this);
+    }
+
+    public InetAddress getGroup() {
+        return address.getAddress();
+    }
+
+    public int getPort() {
+        return address.getPort();
+    }
+
+    public NetworkInterface getNetworkInterface() {
+        return key.networkInterface();
+    }
+
+    /**
+     * @return 是否仍在组内，退出或关闭UDP后为false
+     */
+    public boolean isJoined() {
+        return key.isValid() && channel.isOpen();
+    }
+
+    InetSocketAddress getAddress() {
+        return address;
+    }
+
+    DatagramChannel getChannel() {
+        return channel;
+    }
+
+    MembershipKey getKey() {
+        return key;
+    }
+
+    /**
+     * 网络切换后重新加入时替换
+     */
+    void setKey(MembershipKey key) {
+        this.key = key;
+    }
+
+    NetworkInterface getRequestedInterface() {
+        return requestedInterface;
+    }
+}
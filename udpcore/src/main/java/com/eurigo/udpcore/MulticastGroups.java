@@ -0,0 +1,262 @@
+package com.eurigo.udpcore;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @author Eurigo
+ * desc   : 组播收发。每个组一个接收通道，共用一个Selector线程；
+ * 发送使用端点监听端口的Socket/通道，对端按来源地址回复时能收到，TTL、环回和出口网卡在发送线程中
+ * 设置到该Socket上，仅在与上次不同或Socket被替换时才重新设置，自动选择的网卡来自{@link NetworkState}缓存
+ */
+final class MulticastGroups {
+
+    /**
+     * 默认TTL，组播不出本网段
+     */
+    static final int DEFAULT_TTL = 1;
+
+    private final PacketHandler handler;
+    private final ThreadFactory threadFactory;
+    private final NetworkState networkState;
+    private final Map<InetSocketAddress, MulticastGroup> groups = new ConcurrentHashMap<>();
+    private UdpSelectorLoop loop;
+
+    private volatile int timeToLive = DEFAULT_TTL;
+    private volatile boolean isLoopbackEnabled = true;
+    private volatile NetworkInterface preferredInterface;
+
+    /**
+     * 最近一次设置过的发送Socket及其出口网卡、TTL和环回设置，仅在发送线程中使用
+     */
+    private Object sendSocket;
+    private NetworkInterface sendInterface;
+    private int sendTimeToLive;
+    private boolean sendLoopback;
+
+    MulticastGroups(PacketHandler handler, ThreadFactory threadFactory, NetworkState networkState) {
+        this.handler = handler;
+        this.threadFactory = threadFactory;
+        this.networkState = networkState;
+    }
+
+    /**
+     * 加入组播组，同一组地址和端口重复加入返回已有的组
+     *
+     * @param networkInterface 网卡，null时使用{@link #selectInterface()}
+     * @param bufferPool       接收缓冲池，首次加入时用于创建接收线程
+     */
+    synchronized MulticastGroup join(UdpEndpoint endpoint, InetAddress group, int port,
+                                     NetworkInterface networkInterface, ByteBufferPool bufferPool)
+            throws IOException {
+        if (!group.isMulticastAddress()) {
+            throw new IllegalArgumentException(group.getHostAddress() + " is not a multicast address");
+        }
+        InetSocketAddress address = new InetSocketAddress(group, port);
+        MulticastGroup exist = groups.get(address);
+        if (exist != null && exist.isJoined()) {
+            return exist;
+        }
+        NetworkInterface ni = networkInterface == null ? selectInterface() : networkInterface;
+        if (ni == null) {
+            throw new SocketException("No multicast capable network interface");
+        }
+        DatagramChannel channel = DatagramChannel.open(family(group));
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            bind(channel, address);
+            MembershipKey key = channel.join(group, ni);
+            if (loop == null) {
+                loop = new UdpSelectorLoop(bufferPool, handler);
+                threadFactory.newThread(loop).start();
+            }
+            loop.register(channel);
+            MulticastGroup joined = new MulticastGroup(endpoint, this, address, channel, key, networkInterface);
+            groups.put(address, joined);
+            return joined;
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * 绑定到组地址，Linux/Android上同一端口的其他组的数据不会进入该通道；
+     * 不支持绑定组地址的系统退回绑定通配地址
+     */
+    private static void bind(DatagramChannel channel, InetSocketAddress address) throws IOException {
+        try {
+            channel.bind(address);
+        } catch (IOException e) {
+            channel.bind(new InetSocketAddress(address.getPort()));
+        }
+    }
+
+    /**
+     * 网络切换后重新加入所有组，加入时未指定网卡的组使用重新选择的网卡。
+     * 网卡未变时先退出再加入，刷新内核中的成员关系；加入失败时保留原成员关系
+     */
+    synchronized void rejoin() {
+        NetworkInterface selected = selectInterface();
+        for (MulticastGroup group : groups.values()) {
+            NetworkInterface ni = group.getRequestedInterface() != null ? group.getRequestedInterface() : selected;
+            if (ni == null || !group.getChannel().isOpen()) {
+                continue;
+            }
+            MembershipKey old = group.getKey();
+            try {
+                MembershipKey key = group.getChannel().join(group.getGroup(), ni);
+                old.drop();
+                if (key == old) {
+                    key = group.getChannel().join(group.getGroup(), ni);
+                }
+                group.setKey(key);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    synchronized void leave(MulticastGroup group) {
+        groups.remove(group.getAddress(), group);
+        group.getKey().drop();
+        if (loop != null) {
+            loop.unregister(group.getChannel());
+        } else {
+            closeQuietly(group.getChannel());
+        }
+    }
+
+    /**
+     * 发送到组播地址前设置通道的组播选项，在发送线程中调用。
+     * 已加入的组使用加入时的网卡，否则使用自动选择的网卡
+     */
+    void configure(DatagramChannel channel, InetSocketAddress target) throws IOException {
+        boolean isChanged = reset(channel);
+        int ttl = timeToLive;
+        if (isChanged || sendTimeToLive != ttl) {
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, ttl);
+            sendTimeToLive = ttl;
+        }
+        boolean isLoopback = isLoopbackEnabled;
+        if (isChanged || sendLoopback != isLoopback) {
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, isLoopback);
+            sendLoopback = isLoopback;
+        }
+        NetworkInterface ni = outgoingInterface(target);
+        if (ni != null && (isChanged || !ni.equals(sendInterface))) {
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, ni);
+            sendInterface = ni;
+        }
+    }
+
+    /**
+     * 阻塞模式下的{@link #configure(DatagramChannel, InetSocketAddress)}
+     */
+    void configure(MulticastSocket socket, InetSocketAddress target) throws IOException {
+        boolean isChanged = reset(socket);
+        int ttl = timeToLive;
+        if (isChanged || sendTimeToLive != ttl) {
+            socket.setTimeToLive(ttl);
+            sendTimeToLive = ttl;
+        }
+        boolean isLoopback = isLoopbackEnabled;
+        if (isChanged || sendLoopback != isLoopback) {
+            // 参数为true时禁用环回
+            socket.setLoopbackMode(!isLoopback);
+            sendLoopback = isLoopback;
+        }
+        NetworkInterface ni = outgoingInterface(target);
+        if (ni != null && (isChanged || !ni.equals(sendInterface))) {
+            socket.setNetworkInterface(ni);
+            sendInterface = ni;
+        }
+    }
+
+    /**
+     * @return 是否是新的Socket，重新绑定后需要按当前设置全部重新设置
+     */
+    private boolean reset(Object socket) {
+        if (sendSocket == socket) {
+            return false;
+        }
+        sendSocket = socket;
+        sendInterface = null;
+        return true;
+    }
+
+    private NetworkInterface outgoingInterface(InetSocketAddress target) {
+        MulticastGroup joined = groups.get(target);
+        return joined != null ? joined.getNetworkInterface() : selectInterface();
+    }
+
+    /**
+     * 可在任意线程中调用，发送线程在下一次组播发送前设置到通道上
+     */
+    void setTimeToLive(int ttl) {
+        timeToLive = ttl;
+    }
+
+    /**
+     * 可在任意线程中调用，发送线程在下一次组播发送前设置到通道上
+     */
+    void setLoopbackEnabled(boolean enabled) {
+        isLoopbackEnabled = enabled;
+    }
+
+    void setPreferredInterface(NetworkInterface networkInterface) {
+        preferredInterface = networkInterface;
+    }
+
+    /**
+     * @return 指定的网卡，未指定时使用缓存的网络状态中支持组播的网卡，没有可用网卡时返回null
+     */
+    NetworkInterface selectInterface() {
+        NetworkInterface preferred = preferredInterface;
+        if (preferred != null) {
+            return preferred;
+        }
+        return networkState.get().multicastInterface;
+    }
+
+    /**
+     * 退出所有组并关闭接收线程，在发送线程停止后调用
+     */
+    synchronized void close() {
+        List<MulticastGroup> joined = new ArrayList<>(groups.values());
+        groups.clear();
+        for (MulticastGroup group : joined) {
+            group.getKey().drop();
+        }
+        if (loop != null) {
+            loop.close();
+            loop = null;
+        }
+        sendSocket = null;
+    }
+
+    private static StandardProtocolFamily family(InetAddress address) {
+        return address instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET;
+    }
+
+    private static void closeQuietly(DatagramChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
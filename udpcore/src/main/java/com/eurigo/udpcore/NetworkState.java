@@ -0,0 +1,165 @@
+package com.eurigo.udpcore;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Eurigo
+ * desc   : 网卡与广播地址缓存。遍历网卡涉及多次系统调用，只在第一次使用和网络变化后解析一次，
+ * 发送广播/组播时直接读取缓存。
+ * 按名称优先选择Wi-Fi（wlan）、热点（ap/swlan/softap）、以太网（eth），其次任意活跃的IPv4网卡
+ */
+final class NetworkState {
+
+    private static final String TAG = "NetworkState";
+
+    /**
+     * 网卡名称前缀，越靠前优先级越高
+     */
+    private static final String[] PREFERRED_PREFIXES = {"wlan", "ap", "swlan", "softap", "eth"};
+    /**
+     * 没有可用网卡时缓存的有效期，避免断网期间每次发送都重新遍历
+     */
+    private static final long EMPTY_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    static final class Snapshot {
+        /**
+         * 选中的网卡，没有可用网卡时为null
+         */
+        final NetworkInterface networkInterface;
+        final Inet4Address address;
+        /**
+         * 子网广播地址，点对点网卡等没有广播地址时为{@link UdpEndpoint#DEFAULT_SOCKET_HOST}
+         */
+        final String broadcastHost;
+        /**
+         * 支持组播的网卡，选择顺序同上
+         */
+        final NetworkInterface multicastInterface;
+        final long resolvedNanos;
+
+        Snapshot(NetworkInterface networkInterface, Inet4Address address, String broadcastHost,
+                 NetworkInterface multicastInterface, long resolvedNanos) {
+            this.networkInterface = networkInterface;
+            this.address = address;
+            this.broadcastHost = broadcastHost;
+            this.multicastInterface = multicastInterface;
+            this.resolvedNanos = resolvedNanos;
+        }
+    }
+
+    /**
+     * 解析当前网络状态，默认遍历系统网卡，测试中可替换
+     */
+    interface Resolver {
+        Snapshot resolve();
+    }
+
+    private static final Resolver SYSTEM_RESOLVER = new Resolver() {
+        @Override
+        public Snapshot resolve() {
+            return resolveSystem();
+        }
+    };
+
+    private final Resolver resolver;
+    private volatile Snapshot snapshot;
+
+    NetworkState() {
+        this(SYSTEM_RESOLVER);
+    }
+
+    NetworkState(Resolver resolver) {
+        this.resolver = resolver;
+    }
+
+    Snapshot get() {
+        Snapshot s = snapshot;
+        if (s == null || (s.networkInterface == null && System.nanoTime() - s.resolvedNanos > EMPTY_RETRY_NANOS)) {
+            s = resolver.resolve();
+            snapshot = s;
+        }
+        return s;
+    }
+
+    /**
+     * 网络变化后调用，下次使用时重新解析
+     */
+    void invalidate() {
+        snapshot = null;
+    }
+
+    private static Snapshot resolveSystem() {
+        NetworkInterface best = null;
+        int bestRank = Integer.MAX_VALUE;
+        NetworkInterface multicast = null;
+        int multicastRank = Integer.MAX_VALUE;
+        try {
+            Enumeration<NetworkInterface> nis = NetworkInterface.getNetworkInterfaces();
+            while (nis != null && nis.hasMoreElements()) {
+                NetworkInterface ni = nis.nextElement();
+                if (!ni.isUp() || ni.isLoopback() || ipv4Address(ni) == null) {
+                    continue;
+                }
+                int rank = rank(ni);
+                if (rank < bestRank) {
+                    best = ni;
+                    bestRank = rank;
+                }
+                if (rank < multicastRank && ni.supportsMulticast()) {
+                    multicast = ni;
+                    multicastRank = rank;
+                }
+            }
+        } catch (SocketException e) {
+            UdpLog.e(TAG, "list network interfaces failed", e);
+        }
+        String broadcast = UdpEndpoint.DEFAULT_SOCKET_HOST;
+        Inet4Address address = null;
+        if (best != null) {
+            InterfaceAddress ia = ipv4Address(best);
+            address = (Inet4Address) ia.getAddress();
+            if (ia.getBroadcast() != null) {
+                broadcast = ia.getBroadcast().getHostAddress();
+            }
+        }
+        return new Snapshot(best, address, broadcast, multicast, System.nanoTime());
+    }
+
+    private static int rank(NetworkInterface ni) throws SocketException {
+        return rank(ni.getName(), ni.isPointToPoint());
+    }
+
+    /**
+     * 点对点网卡（VPN、蜂窝）排在所有普通网卡之后
+     *
+     * @return 越小优先级越高
+     */
+    static int rank(String name, boolean isPointToPoint) {
+        int base = isPointToPoint ? PREFERRED_PREFIXES.length + 2 : 0;
+        for (int i = 0; i < PREFERRED_PREFIXES.length; i++) {
+            if (name.startsWith(PREFERRED_PREFIXES[i])) {
+                return base + i;
+            }
+        }
+        return base + PREFERRED_PREFIXES.length;
+    }
+
+    private static InterfaceAddress ipv4Address(NetworkInterface ni) {
+        List<InterfaceAddress> ias = ni.getInterfaceAddresses();
+        for (int i = 0, size = ias.size(); i < size; i++) {
+            InterfaceAddress ia = ias.get(i);
+            InetAddress address = ia.getAddress();
+            if (address instanceof Inet4Address) {
+                return ia;
+            }
+        }
+        return null;
+    }
+}
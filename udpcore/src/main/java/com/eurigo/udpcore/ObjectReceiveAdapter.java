@@ -0,0 +1,67 @@
+package com.eurigo.udpcore;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.CharArrayReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Eurigo
+ * desc   : 将字节级回调适配为{@link OnUdpObjectReceiveListener}，
+ * 按线程复用解码器和字符数组，解码后由Gson流式绑定，不生成中间String
+ */
+final class ObjectReceiveAdapter<T> implements OnUdpByteReceiveListener {
+
+    private static final String TAG = "ObjectReceiveAdapter";
+    private static final Gson GSON = new Gson();
+
+    private static final ThreadLocal<CharsetDecoder> DECODER = new ThreadLocal<CharsetDecoder>() {
+        @Override
+        protected CharsetDecoder initialValue() {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    };
+    private static final ThreadLocal<CharBuffer> SCRATCH = new ThreadLocal<>();
+
+    private final Class<T> type;
+    private final OnUdpObjectReceiveListener<T> listener;
+
+    ObjectReceiveAdapter(Class<T> type, OnUdpObjectReceiveListener<T> listener) {
+        this.type = type;
+        this.listener = listener;
+    }
+
+    @Override
+    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+        // UTF-8解码后的char数不会超过字节数
+        int length = data.remaining();
+        CharBuffer chars = SCRATCH.get();
+        if (chars == null || chars.capacity() < length) {
+            chars = CharBuffer.allocate(length);
+            SCRATCH.set(chars);
+        }
+        chars.clear();
+        CharsetDecoder decoder = DECODER.get().reset();
+        // 非法字节按REPLACE替换，不会返回错误
+        decoder.decode(data, chars, true);
+        decoder.flush(chars);
+        T object;
+        try {
+            object = GSON.fromJson(new CharArrayReader(chars.array(), 0, chars.position()), type);
+        } catch (JsonParseException e) {
+            UdpLog.e(TAG, "drop packet from " + source + ": " + e.getMessage());
+            return;
+        }
+        if (object != null) {
+            listener.onReceived(object, source);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : 对端变化回调，发现和变化在接收线程中回调，超时移除在发现定时线程中回调，
+ * ！！请勿直接在回调中操作UI
+ */
+public interface OnPeerChangeListener {
+
+    /**
+     * 发现新的对端
+     */
+    void onPeerAdded(Peer peer);
+
+    /**
+     * 对端的地址或服务发生变化
+     */
+    void onPeerChanged(Peer peer);
+
+    /**
+     * 对端下线或超时未再通告
+     */
+    void onPeerRemoved(Peer peer);
+}
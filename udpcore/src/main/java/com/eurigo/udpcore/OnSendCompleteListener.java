@@ -0,0 +1,16 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : 异步发送完成回调
+ */
+public interface OnSendCompleteListener {
+
+    /**
+     * 发送完成，在发送线程中回调，请勿执行耗时操作，否则会阻塞后续所有消息的发送；
+     * 未进入队列时在调用发送的线程中回调
+     *
+     * @param result 发送结果
+     */
+    void onComplete(SendResult result);
+}
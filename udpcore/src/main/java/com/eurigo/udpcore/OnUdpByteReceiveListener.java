@@ -0,0 +1,29 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * @author Eurigo
+ * desc   : 字节级接收回调，数据来自可回收的缓冲池，解析过程中不产生额外的对象分配。
+ * 首字节为0xF5~0xFD的数据包保留给内部帧，只在接收端开启对应功能时解析：
+ * 0xF5（编解码）{@link UdpEndpoint#registerMessageType}、0xF6（压缩）{@link UdpEndpoint#setCompressionEnabled}、
+ * 0xF7（分片）{@link UdpEndpoint#setFragmentationEnabled}、
+ * 0xF8（可靠通道）{@link UdpEndpoint#setReliableReceiveEnabled}或向该来源打开过{@link UdpEndpoint#openReliableChannel}、
+ * 0xF9（请求/响应）{@link UdpEndpoint#setRequestListener}或发起过请求、
+ * 0xFA（合并）{@link UdpEndpoint#setCoalescingEnabled}、0xFB（消息ID）{@link UdpEndpoint#setDuplicateFilterEnabled}、
+ * 0xFC（主题）{@link UdpEndpoint#subscribe}、0xFD（对端发现）{@link UdpEndpoint#startDiscovery}，
+ * 未开启时按原始数据回调。文本/Json消息的首字节不会落在该范围
+ */
+public interface OnUdpByteReceiveListener {
+
+    /**
+     * 接收到数据包，默认在接收线程中回调，！！请勿直接在onReceived中操作UI，回调线程见{@link UdpEndpoint#setDispatcher}
+     * data为只读视图，position~limit为有效负载，仅在回调期间有效，回调返回后缓冲区会被回收复用，
+     * 如需异步处理请自行拷贝
+     *
+     * @param data   数据包只读视图
+     * @param source 发送方地址
+     */
+    void onReceived(ByteBuffer data, InetSocketAddress source);
+}
@@ -0,0 +1,20 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+/**
+ * @author Eurigo
+ * desc   : Json接收回调，数据包直接从接收缓冲区流式解析为Map，不经过String
+ */
+public interface OnUdpJsonReceiveListener {
+
+    /**
+     * 接收到Json对象，在接收线程中回调，！！请勿直接在onReceived中操作UI
+     * 数字解析为Long或Double，数组为List，嵌套对象为Map；不是Json对象的数据包会被丢弃
+     *
+     * @param json   解析结果
+     * @param source 发送方地址
+     */
+    void onReceived(Map<String, Object> json, InetSocketAddress source);
+}
@@ -0,0 +1,15 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : 定时上报收发统计
+ */
+public interface OnUdpMetricsListener {
+
+    /**
+     * 在统计线程中回调
+     *
+     * @param snapshot 统计快照
+     */
+    void onMetrics(UdpMetricsSnapshot snapshot);
+}
@@ -0,0 +1,19 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+
+/**
+ * @author Eurigo
+ * desc   : Json接收回调，数据包由Gson直接绑定为指定类型的对象
+ */
+public interface OnUdpObjectReceiveListener<T> {
+
+    /**
+     * 接收到对象，在接收线程中回调，！！请勿直接在onReceived中操作UI
+     * 无法绑定为指定类型的数据包会被丢弃
+     *
+     * @param object 绑定结果
+     * @param source 发送方地址
+     */
+    void onReceived(T object, InetSocketAddress source);
+}
@@ -0,0 +1,16 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : 文本接收回调，基于{@link OnUdpByteReceiveListener}按平台默认编码解码
+ */
+public interface OnUdpReceiveListener {
+
+    /**
+     * 接收到数据包，默认在接收线程中回调，！！请勿直接在onReceived中操作UI，
+     * 回调线程见{@link UdpEndpoint#setDispatcher}
+     *
+     * @param data 数据包
+     */
+    void onReceived(String data);
+}
@@ -0,0 +1,16 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : 请求回调，对端通过{@link UdpEndpoint#request}发来的请求在此处理并回复
+ */
+public interface OnUdpRequestListener {
+
+    /**
+     * 收到请求，默认在接收线程中回调，！！请勿直接在onRequest中操作UI，回调线程见{@link UdpEndpoint#setDispatcher}
+     * 可以在回调中直接回复，也可以保存request异步回复，不回复时对端等待超时
+     *
+     * @param request 请求
+     */
+    void onRequest(UdpRequest request);
+}
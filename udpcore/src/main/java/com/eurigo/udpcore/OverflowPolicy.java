@@ -0,0 +1,30 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : 发送队列已满时的处理策略
+ */
+public enum OverflowPolicy {
+
+    /**
+     * 阻塞调用线程直到队列有空位。
+     * 在发送线程中（如{@link OnSendCompleteListener}回调里）发送时不会阻塞，
+     * 队列已满直接返回{@link SendStatus#DROPPED}
+     */
+    BLOCK,
+
+    /**
+     * 丢弃本次发送的消息
+     */
+    DROP_NEWEST,
+
+    /**
+     * 丢弃队列中最早的消息，为本次发送腾出空位
+     */
+    DROP_OLDEST,
+
+    /**
+     * 立即返回{@link SendStatus#REJECTED}，由调用方自行处理
+     */
+    FAIL_FAST
+}
@@ -0,0 +1,233 @@
+package com.eurigo.udpcore;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * @author Eurigo
+ * desc   : 发送限速，全局和每个目标各有字节数、包数两个令牌桶。
+ * 全局令牌不足时发送线程等待后再发送；目标令牌不足时消息暂存到该目标的等待队列，
+ * 按可发送时间排序，发送线程继续发送其他目标的消息，到期后按入队顺序发出。
+ * 限速参数可在任意线程修改，令牌桶和等待队列只在发送线程中使用，参数变化后重新创建令牌桶
+ */
+final class Pacer {
+
+    interface Output {
+        /**
+         * 发出等待目标令牌到期的消息，异常需自行处理
+         *
+         * @param destination 目标
+         * @param task        消息
+         */
+        void send(DestinationCache.Destination destination, UdpSender.SendTask task);
+    }
+
+    private static final Comparator<DestinationCache.Destination> READY_ORDER =
+            new Comparator<DestinationCache.Destination>() {
+                @Override
+                public int compare(DestinationCache.Destination a, DestinationCache.Destination b) {
+                    return Long.signum(a.pacedReadyNanos - b.pacedReadyNanos);
+                }
+            };
+
+    /**
+     * 未指定突发量时允许积累100毫秒的令牌
+     */
+    private static final int DEFAULT_BURST_DIVISOR = 10;
+
+    /**
+     * 限速参数，速率为0表示该项不限制
+     */
+    static final class Limit {
+        final long bytesPerSecond;
+        final long burstBytes;
+        final long packetsPerSecond;
+        final long burstPackets;
+
+        Limit(long bytesPerSecond, long burstBytes, long packetsPerSecond, long burstPackets) {
+            this.bytesPerSecond = Math.max(0, bytesPerSecond);
+            this.burstBytes = burstBytes > 0 ? burstBytes
+                    : Math.max(1, this.bytesPerSecond / DEFAULT_BURST_DIVISOR);
+            this.packetsPerSecond = Math.max(0, packetsPerSecond);
+            this.burstPackets = burstPackets > 0 ? burstPackets
+                    : Math.max(1, this.packetsPerSecond / DEFAULT_BURST_DIVISOR);
+        }
+
+        boolean isUnlimited() {
+            return bytesPerSecond == 0 && packetsPerSecond == 0;
+        }
+    }
+
+    /**
+     * 按某个限速参数创建的一组令牌桶
+     */
+    static final class Buckets {
+        final Limit limit;
+        private final TokenBucket bytes;
+        private final TokenBucket packets;
+
+        Buckets(Limit limit, long now) {
+            this.limit = limit;
+            this.bytes = limit.bytesPerSecond > 0
+                    ? new TokenBucket(limit.bytesPerSecond, limit.burstBytes, now) : null;
+            this.packets = limit.packetsPerSecond > 0
+                    ? new TokenBucket(limit.packetsPerSecond, limit.burstPackets, now) : null;
+        }
+
+        long reserve(int length, long now) {
+            long wait = bytes == null ? 0 : bytes.reserve(length, now);
+            return packets == null ? wait : Math.max(wait, packets.reserve(1, now));
+        }
+
+        /**
+         * @return 令牌足够发送length字节的一个数据报需要等待的纳秒数，不扣除令牌
+         */
+        long delay(int length, long now) {
+            long wait = bytes == null ? 0 : bytes.delay(length, now);
+            return packets == null ? wait : Math.max(wait, packets.delay(1, now));
+        }
+    }
+
+    private volatile Limit globalLimit;
+    private volatile Limit destinationLimit;
+    private Buckets global;
+    /**
+     * 有消息等待令牌的目标，按可发送时间排序
+     */
+    private final PriorityQueue<DestinationCache.Destination> waiting = new PriorityQueue<>(11, READY_ORDER);
+
+    void setGlobalLimit(Limit limit) {
+        globalLimit = limit == null || limit.isUnlimited() ? null : limit;
+    }
+
+    void setDestinationLimit(Limit limit) {
+        destinationLimit = limit == null || limit.isUnlimited() ? null : limit;
+    }
+
+    boolean isEnabled() {
+        return globalLimit != null || destinationLimit != null;
+    }
+
+    /**
+     * 在发送线程中调用，扣除全局和目标的令牌
+     *
+     * @param destination 目标
+     * @param length      数据报长度
+     * @return 发送前需要等待的纳秒数
+     */
+    long reserve(DestinationCache.Destination destination, int length, long now) {
+        return Math.max(reserveGlobal(length, now), reserveDestination(destination, length, now));
+    }
+
+    /**
+     * @return 全局令牌不足时需要等待的纳秒数
+     */
+    long reserveGlobal(int length, long now) {
+        Limit limit = globalLimit;
+        if (limit == null) {
+            return 0;
+        }
+        if (global == null || global.limit != limit) {
+            global = new Buckets(limit, now);
+        }
+        return global.reserve(length, now);
+    }
+
+    /**
+     * @return 目标令牌不足时需要等待的纳秒数
+     */
+    long reserveDestination(DestinationCache.Destination destination, int length, long now) {
+        Buckets buckets = destinationBuckets(destination, now);
+        return buckets == null ? 0 : buckets.reserve(length, now);
+    }
+
+    private Buckets destinationBuckets(DestinationCache.Destination destination, long now) {
+        Limit limit = destinationLimit;
+        if (limit == null) {
+            return null;
+        }
+        Buckets buckets = destination.rateBuckets;
+        if (buckets == null || buckets.limit != limit) {
+            buckets = new Buckets(limit, now);
+            destination.rateBuckets = buckets;
+        }
+        return buckets;
+    }
+
+    /**
+     * 目标已有消息在等待或令牌不足以发送该消息时，消息加入该目标的等待队列
+     *
+     * @return 是否已加入等待队列，false时由调用方立即发送
+     */
+    boolean defer(DestinationCache.Destination destination, UdpSender.SendTask task, long now) {
+        ArrayDeque<UdpSender.SendTask> tasks = destination.pacedTasks;
+        if (tasks != null && !tasks.isEmpty()) {
+            tasks.add(task);
+            return true;
+        }
+        Buckets buckets = destinationBuckets(destination, now);
+        long delay = buckets == null ? 0 : buckets.delay(task.data.length, now);
+        if (delay <= 0) {
+            return false;
+        }
+        if (tasks == null) {
+            tasks = new ArrayDeque<>();
+            destination.pacedTasks = tasks;
+        }
+        tasks.add(task);
+        destination.pacedReadyNanos = now + delay;
+        waiting.add(destination);
+        return true;
+    }
+
+    /**
+     * 发出所有到期目标的等待消息，令牌再次不足时该目标重新等待
+     *
+     * @return 距离下一个目标到期的纳秒数，没有等待的消息时返回Long.MAX_VALUE
+     */
+    long flushReady(long now, Output output) {
+        DestinationCache.Destination destination;
+        while ((destination = waiting.peek()) != null) {
+            long wait = destination.pacedReadyNanos - now;
+            if (wait > 0) {
+                return wait;
+            }
+            waiting.poll();
+            ArrayDeque<UdpSender.SendTask> tasks = destination.pacedTasks;
+            long delay = 0;
+            // 等待期间紧急消息可能又扣除了令牌，每条消息发出前重新检查
+            while (!tasks.isEmpty()) {
+                Buckets buckets = destinationBuckets(destination, now);
+                delay = buckets == null ? 0 : buckets.delay(tasks.peek().data.length, now);
+                if (delay > 0) {
+                    break;
+                }
+                output.send(destination, tasks.poll());
+            }
+            if (!tasks.isEmpty()) {
+                destination.pacedReadyNanos = now + delay;
+                waiting.add(destination);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * 发送线程退出时丢弃所有等待的消息，回调{@link SendResult#DROPPED}
+     *
+     * @return 丢弃的消息数量
+     */
+    int dropAll() {
+        int dropped = 0;
+        DestinationCache.Destination destination;
+        while ((destination = waiting.poll()) != null) {
+            UdpSender.SendTask task;
+            while ((task = destination.pacedTasks.poll()) != null) {
+                dropped++;
+                task.complete(SendResult.DROPPED);
+            }
+        }
+        return dropped;
+    }
+}
@@ -0,0 +1,46 @@
+package com.eurigo.udpcore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Eurigo
+ * desc   : 可回收的接收缓冲区，预先创建只读视图，回调时只需同步position/limit
+ */
+final class PacketBuffer {
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer readOnlyView;
+    /**
+     * 收到数据包时的{@link System#nanoTime()}，用于统计接收到回调的延迟
+     */
+    long receiveNanos;
+
+    PacketBuffer(int capacity) {
+        buffer = ByteBuffer.allocate(capacity);
+        readOnlyView = buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return 可写缓冲区，供Socket/Channel写入
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    byte[] array() {
+        return buffer.array();
+    }
+
+    /**
+     * @return 与{@link #buffer()}当前position~limit一致的只读视图
+     */
+    ByteBuffer readOnlyView() {
+        readOnlyView.limit(buffer.limit());
+        readOnlyView.position(buffer.position());
+        return readOnlyView;
+    }
+
+    void clear() {
+        buffer.clear();
+    }
+}
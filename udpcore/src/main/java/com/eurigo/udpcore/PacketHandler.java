@@ -0,0 +1,18 @@
+package com.eurigo.udpcore;
+
+import java.net.SocketAddress;
+
+/**
+ * @author Eurigo
+ * desc   : 接收线程收到数据包后的回调，各接收模式共用
+ */
+interface PacketHandler {
+
+    /**
+     * 在接收线程中回调，buffer的所有权转交给handler，处理完毕后需归还到缓冲池
+     *
+     * @param buffer 数据包，position~limit为有效数据
+     * @param source 发送方地址
+     */
+    void onPacket(PacketBuffer buffer, SocketAddress source);
+}
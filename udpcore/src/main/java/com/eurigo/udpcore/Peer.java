@@ -0,0 +1,63 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.util.Set;
+
+/**
+ * @author Eurigo
+ * desc   : 通过{@link PeerDiscovery}发现的对端，不可变，地址或服务变化时替换为新的实例
+ */
+public final class Peer {
+
+    private final long instanceId;
+    private final InetSocketAddress address;
+    private final Set<String> services;
+
+    Peer(long instanceId, InetSocketAddress address, Set<String> services) {
+        this.instanceId = instanceId;
+        this.address = address;
+        this.services = services;
+    }
+
+    /**
+     * @return 对端的实例ID，每次启动发现时随机生成
+     */
+    public long getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * @return 对端的监听地址，可直接用于单播发送
+     */
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public String getHost() {
+        return address.getAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return address.getPort();
+    }
+
+    /**
+     * @return 对端提供的服务名称，只读
+     */
+    public Set<String> getServices() {
+        return services;
+    }
+
+    public boolean hasService(String service) {
+        return services.contains(service);
+    }
+
+    @Override
+    public String toString() {
+        return "Peer{" +
+                "instanceId=" + Long.toHexString(instanceId) +
+                ", address=" + address +
+                ", services=" + services +
+                '}';
+    }
+}
@@ -0,0 +1,459 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Eurigo
+ * desc   : 局域网对端发现，由{@link UdpEndpoint#startDiscovery}创建。
+ * 定时向子网广播地址通告本端的服务，间隔带随机抖动避免多台设备同时发送；
+ * 刚启动时请求对端单播回复，无需等待一个完整间隔即可发现已在线的对端。
+ * 对端超过通告中的TTL未再通告时移除，停止时广播下线通知。
+ * 通告来自局域网内的任意主机，TTL和对端表的大小都有上限，伪造的通告不能无限占用内存。
+ * 发现之后按服务名直接单播发送，不再需要反复广播。
+ * 通告帧：[标记(1)][类型(1)][标志(1)][实例ID(8)][TTL毫秒(4)][监听端口(2)][服务数(1)]{[长度(1)][UTF-8服务名]}
+ */
+public final class PeerDiscovery {
+
+    private static final String TAG = "PeerDiscovery";
+
+    static final byte TYPE_ANNOUNCE = 0;
+    static final byte TYPE_BYE = 1;
+    static final byte FLAG_REPLY = 1;
+    static final int HEADER_LENGTH = 18;
+
+    /**
+     * 默认通告间隔
+     */
+    public static final long DEFAULT_INTERVAL_MILLIS = 5000;
+    /**
+     * 对端连续错过多少次通告后移除
+     */
+    private static final int TTL_INTERVALS = 3;
+    /**
+     * 通告间隔的随机抖动比例
+     */
+    private static final double JITTER = 0.2;
+    /**
+     * 启动时以较短间隔发送的通告次数，防止第一次广播丢失
+     */
+    private static final int STARTUP_ANNOUNCEMENTS = 2;
+    private static final long STARTUP_INTERVAL_MILLIS = 500;
+    private static final long SWEEP_PERIOD_MILLIS = 1000;
+    /**
+     * 通告中的TTL最多为通告间隔的多少倍，取本端间隔与默认间隔中较大者
+     */
+    static final int MAX_TTL_INTERVALS = 2 * TTL_INTERVALS;
+    /**
+     * 对端表的最大数量，已满时忽略新对端的通告，已记录的对端照常更新
+     */
+    static final int MAX_PEERS = 256;
+
+    private static final Random INSTANCE_RANDOM = new Random();
+
+    private static final class Entry {
+        volatile Peer peer;
+        volatile long expiresNanos;
+
+        Entry(Peer peer) {
+            this.peer = peer;
+        }
+    }
+
+    private final UdpEndpoint endpoint;
+    private final int port;
+    private final long instanceId = INSTANCE_RANDOM.nextLong();
+    private final Set<String> services = new LinkedHashSet<>();
+    private final Map<Long, Entry> peers = new ConcurrentHashMap<>();
+    private volatile OnPeerChangeListener listener;
+    private volatile String broadcastHost;
+    private volatile long intervalMillis = DEFAULT_INTERVAL_MILLIS;
+    /**
+     * 服务变化时重新编码，定时通告直接复用
+     */
+    private volatile byte[] announcement;
+    private ScheduledExecutorService timer;
+    private int startupRemaining;
+
+    PeerDiscovery(UdpEndpoint endpoint, int port) {
+        this.endpoint = endpoint;
+        this.port = port;
+        this.announcement = encode(TYPE_ANNOUNCE);
+    }
+
+    /**
+     * 增加通告的服务，运行中会立即通告一次
+     *
+     * @param service 服务名称，UTF-8编码不超过255字节
+     */
+    public void addService(String service) {
+        if (service.getBytes(StandardCharsets.UTF_8).length > 255) {
+            throw new IllegalArgumentException("Service name too long: " + service);
+        }
+        synchronized (this) {
+            if (!services.add(service)) {
+                return;
+            }
+            onServicesChanged();
+        }
+    }
+
+    public synchronized void removeService(String service) {
+        if (services.remove(service)) {
+            onServicesChanged();
+        }
+    }
+
+    private void onServicesChanged() {
+        announcement = encode(TYPE_ANNOUNCE);
+        if (timer != null) {
+            sendAnnouncement(announcement, broadcastAddress());
+        }
+    }
+
+    /**
+     * @param listener 对端变化回调，传入null取消
+     */
+    public void setListener(OnPeerChangeListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 设置通告的广播地址，需与对端处于同一子网
+     *
+     * @param host 广播地址，传入null时使用{@link UdpEndpoint#getSubnetBroadcastAddress()}
+     */
+    public void setBroadcastHost(String host) {
+        this.broadcastHost = host;
+    }
+
+    /**
+     * 设置通告间隔，对端在3个间隔内未收到通告时移除本端，下次通告时生效
+     *
+     * @param intervalMillis 通告间隔，默认为{@link #DEFAULT_INTERVAL_MILLIS}
+     */
+    public synchronized void setAnnounceInterval(long intervalMillis) {
+        this.intervalMillis = intervalMillis <= 0 ? DEFAULT_INTERVAL_MILLIS : intervalMillis;
+        this.announcement = encode(TYPE_ANNOUNCE);
+    }
+
+    synchronized void start() {
+        if (timer != null) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(
+                new UdpThreadFactory(TAG, Thread.NORM_PRIORITY, true));
+        startupRemaining = STARTUP_ANNOUNCEMENTS;
+        // 重新打开UDP后监听端口可能变化
+        announcement = encode(TYPE_ANNOUNCE);
+        timer.execute(new Runnable() {
+            @Override
+            public void run() {
+                announce();
+            }
+        });
+        timer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sweep(System.nanoTime());
+            }
+        }, SWEEP_PERIOD_MILLIS, SWEEP_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止通告并广播下线通知，清空对端表
+     */
+    synchronized void stop() {
+        stop(false);
+    }
+
+    /**
+     * @param isSocketClosing 关闭UDP时发送线程已停止，队列中的消息会被丢弃，下线通知在关闭Socket前直接写出
+     */
+    synchronized void stop(boolean isSocketClosing) {
+        if (timer == null) {
+            return;
+        }
+        timer.shutdownNow();
+        timer = null;
+        InetSocketAddress target = broadcastAddress();
+        if (!isSocketClosing) {
+            sendAnnouncement(encode(TYPE_BYE), target);
+        } else if (target.isUnresolved()) {
+            UdpLog.e(TAG, "Unresolved broadcast host: " + target);
+        } else {
+            endpoint.writeFrameNow(encode(TYPE_BYE), target);
+        }
+        Iterator<Entry> iterator = peers.values().iterator();
+        while (iterator.hasNext()) {
+            Peer peer = iterator.next().peer;
+            iterator.remove();
+            notifyRemoved(peer);
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return timer != null;
+    }
+
+    /**
+     * @return 当前在线的所有对端
+     */
+    public List<Peer> getPeers() {
+        List<Peer> result = new ArrayList<>(peers.size());
+        for (Entry entry : peers.values()) {
+            result.add(entry.peer);
+        }
+        return result;
+    }
+
+    /**
+     * @param service 服务名称
+     * @return 提供该服务的在线对端
+     */
+    public List<Peer> getPeers(String service) {
+        List<Peer> result = new ArrayList<>();
+        for (Entry entry : peers.values()) {
+            Peer peer = entry.peer;
+            if (peer.hasService(service)) {
+                result.add(peer);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param service 服务名称
+     * @return 提供该服务的任意一个在线对端，没有时返回null
+     */
+    public Peer getPeer(String service) {
+        for (Entry entry : peers.values()) {
+            Peer peer = entry.peer;
+            if (peer.hasService(service)) {
+                return peer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 单播发送给提供该服务的所有在线对端，消息只压缩一次
+     *
+     * @param service 服务名称
+     * @param message 消息
+     * @return 成功入队的对端数量
+     */
+    public int send(String service, byte[] message) {
+        byte[] payload = endpoint.compressIfEnabled(message);
+        int queued = 0;
+        for (Entry entry : peers.values()) {
+            Peer peer = entry.peer;
+            if (peer.hasService(service)
+                    && endpoint.offerFrame(payload, peer.getAddress()) == SendStatus.QUEUED) {
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    public int send(String service, String message) {
+        return send(service, message.getBytes());
+    }
+
+    public int send(String service, Map<String, Object> map) {
+        return send(service, JsonWriter.encode(map));
+    }
+
+    private void announce() {
+        boolean isStartup = startupRemaining > 0;
+        byte[] frame = announcement;
+        if (isStartup) {
+            startupRemaining--;
+            frame = frame.clone();
+            frame[2] = FLAG_REPLY;
+        }
+        sendAnnouncement(frame, broadcastAddress());
+        long delay = isStartup ? STARTUP_INTERVAL_MILLIS : intervalMillis;
+        delay = (long) (delay * (1 - JITTER + 2 * JITTER * ThreadLocalRandom.current().nextDouble()));
+        synchronized (this) {
+            if (timer == null) {
+                return;
+            }
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    announce();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private InetSocketAddress broadcastAddress() {
+        String host = broadcastHost;
+        return new InetSocketAddress(host == null ? endpoint.getSubnetBroadcastAddress() : host, port);
+    }
+
+    private void sendAnnouncement(byte[] frame, InetSocketAddress target) {
+        if (target.isUnresolved()) {
+            UdpLog.e(TAG, "Unresolved broadcast host: " + target);
+            return;
+        }
+        endpoint.offerFrame(frame, target);
+    }
+
+    private synchronized byte[] encode(byte type) {
+        int length = HEADER_LENGTH;
+        byte[][] names = new byte[services.size()][];
+        int i = 0;
+        for (String service : services) {
+            names[i] = service.getBytes(StandardCharsets.UTF_8);
+            length += 1 + names[i].length;
+            i++;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        frame.put(Frames.DISCOVERY).put(type).put((byte) 0).putLong(instanceId)
+                .putInt((int) Math.min(Integer.MAX_VALUE, intervalMillis * TTL_INTERVALS))
+                .putShort((short) endpoint.getLocalPort())
+                .put((byte) names.length);
+        for (byte[] name : names) {
+            frame.put((byte) name.length).put(name);
+        }
+        return frame.array();
+    }
+
+    /**
+     * 处理对端的通告，在接收线程中调用
+     *
+     * @param data   通告帧，position位于标记
+     * @param source 发送方地址
+     */
+    void onFrame(ByteBuffer data, InetSocketAddress source) {
+        if (data.remaining() < HEADER_LENGTH) {
+            return;
+        }
+        data.get();
+        byte type = data.get();
+        byte flags = data.get();
+        long id = data.getLong();
+        if (id == instanceId) {
+            // 自己的广播
+            return;
+        }
+        long ttlMillis = Math.min(data.getInt() & 0xFFFFFFFFL,
+                Math.max(intervalMillis, DEFAULT_INTERVAL_MILLIS) * MAX_TTL_INTERVALS);
+        int peerPort = data.getShort() & 0xFFFF;
+        if (type == TYPE_BYE) {
+            Entry entry = peers.remove(id);
+            if (entry != null) {
+                notifyRemoved(entry.peer);
+            }
+            return;
+        }
+        if (type != TYPE_ANNOUNCE) {
+            return;
+        }
+        int count = data.get() & 0xFF;
+        Set<String> peerServices = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            if (!data.hasRemaining()) {
+                return;
+            }
+            int length = data.get() & 0xFF;
+            if (data.remaining() < length) {
+                return;
+            }
+            byte[] name = new byte[length];
+            data.get(name);
+            peerServices.add(new String(name, StandardCharsets.UTF_8));
+        }
+        InetSocketAddress address = new InetSocketAddress(source.getAddress(), peerPort);
+        Peer peer = new Peer(id, address, Collections.unmodifiableSet(peerServices));
+        long expires = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        Entry entry = peers.get(id);
+        if (entry == null) {
+            if (peers.size() >= MAX_PEERS) {
+                return;
+            }
+            entry = new Entry(peer);
+            entry.expiresNanos = expires;
+            Entry exist = peers.putIfAbsent(id, entry);
+            if (exist == null) {
+                notifyAdded(peer);
+            } else {
+                update(exist, peer, expires);
+            }
+        } else {
+            update(entry, peer, expires);
+        }
+        if ((flags & FLAG_REPLY) != 0 && isRunning()) {
+            sendAnnouncement(announcement, address);
+        }
+    }
+
+    private void update(Entry entry, Peer peer, long expires) {
+        entry.expiresNanos = expires;
+        Peer old = entry.peer;
+        if (!old.getAddress().equals(peer.getAddress()) || !old.getServices().equals(peer.getServices())) {
+            entry.peer = peer;
+            notifyChanged(peer);
+        }
+    }
+
+    void sweep(long now) {
+        for (Entry entry : peers.values()) {
+            if (now - entry.expiresNanos > 0 && peers.remove(entry.peer.getInstanceId(), entry)) {
+                notifyRemoved(entry.peer);
+            }
+        }
+    }
+
+    private void notifyAdded(Peer peer) {
+        OnPeerChangeListener l = listener;
+        if (l == null) {
+            return;
+        }
+        try {
+            l.onPeerAdded(peer);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void notifyChanged(Peer peer) {
+        OnPeerChangeListener l = listener;
+        if (l == null) {
+            return;
+        }
+        try {
+            l.onPeerChanged(peer);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void notifyRemoved(Peer peer) {
+        OnPeerChangeListener l = listener;
+        if (l == null) {
+            return;
+        }
+        try {
+            l.onPeerRemoved(peer);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
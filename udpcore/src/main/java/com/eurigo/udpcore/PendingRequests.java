@@ -0,0 +1,110 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @author Eurigo
+ * desc   : 等待响应的请求表，关联ID从随机值开始递增分配，按ID取模直接定位槽位，移除为一次CAS。
+ * 槽位仍被更早的请求（如超时较长的请求）占用时跳过该ID继续向后探测，所有槽位都被占用时拒绝新请求
+ */
+final class PendingRequests {
+
+    static final class Pending extends TimingWheel.Task {
+        final long id;
+        /**
+         * 请求的目标，只接受来自该地址的响应，广播请求为null
+         */
+        final InetSocketAddress peer;
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        private final PendingRequests table;
+
+        Pending(long id, InetSocketAddress peer, PendingRequests table) {
+            this.id = id;
+            this.peer = peer;
+            this.table = table;
+        }
+
+        @Override
+        void expire() {
+            // 已收到响应时表中已移除，到期什么都不做
+            if (table.remove(this)) {
+                table.metrics.requestTimeouts.increment();
+                future.completeExceptionally(new TimeoutException("request " + id + " timed out"));
+            }
+        }
+    }
+
+    private final AtomicReferenceArray<Pending> slots;
+    private final int mask;
+    /**
+     * 随机起始值，重启后的新请求不会被重启前请求的迟到响应完成，也难以被猜测
+     */
+    private final AtomicLong nextId = new AtomicLong(ThreadLocalRandom.current().nextLong());
+    private final UdpMetrics metrics;
+
+    /**
+     * @param capacity 同时等待响应的请求上限，取整为2的幂
+     */
+    PendingRequests(int capacity, UdpMetrics metrics) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param peer 请求的目标，广播请求传入null，此时接受任意来源的响应
+     * @return 新的请求，所有槽位都被未完成的请求占用时返回null
+     */
+    Pending add(InetSocketAddress peer) {
+        // 最多探测一圈，ID连续递增时依次落在相邻槽位
+        for (int i = 0; i <= mask; i++) {
+            long id = nextId.getAndIncrement();
+            int index = (int) (id & mask);
+            if (slots.get(index) != null) {
+                continue;
+            }
+            Pending pending = new Pending(id, peer, this);
+            if (slots.compareAndSet(index, null, pending)) {
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按关联ID取出请求，单播请求校验响应来源，广播请求由第一个响应完成
+     *
+     * @param source 响应来源
+     * @return 请求，已超时、已完成或来源不符时返回null
+     */
+    Pending remove(long id, InetSocketAddress source) {
+        int index = (int) (id & mask);
+        Pending pending = slots.get(index);
+        if (pending == null || pending.id != id || (pending.peer != null && !pending.peer.equals(source))) {
+            return null;
+        }
+        return slots.compareAndSet(index, pending, null) ? pending : null;
+    }
+
+    boolean remove(Pending pending) {
+        return slots.compareAndSet((int) (pending.id & mask), pending, null);
+    }
+
+    /**
+     * 取消所有未完成的请求
+     */
+    void cancelAll() {
+        for (int i = 0; i < slots.length(); i++) {
+            Pending pending = slots.getAndSet(i, null);
+            if (pending != null) {
+                pending.future.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Eurigo
+ * desc   : 接收端分片重组，按发送方地址+消息ID区分，
+ * 未完成的消息受总内存和超时时间限制，超出时淘汰最早的消息。
+ * 分片数组按分片总数预先分配，同样计入内存占用
+ */
+final class Reassembler {
+
+    /**
+     * 分片数组中每个引用按8字节估算
+     */
+    static final int PART_REFERENCE_BYTES = 8;
+
+    private final long maxPendingBytes;
+    private final int maxFragmentPayload;
+    private final long timeoutNanos;
+    /**
+     * 按插入顺序排列，队头即最早的未完成消息
+     */
+    private final LinkedHashMap<Key, Partial> partials = new LinkedHashMap<>();
+    private long pendingBytes;
+
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong malformedCount = new AtomicLong();
+    private final AtomicLong truncatedCount = new AtomicLong();
+
+    /**
+     * @param maxPendingBytes    所有未完成消息最多占用的内存，也是单条消息的长度上限
+     * @param maxFragmentPayload 单个分片最多携带的数据长度，即接收缓冲区长度减去帧头
+     * @param timeoutNanos       未完成消息的超时时间
+     */
+    Reassembler(long maxPendingBytes, int maxFragmentPayload, long timeoutNanos) {
+        this.maxPendingBytes = maxPendingBytes;
+        this.maxFragmentPayload = maxFragmentPayload;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    /**
+     * 处理一个分片帧
+     *
+     * @param frame  分片帧，position指向帧标记
+     * @param source 发送方地址
+     * @return 重组完成的消息，未完成时返回null
+     */
+    synchronized byte[] onFragment(ByteBuffer frame, InetSocketAddress source) {
+        long now = System.nanoTime();
+        expire(now);
+        if (frame.remaining() < Frames.FRAGMENT_HEADER_LENGTH) {
+            malformedCount.incrementAndGet();
+            return null;
+        }
+        frame.get();
+        int messageId = frame.getInt();
+        int index = frame.getShort() & 0xFFFF;
+        int count = frame.getShort() & 0xFFFF;
+        if (count == 0 || index >= count) {
+            malformedCount.incrementAndGet();
+            return null;
+        }
+        if ((long) count * maxFragmentPayload > maxPendingBytes) {
+            // 分片总数来自对端，按最大分片长度估算的消息总长度超出上限时不分配分片数组
+            malformedCount.incrementAndGet();
+            return null;
+        }
+        byte[] payload = new byte[frame.remaining()];
+        frame.get(payload);
+        if (count == 1) {
+            completedCount.incrementAndGet();
+            return payload;
+        }
+        Key key = new Key(source, messageId);
+        Partial partial = partials.get(key);
+        if (partial == null) {
+            partial = new Partial(count, now);
+            partials.put(key, partial);
+            pendingBytes += partial.bytes;
+        } else if (partial.parts.length != count) {
+            malformedCount.incrementAndGet();
+            return null;
+        }
+        if (partial.parts[index] != null) {
+            // 重复的分片
+            return null;
+        }
+        partial.parts[index] = payload;
+        partial.received++;
+        partial.bytes += payload.length;
+        pendingBytes += payload.length;
+        if (partial.received < count) {
+            evictIfNeeded(key);
+            return null;
+        }
+        partials.remove(key);
+        pendingBytes -= partial.bytes;
+        if (!isLengthConsistent(partial.parts)) {
+            truncatedCount.incrementAndGet();
+            return null;
+        }
+        completedCount.incrementAndGet();
+        byte[] message = new byte[(int) (partial.bytes - partial.overhead)];
+        int offset = 0;
+        for (byte[] part : partial.parts) {
+            System.arraycopy(part, 0, message, offset, part.length);
+            offset += part.length;
+        }
+        return message;
+    }
+
+    /**
+     * 除最后一个分片外，所有分片的长度应当相同，且最后一个分片不长于其他分片，
+     * 否则说明有分片在接收时被截断
+     */
+    private static boolean isLengthConsistent(byte[][] parts) {
+        int expected = parts[0].length;
+        int last = parts.length - 1;
+        for (int i = 1; i < last; i++) {
+            if (parts[i].length != expected) {
+                return false;
+            }
+        }
+        return parts[last].length <= expected;
+    }
+
+    private void expire(long now) {
+        Iterator<Partial> iterator = partials.values().iterator();
+        while (iterator.hasNext()) {
+            Partial partial = iterator.next();
+            if (now - partial.createNanos < timeoutNanos) {
+                // 按插入顺序排列，后面的更新
+                return;
+            }
+            iterator.remove();
+            pendingBytes -= partial.bytes;
+            timeoutCount.incrementAndGet();
+        }
+    }
+
+    private void evictIfNeeded(Key current) {
+        Iterator<Map.Entry<Key, Partial>> iterator = partials.entrySet().iterator();
+        while (pendingBytes > maxPendingBytes && iterator.hasNext()) {
+            Map.Entry<Key, Partial> entry = iterator.next();
+            iterator.remove();
+            pendingBytes -= entry.getValue().bytes;
+            evictedCount.incrementAndGet();
+            if (entry.getKey().equals(current)) {
+                return;
+            }
+        }
+    }
+
+    synchronized int getPendingCount() {
+        return partials.size();
+    }
+
+    synchronized long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * @return 超时未收齐而被丢弃的消息数量
+     */
+    long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * @return 因内存上限被淘汰的消息数量
+     */
+    long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    long getMalformedCount() {
+        return malformedCount.get();
+    }
+
+    /**
+     * @return 分片长度不一致（有分片被截断）而丢弃的消息数量
+     */
+    long getTruncatedCount() {
+        return truncatedCount.get();
+    }
+
+    private static final class Partial {
+        final byte[][] parts;
+        final long createNanos;
+        /**
+         * 分片数组自身占用的内存
+         */
+        final long overhead;
+        int received;
+        /**
+         * 计入{@link #pendingBytes}的内存，包括分片数组和已收到的数据
+         */
+        long bytes;
+
+        Partial(int count, long createNanos) {
+            this.parts = new byte[count][];
+            this.createNanos = createNanos;
+            this.overhead = (long) count * PART_REFERENCE_BYTES;
+            this.bytes = overhead;
+        }
+    }
+
+    private static final class Key {
+        final InetSocketAddress source;
+        final int messageId;
+
+        Key(InetSocketAddress source, int messageId) {
+            this.source = source;
+            this.messageId = messageId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return messageId == key.messageId && source.equals(key.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * source.hashCode() + messageId;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : UDP接收模式
+ */
+public enum ReceiveMode {
+
+    /**
+     * 阻塞模式：一个线程阻塞在 {@link java.net.DatagramSocket#receive} 上，只能监听一个端口
+     */
+    BLOCKING,
+
+    /**
+     * Selector模式：非阻塞 {@link java.nio.channels.DatagramChannel} + {@link java.nio.channels.Selector}，
+     * 一个事件循环线程即可监听多个端口，每次就绪后循环读空通道再重新select
+     */
+    SELECTOR,
+
+    /**
+     * 多Socket接收模式：通过SO_REUSEPORT将多个Socket绑定到同一端口，每个Socket由独立线程接收，
+     * 接收吞吐随CPU核数扩展，接收回调会在多个线程中并发执行。系统不支持SO_REUSEPORT时退化为单个Socket。
+     * 广播和组播只由绑定通配地址的一个Socket接收，每个数据包只回调一次，不参与多线程分担
+     */
+    SHARDED
+}
@@ -0,0 +1,396 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Eurigo
+ * desc   : 到单个对端的可靠有序通道，由{@link UdpEndpoint#openReliableChannel}创建。
+ * 序号+累计确认+选择确认，滑动窗口内的消息超时未确认时重传，超时时间按RTT估算（RFC 6298），
+ * 对端按序号顺序回调，丢包只阻塞本通道。
+ * 帧在持有通道锁时组装，释放锁后再放入发送队列，{@link OverflowPolicy#BLOCK}下队列已满时不阻塞确认处理和超时检查。
+ * 数据帧：[标记(1)][类型(1)][会话ID(4)][序号(4)][载荷]
+ * 确认帧：[标记(1)][类型(1)][会话ID(4)][期望的下一个序号(4)][选择确认位图(8)]
+ */
+public final class ReliableChannel {
+
+    private static final String TAG = "ReliableChannel";
+
+    static final byte TYPE_DATA = 0;
+    static final byte TYPE_ACK = 1;
+    static final int DATA_HEADER_LENGTH = 10;
+    static final int ACK_LENGTH = 18;
+
+    /**
+     * 窗口上限，与确认帧中选择确认位图的位数一致
+     */
+    public static final int MAX_WINDOW = 64;
+    /**
+     * 默认窗口大小
+     */
+    public static final int DEFAULT_WINDOW = 32;
+    /**
+     * 窗口已满时等待发送的消息上限
+     */
+    public static final int DEFAULT_BACKLOG = 1024;
+    /**
+     * 单条消息的最大重传次数，超过后认为对端不可达，丢弃所有未确认的消息并开始新的会话
+     */
+    public static final int MAX_RETRANSMITS = 10;
+
+    static final long MIN_RTO_NANOS = TimeUnit.MILLISECONDS.toNanos(30);
+    static final long MAX_RTO_NANOS = TimeUnit.SECONDS.toNanos(3);
+    static final long INITIAL_RTO_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    /**
+     * 被更大的序号越过多少次后快速重传
+     */
+    private static final int FAST_RETRANSMIT_THRESHOLD = 3;
+
+    private static final Random SESSION_RANDOM = new Random();
+
+    private static final class Entry {
+        byte[] frame;
+        long sentNanos;
+        int retransmits;
+        int skipped;
+        boolean isAcked;
+    }
+
+    private final UdpEndpoint endpoint;
+    private final UdpMetrics metrics;
+    private final InetSocketAddress peer;
+    private final Entry[] window;
+    private final int windowSize;
+    private final int backlogCapacity;
+    private final ArrayDeque<byte[]> backlog = new ArrayDeque<>();
+
+    private int session;
+    /**
+     * 最早未确认的序号
+     */
+    private int base;
+    private int nextSeq;
+    private long srttNanos = -1;
+    private long rttvarNanos;
+    private long rtoNanos = INITIAL_RTO_NANOS;
+    private long retransmitCount;
+    private boolean isClosed;
+
+    ReliableChannel(UdpEndpoint endpoint, UdpMetrics metrics, InetSocketAddress peer,
+                    int windowSize, int backlogCapacity) {
+        this.endpoint = endpoint;
+        this.metrics = metrics;
+        this.peer = peer;
+        this.windowSize = windowSize;
+        this.backlogCapacity = backlogCapacity;
+        this.window = new Entry[MAX_WINDOW];
+        for (int i = 0; i < window.length; i++) {
+            window[i] = new Entry();
+        }
+        this.session = newSession();
+    }
+
+    /**
+     * 可靠发送，窗口未满时立即发送，否则排队等待确认腾出窗口
+     *
+     * @param message 消息
+     * @return 入队结果，通道已关闭或等待队列已满时为{@link SendStatus#REJECTED}
+     */
+    public SendStatus send(byte[] message) {
+        byte[] payload = endpoint.compressIfEnabled(message);
+        byte[] frame = null;
+        synchronized (this) {
+            if (isClosed) {
+                return SendStatus.REJECTED;
+            }
+            if (nextSeq - base < windowSize && backlog.isEmpty()) {
+                frame = transmit(payload);
+            } else if (backlog.size() < backlogCapacity) {
+                backlog.add(payload);
+            } else {
+                return SendStatus.REJECTED;
+            }
+        }
+        if (frame != null) {
+            endpoint.offerFrame(frame, peer);
+        }
+        return SendStatus.QUEUED;
+    }
+
+    public SendStatus send(String message) {
+        return send(message.getBytes());
+    }
+
+    public SendStatus send(Map<String, Object> map) {
+        return send(JsonWriter.encode(map));
+    }
+
+    /**
+     * @param message 已通过{@link UdpEndpoint#registerMessageType}注册类型的消息
+     */
+    public SendStatus sendObject(Object message) {
+        return send(endpoint.encodeObject(message));
+    }
+
+    /**
+     * 关闭通道，未确认和等待中的消息不再重传
+     */
+    public void close() {
+        synchronized (this) {
+            isClosed = true;
+            clear();
+        }
+        endpoint.removeReliableChannel(this);
+    }
+
+    public InetSocketAddress getPeer() {
+        return peer;
+    }
+
+    /**
+     * @return 已发送未确认和等待窗口的消息数量
+     */
+    public synchronized int getPendingCount() {
+        return nextSeq - base + backlog.size();
+    }
+
+    /**
+     * @return 当前重传超时，毫秒
+     */
+    public synchronized long getRetransmitTimeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(rtoNanos);
+    }
+
+    /**
+     * @return 平滑RTT，毫秒，尚未采样时为-1
+     */
+    public synchronized long getSmoothedRttMillis() {
+        return srttNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(srttNanos);
+    }
+
+    public synchronized long getRetransmitCount() {
+        return retransmitCount;
+    }
+
+    public synchronized boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * 放入窗口并组装数据帧，由调用方释放锁后发送
+     */
+    private byte[] transmit(byte[] payload) {
+        int seq = nextSeq++;
+        byte[] frame = new byte[DATA_HEADER_LENGTH + payload.length];
+        frame[0] = Frames.RELIABLE;
+        frame[1] = TYPE_DATA;
+        putInt(frame, 2, session);
+        putInt(frame, 6, seq);
+        System.arraycopy(payload, 0, frame, DATA_HEADER_LENGTH, payload.length);
+        Entry entry = window[seq & (MAX_WINDOW - 1)];
+        entry.frame = frame;
+        entry.sentNanos = System.nanoTime();
+        entry.retransmits = 0;
+        entry.skipped = 0;
+        entry.isAcked = false;
+        return frame;
+    }
+
+    private byte[] retransmit(Entry entry, long now) {
+        entry.retransmits++;
+        entry.sentNanos = now;
+        entry.skipped = 0;
+        retransmitCount++;
+        metrics.reliableRetransmits.increment();
+        return entry.frame;
+    }
+
+    /**
+     * @param frames 待发送的帧，为null时新建
+     */
+    private static List<byte[]> append(List<byte[]> frames, byte[] frame) {
+        if (frames == null) {
+            frames = new ArrayList<>();
+        }
+        frames.add(frame);
+        return frames;
+    }
+
+    /**
+     * 在锁外发送帧，队列已满时{@link OverflowPolicy#BLOCK}可能在这里等待
+     */
+    private void offer(List<byte[]> frames) {
+        if (frames == null) {
+            return;
+        }
+        for (byte[] frame : frames) {
+            endpoint.offerFrame(frame, peer);
+        }
+    }
+
+    /**
+     * 处理对端的确认帧，在接收线程中调用
+     *
+     * @param data 确认帧，position位于会话ID
+     */
+    void onAck(ByteBuffer data) {
+        List<byte[]> frames;
+        synchronized (this) {
+            frames = processAck(data);
+        }
+        offer(frames);
+    }
+
+    /**
+     * @return 快速重传和窗口腾出后发送的帧，没有时为null
+     */
+    private List<byte[]> processAck(ByteBuffer data) {
+        if (isClosed || data.remaining() < ACK_LENGTH - 2 || data.getInt() != session) {
+            return null;
+        }
+        int cumulative = data.getInt();
+        long sack = data.getLong();
+        long now = System.nanoTime();
+        // 确认号只能落在已发送的范围内
+        if (cumulative - base < 0 || cumulative - nextSeq > 0) {
+            return null;
+        }
+        while (base - cumulative < 0) {
+            acknowledge(window[base & (MAX_WINDOW - 1)], now);
+            base++;
+        }
+        int highest = cumulative - 1;
+        for (int i = 0; i < MAX_WINDOW && sack >>> i != 0; i++) {
+            if ((sack >>> i & 1) == 0) {
+                continue;
+            }
+            int seq = cumulative + 1 + i;
+            if (seq - nextSeq >= 0) {
+                break;
+            }
+            Entry entry = window[seq & (MAX_WINDOW - 1)];
+            if (!entry.isAcked) {
+                acknowledge(entry, now);
+            }
+            highest = seq;
+        }
+        List<byte[]> frames = null;
+        // 被选择确认越过的空洞，多次被越过后不等超时直接重传
+        for (int seq = base; seq - highest < 0; seq++) {
+            Entry entry = window[seq & (MAX_WINDOW - 1)];
+            if (!entry.isAcked && ++entry.skipped == FAST_RETRANSMIT_THRESHOLD) {
+                frames = append(frames, retransmit(entry, now));
+            }
+        }
+        while (base != nextSeq && window[base & (MAX_WINDOW - 1)].isAcked) {
+            base++;
+        }
+        while (!backlog.isEmpty() && nextSeq - base < windowSize) {
+            frames = append(frames, transmit(backlog.poll()));
+        }
+        return frames;
+    }
+
+    private void acknowledge(Entry entry, long now) {
+        if (entry.isAcked) {
+            return;
+        }
+        // Karn算法：重传过的消息无法区分确认对应哪一次发送，不参与RTT估算
+        if (entry.retransmits == 0) {
+            updateRtt(now - entry.sentNanos);
+        }
+        entry.isAcked = true;
+        entry.frame = null;
+    }
+
+    private void updateRtt(long sample) {
+        if (srttNanos < 0) {
+            srttNanos = sample;
+            rttvarNanos = sample / 2;
+        } else {
+            rttvarNanos = (3 * rttvarNanos + Math.abs(srttNanos - sample)) / 4;
+            srttNanos = (7 * srttNanos + sample) / 8;
+        }
+        rtoNanos = Math.max(MIN_RTO_NANOS, Math.min(MAX_RTO_NANOS, srttNanos + 4 * rttvarNanos));
+    }
+
+    /**
+     * 定时检查超时，由端点的定时线程调用
+     */
+    void onTick(long now) {
+        List<byte[]> frames;
+        synchronized (this) {
+            frames = collectTimeouts(now);
+        }
+        offer(frames);
+    }
+
+    /**
+     * @return 超时需要重传的帧，没有时为null
+     */
+    private List<byte[]> collectTimeouts(long now) {
+        if (isClosed || base == nextSeq) {
+            return null;
+        }
+        List<byte[]> frames = null;
+        boolean isTimeout = false;
+        for (int seq = base; seq != nextSeq; seq++) {
+            Entry entry = window[seq & (MAX_WINDOW - 1)];
+            if (entry.isAcked || now - entry.sentNanos < rtoNanos) {
+                continue;
+            }
+            if (entry.retransmits >= MAX_RETRANSMITS) {
+                reset();
+                return null;
+            }
+            isTimeout = true;
+            frames = append(frames, retransmit(entry, now));
+        }
+        if (isTimeout) {
+            // 超时说明网络拥塞或对端不可达，指数退避
+            rtoNanos = Math.min(MAX_RTO_NANOS, rtoNanos * 2);
+        }
+        return frames;
+    }
+
+    /**
+     * 对端长时间不可达，丢弃未确认和等待中的消息，以新会话重新开始，对端收到新会话后重置接收状态
+     */
+    private void reset() {
+        int dropped = nextSeq - base + backlog.size();
+        metrics.reliableFailures.add(dropped);
+        UdpLog.e(TAG, peer + " unreachable, dropped " + dropped + " messages");
+        clear();
+        session = newSession();
+        base = 0;
+        nextSeq = 0;
+        srttNanos = -1;
+        rtoNanos = INITIAL_RTO_NANOS;
+    }
+
+    private void clear() {
+        for (Entry entry : window) {
+            entry.frame = null;
+            entry.isAcked = true;
+        }
+        base = nextSeq;
+        backlog.clear();
+    }
+
+    private static int newSession() {
+        return SESSION_RANDOM.nextInt();
+    }
+
+    static void putInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,116 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * @author Eurigo
+ * desc   : 可靠通道的接收端状态，每个对端一个，按序号顺序交给端点继续处理，
+ * 窗口内提前到达的消息先缓存，每收到一个数据帧回复一次确认
+ */
+final class ReliableReceiver {
+
+    interface Delivery {
+        /**
+         * 按顺序交付的载荷，在持有本对象锁时调用，保证同一对端的回调顺序
+         */
+        void onPayload(ByteBuffer payload, InetSocketAddress source, long receiveNanos);
+    }
+
+    private final UdpMetrics metrics;
+    private final byte[][] slots = new byte[ReliableChannel.MAX_WINDOW][];
+
+    private boolean hasSession;
+    private int session;
+    private int previousSession;
+    private int expected;
+
+    ReliableReceiver(UdpMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param data   数据帧，position位于会话ID
+     * @param source 对端地址
+     * @return 需要回复的确认帧，旧会话的残留数据帧和未知会话中序号不为0的数据帧返回null
+     */
+    synchronized byte[] onData(ByteBuffer data, InetSocketAddress source, long receiveNanos,
+                               Delivery delivery) {
+        if (data.remaining() < ReliableChannel.DATA_HEADER_LENGTH - 2) {
+            return null;
+        }
+        int frameSession = data.getInt();
+        int seq = data.getInt();
+        if (!hasSession || frameSession != session) {
+            if (hasSession && frameSession == previousSession) {
+                return null;
+            }
+            if (seq != 0) {
+                // 新会话从0开始，其余序号是接收状态被淘汰前的残留重传，不重置当前会话，等待对端以新会话重新开始
+                return null;
+            }
+            // 对端开始了新会话（重启或放弃重传），重置接收状态
+            previousSession = session;
+            session = frameSession;
+            hasSession = true;
+            expected = 0;
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = null;
+            }
+        }
+        int offset = seq - expected;
+        if (offset < 0) {
+            // 已交付过，确认丢失导致的重传，重新确认即可
+            metrics.reliableDuplicates.increment();
+        } else if (offset >= ReliableChannel.MAX_WINDOW) {
+            // 超出窗口，发送端不会这样做，忽略
+            return null;
+        } else if (offset == 0) {
+            // 按序到达，直接交付接收缓冲区的视图
+            expected++;
+            delivery.onPayload(data, source, receiveNanos);
+            drain(source, receiveNanos, delivery);
+        } else {
+            int index = seq & (ReliableChannel.MAX_WINDOW - 1);
+            if (slots[index] == null) {
+                byte[] payload = new byte[data.remaining()];
+                data.get(payload);
+                slots[index] = payload;
+            } else {
+                metrics.reliableDuplicates.increment();
+            }
+        }
+        return ack();
+    }
+
+    private void drain(InetSocketAddress source, long receiveNanos, Delivery delivery) {
+        while (true) {
+            int index = expected & (ReliableChannel.MAX_WINDOW - 1);
+            byte[] payload = slots[index];
+            if (payload == null) {
+                return;
+            }
+            slots[index] = null;
+            expected++;
+            delivery.onPayload(ByteBuffer.wrap(payload).asReadOnlyBuffer(), source, receiveNanos);
+        }
+    }
+
+    private byte[] ack() {
+        long sack = 0;
+        for (int i = 0; i < ReliableChannel.MAX_WINDOW - 1; i++) {
+            if (slots[(expected + 1 + i) & (ReliableChannel.MAX_WINDOW - 1)] != null) {
+                sack |= 1L << i;
+            }
+        }
+        byte[] frame = new byte[ReliableChannel.ACK_LENGTH];
+        frame[0] = Frames.RELIABLE;
+        frame[1] = ReliableChannel.TYPE_ACK;
+        ReliableChannel.putInt(frame, 2, session);
+        ReliableChannel.putInt(frame, 6, expected);
+        for (int i = 0; i < 8; i++) {
+            frame[10 + i] = (byte) (sack >>> (56 - 8 * i));
+        }
+        return frame;
+    }
+}
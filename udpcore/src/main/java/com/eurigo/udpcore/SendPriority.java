@@ -0,0 +1,39 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : 发送优先级，每个优先级一个发送队列，默认按严格优先级发送，
+ * 可通过{@link UdpEndpoint#setSendLaneWeights}改为加权轮询。
+ * 开启{@link UdpEndpoint#setTrafficClassMarkingEnabled}后按优先级设置IP_TOS（DSCP），
+ * Wi-Fi WMM据此选择空口队列
+ */
+public enum SendPriority {
+
+    /**
+     * 控制指令等紧急消息，DSCP EF（46），对应WMM语音队列
+     */
+    URGENT(0xB8),
+
+    /**
+     * 普通消息，未指定优先级时使用，DSCP默认（0），对应WMM尽力而为队列
+     */
+    NORMAL(0x00),
+
+    /**
+     * 遥测、日志等批量数据，DSCP CS1（8），对应WMM背景队列
+     */
+    BULK(0x20);
+
+    private final int trafficClass;
+
+    SendPriority(int trafficClass) {
+        this.trafficClass = trafficClass;
+    }
+
+    /**
+     * @return IP_TOS字节，DSCP左移2位
+     */
+    public int getTrafficClass() {
+        return trafficClass;
+    }
+}
@@ -0,0 +1,74 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : 异步发送的最终结果，见{@link UdpEndpoint#sendMessageAsync}。
+ * 没有异常的结果为共享实例，高频发送时不产生额外分配
+ */
+public final class SendResult {
+
+    public enum Status {
+        /**
+         * 已写入Socket，UDP不保证对端收到
+         */
+        SENT,
+
+        /**
+         * 队列已满按{@link OverflowPolicy}丢弃，或关闭UDP时仍在队列中
+         */
+        DROPPED,
+
+        /**
+         * 未进入队列，见{@link SendStatus#REJECTED}
+         */
+        REJECTED,
+
+        /**
+         * 写入Socket失败，原因见{@link #getCause()}
+         */
+        FAILED
+    }
+
+    static final SendResult SENT = new SendResult(Status.SENT, null);
+    static final SendResult DROPPED = new SendResult(Status.DROPPED, null);
+    static final SendResult REJECTED = new SendResult(Status.REJECTED, null);
+
+    private final Status status;
+    private final Throwable cause;
+
+    private SendResult(Status status, Throwable cause) {
+        this.status = status;
+        this.cause = cause;
+    }
+
+    static SendResult failed(Throwable cause) {
+        return new SendResult(Status.FAILED, cause);
+    }
+
+    /**
+     * @param status 未进入队列时的入队结果
+     */
+    static SendResult of(SendStatus status) {
+        return status == SendStatus.DROPPED ? DROPPED : REJECTED;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSent() {
+        return status == Status.SENT;
+    }
+
+    /**
+     * @return 失败原因，仅{@link Status#FAILED}时不为null
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return cause == null ? status.name() : status + ": " + cause;
+    }
+}
@@ -0,0 +1,23 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : 发送结果
+ */
+public enum SendStatus {
+
+    /**
+     * 已进入发送队列
+     */
+    QUEUED,
+
+    /**
+     * 队列已满，按{@link OverflowPolicy#DROP_NEWEST}丢弃
+     */
+    DROPPED,
+
+    /**
+     * 队列已满（{@link OverflowPolicy#FAIL_FAST}）或发送器已关闭，未进入队列
+     */
+    REJECTED
+}
@@ -0,0 +1,229 @@
+package com.eurigo.udpcore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author Eurigo
+ * desc   : 多Socket接收，通过SO_REUSEPORT将多个Socket绑定到同一端口，
+ * 由内核按四元组哈希分发数据包，每个Socket由独立线程阻塞接收，接收吞吐随CPU核数扩展。
+ * 内核会把广播和组播数据包复制给组内每个绑定通配地址的Socket，因此只有第一个Socket绑定通配地址，
+ * 负责广播、组播以及发往其他地址的数据包；其余Socket按本机每个IPv4地址各绑定一组，只分得单播数据包
+ */
+final class ShardedReceiver implements Closeable {
+
+    private static final String TAG = "ShardedReceiver";
+
+    /**
+     * 关闭时等待接收线程退出的最长时间
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+    /**
+     * 接收异常后的等待时间，连续异常时翻倍直到上限，避免Socket持续异常时空转
+     */
+    private static final long MIN_ERROR_BACKOFF_MILLIS = 1;
+    private static final long MAX_ERROR_BACKOFF_MILLIS = 1000;
+
+    private final ByteBufferPool bufferPool;
+    private final PacketHandler handler;
+    private final List<DatagramChannel> channels = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean isRunning = false;
+
+    ShardedReceiver(ByteBufferPool bufferPool, PacketHandler handler) {
+        this.bufferPool = bufferPool;
+        this.handler = handler;
+    }
+
+    /**
+     * 绑定端口，系统不支持SO_REUSEPORT时退化为单个Socket
+     *
+     * @param port       监听端口
+     * @param shardCount 每个本机地址上分担单播的Socket数量加1
+     * @return 实际的Socket数量
+     */
+    int bind(int port, int shardCount) throws IOException {
+        try {
+            DatagramChannel wildcard = open();
+            if (!SocketOptionsCompat.setReusePort(wildcard)) {
+                wildcard.socket().bind(new InetSocketAddress(port));
+                return channels.size();
+            }
+            wildcard.socket().bind(new InetSocketAddress(port));
+            if (shardCount <= 1) {
+                return channels.size();
+            }
+            for (InetAddress address : localAddresses()) {
+                bindAddress(address, port, shardCount - 1);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        return channels.size();
+    }
+
+    private DatagramChannel open() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channels.add(channel);
+        channel.socket().setReuseAddress(true);
+        channel.socket().setBroadcast(true);
+        return channel;
+    }
+
+    /**
+     * 地址已失效等原因绑定失败时放弃该地址，发往该地址的数据包由通配地址的Socket接收
+     */
+    private void bindAddress(InetAddress address, int port, int count) throws IOException {
+        int first = channels.size();
+        try {
+            for (int i = 0; i < count; i++) {
+                DatagramChannel channel = open();
+                if (!SocketOptionsCompat.setReusePort(channel)) {
+                    throw new SocketException("SO_REUSEPORT unsupported");
+                }
+                channel.socket().bind(new InetSocketAddress(address, port));
+            }
+        } catch (IOException e) {
+            UdpLog.e(TAG, "bind " + address.getHostAddress() + ":" + port + " failed", e);
+            while (channels.size() > first) {
+                channels.remove(channels.size() - 1).close();
+            }
+        }
+    }
+
+    /**
+     * @return 已启用网卡上的IPv4单播地址，无法获取时为空，只使用通配地址的Socket
+     */
+    private static List<InetAddress> localAddresses() {
+        List<InetAddress> addresses = new ArrayList<>();
+        try {
+            Enumeration<NetworkInterface> nis = NetworkInterface.getNetworkInterfaces();
+            while (nis != null && nis.hasMoreElements()) {
+                NetworkInterface ni = nis.nextElement();
+                if (!ni.isUp()) {
+                    continue;
+                }
+                Enumeration<InetAddress> inetAddresses = ni.getInetAddresses();
+                while (inetAddresses.hasMoreElements()) {
+                    InetAddress address = inetAddresses.nextElement();
+                    if (address instanceof Inet4Address && !address.isMulticastAddress()) {
+                        addresses.add(address);
+                    }
+                }
+            }
+        } catch (SocketException e) {
+            UdpLog.e(TAG, "list network interfaces failed", e);
+        }
+        return addresses;
+    }
+
+    /**
+     * 每个Socket启动一个接收线程
+     */
+    void start(ThreadFactory threadFactory) {
+        isRunning = true;
+        for (final DatagramChannel channel : channels) {
+            Thread thread = threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    receive(channel);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    private void receive(DatagramChannel channel) {
+        long backoff = 0;
+        while (isRunning) {
+            PacketBuffer buffer = bufferPool.acquire();
+            SocketAddress source;
+            try {
+                source = channel.receive(buffer.buffer());
+            } catch (IOException e) {
+                bufferPool.release(buffer);
+                if (!channel.isOpen()) {
+                    return;
+                }
+                backoff = backoff == 0 ? MIN_ERROR_BACKOFF_MILLIS
+                        : Math.min(backoff * 2, MAX_ERROR_BACKOFF_MILLIS);
+                UdpLog.e(TAG, "receive failed, retry in " + backoff + "ms", e);
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(backoff));
+                continue;
+            }
+            backoff = 0;
+            if (source == null) {
+                bufferPool.release(buffer);
+                continue;
+            }
+            buffer.buffer().flip();
+            buffer.receiveNanos = System.nanoTime();
+            try {
+                handler.onPacket(buffer, source);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return 用于发送的通道，固定使用绑定通配地址的第一个Socket
+     */
+    DatagramChannel getSendChannel() {
+        return channels.isEmpty() ? null : channels.get(0);
+    }
+
+    List<DatagramChannel> getChannels() {
+        return channels;
+    }
+
+    int getShardCount() {
+        return channels.size();
+    }
+
+    /**
+     * 关闭所有Socket并等待接收线程退出。阻塞在接收中的Socket要等线程被唤醒后才真正释放，
+     * 释放前仍在SO_REUSEPORT组中分得数据包，重新绑定后立即发来的数据包可能因此丢失
+     */
+    @Override
+    public void close() {
+        isRunning = false;
+        for (DatagramChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        channels.clear();
+        for (Thread thread : threads) {
+            // 接收回调中关闭时不能等待自身
+            if (thread == Thread.currentThread()) {
+                continue;
+            }
+            // 唤醒异常后等待重试的线程
+            LockSupport.unpark(thread);
+            try {
+                thread.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.clear();
+    }
+}
@@ -0,0 +1,60 @@
+package com.eurigo.udpcore;
+
+import java.lang.reflect.Field;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * @author Eurigo
+ * desc   : 兼容不同JDK/Android版本的Socket选项设置
+ */
+final class SocketOptionsCompat {
+
+    private SocketOptionsCompat() {
+    }
+
+    /**
+     * 设置内核收发缓冲区大小，内核可能将其限制在系统上限内（例如Linux的net.core.rmem_max），
+     * 实际大小以返回值为准
+     *
+     * @param socket            Socket
+     * @param receiveBufferSize SO_RCVBUF，小于等于0表示使用系统默认值
+     * @param sendBufferSize    SO_SNDBUF，小于等于0表示使用系统默认值
+     * @return 实际的SO_RCVBUF
+     */
+    static int applyBufferSizes(DatagramSocket socket, int receiveBufferSize, int sendBufferSize)
+            throws SocketException {
+        if (receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+        if (sendBufferSize > 0) {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+        return socket.getReceiveBufferSize();
+    }
+
+    /**
+     * 开启SO_REUSEPORT，需在bind之前调用。
+     * StandardSocketOptions.SO_REUSEPORT在JDK 9才加入，Android上通常不可用，因此通过反射获取
+     *
+     * @param channel 未绑定的通道
+     * @return 是否设置成功
+     */
+    @SuppressWarnings("unchecked")
+    static boolean setReusePort(DatagramChannel channel) {
+        try {
+            Field field = StandardSocketOptions.class.getField("SO_REUSEPORT");
+            SocketOption<Boolean> option = (SocketOption<Boolean>) field.get(null);
+            if (!channel.supportedOptions().contains(option)) {
+                return false;
+            }
+            channel.setOption(option, true);
+            return true;
+        } catch (Exception | LinkageError e) {
+            return false;
+        }
+    }
+}
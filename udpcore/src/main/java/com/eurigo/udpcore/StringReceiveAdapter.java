@@ -0,0 +1,34 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * @author Eurigo
+ * desc   : 将字节级回调适配为{@link OnUdpReceiveListener}
+ */
+final class StringReceiveAdapter implements OnUdpByteReceiveListener {
+
+    /**
+     * 只读视图无法直接访问数组，按线程复用拷贝用的临时数组
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<>();
+
+    private final OnUdpReceiveListener listener;
+
+    StringReceiveAdapter(OnUdpReceiveListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+        int length = data.remaining();
+        byte[] scratch = SCRATCH.get();
+        if (scratch == null || scratch.length < length) {
+            scratch = new byte[length];
+            SCRATCH.set(scratch);
+        }
+        data.get(scratch, 0, length);
+        listener.onReceived(new String(scratch, 0, length));
+    }
+}
@@ -0,0 +1,115 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * @author Eurigo
+ * desc   : 按来源分组的回调线程池，来源地址哈希到固定的分组，每个分组一个线程和一个有界队列：
+ * 同一来源的消息按接收顺序回调，不同来源并行执行，慢回调不再阻塞接收线程。
+ * 分组队列已满时丢弃新的回调，计入{@link UdpMetricsSnapshot#getDispatchDropped()}
+ */
+public final class StripedDispatcher implements UdpDispatcher {
+
+    private static final String TAG = "UdpDispatcher";
+
+    /**
+     * 每个分组的默认队列容量
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final class Stripe implements Runnable {
+        final BlockingQueue<Runnable> queue;
+        volatile boolean isRunning = true;
+
+        Stripe(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public void run() {
+            while (isRunning) {
+                Runnable callback;
+                try {
+                    callback = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    callback.run();
+                } catch (Exception e) {
+                    UdpLog.e(TAG, "dispatch callback failed", e);
+                }
+            }
+        }
+    }
+
+    private final int stripeCount;
+    private final int queueCapacity;
+    private volatile Stripe[] stripes;
+    private Thread[] threads;
+
+    /**
+     * 分组数量为CPU核数，队列容量为{@link #DEFAULT_QUEUE_CAPACITY}
+     */
+    public StripedDispatcher() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param stripeCount   分组数量，即回调线程数量
+     * @param queueCapacity 每个分组的队列容量
+     */
+    public StripedDispatcher(int stripeCount, int queueCapacity) {
+        this.stripeCount = Math.max(1, stripeCount);
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    @Override
+    public boolean isInline() {
+        return false;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (stripes != null) {
+            return;
+        }
+        Stripe[] s = new Stripe[stripeCount];
+        threads = new Thread[stripeCount];
+        UdpThreadFactory factory = new UdpThreadFactory(TAG);
+        for (int i = 0; i < stripeCount; i++) {
+            s[i] = new Stripe(queueCapacity);
+            threads[i] = factory.newThread(s[i]);
+            threads[i].start();
+        }
+        stripes = s;
+    }
+
+    @Override
+    public boolean dispatch(InetSocketAddress source, Runnable callback) {
+        Stripe[] s = stripes;
+        if (s == null) {
+            return false;
+        }
+        int h = source.hashCode();
+        h ^= h >>> 16;
+        return s[(h & Integer.MAX_VALUE) % s.length].queue.offer(callback);
+    }
+
+    @Override
+    public synchronized void stop() {
+        Stripe[] s = stripes;
+        if (s == null) {
+            return;
+        }
+        stripes = null;
+        for (int i = 0; i < s.length; i++) {
+            s[i].isRunning = false;
+            s[i].queue.clear();
+            threads[i].interrupt();
+        }
+        threads = null;
+    }
+}
@@ -0,0 +1,133 @@
+package com.eurigo.udpcore;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author Eurigo
+ * desc   : 哈希时间轮，大量短期超时共用一个线程，添加为一次CAS，到期精度为一个刻度。
+ * 任务本身即链表节点，添加时不产生额外分配；取消只需让任务到期时什么都不做
+ */
+final class TimingWheel {
+
+    private static final String TAG = "TimingWheel";
+
+    abstract static class Task {
+        long deadlineNanos;
+        long remainingRounds;
+        Task next;
+
+        /**
+         * 到期时在时间轮线程中调用，不要执行耗时操作
+         */
+        abstract void expire();
+    }
+
+    private final long tickNanos;
+    private final Task[] buckets;
+    private final int mask;
+    /**
+     * 调用方添加的任务先压入无锁栈，由时间轮线程放入对应的槽位
+     */
+    private final AtomicReference<Task> incoming = new AtomicReference<>();
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean isRunning = true;
+    private long tick;
+
+    /**
+     * @param tickMillis 刻度，毫秒
+     * @param wheelSize  槽位数量，取整为2的幂，一圈覆盖tickMillis*wheelSize
+     */
+    TimingWheel(long tickMillis, int wheelSize, ThreadFactory threadFactory) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.buckets = new Task[size];
+        this.mask = size - 1;
+        this.startNanos = System.nanoTime();
+        this.worker = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        });
+        worker.start();
+    }
+
+    /**
+     * @param task       任务，同一时间只能添加一次
+     * @param delayNanos 延迟，纳秒
+     */
+    void schedule(Task task, long delayNanos) {
+        task.deadlineNanos = System.nanoTime() + delayNanos;
+        Task head;
+        do {
+            head = incoming.get();
+            task.next = head;
+        } while (!incoming.compareAndSet(head, task));
+    }
+
+    /**
+     * 停止时间轮，未到期的任务不再回调
+     */
+    void stop() {
+        isRunning = false;
+        LockSupport.unpark(worker);
+    }
+
+    private void loop() {
+        while (isRunning) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadline && isRunning) {
+                LockSupport.parkNanos(this, deadline - now);
+            }
+            if (!isRunning) {
+                return;
+            }
+            transferIncoming();
+            expireBucket();
+            tick++;
+        }
+    }
+
+    private void transferIncoming() {
+        Task task = incoming.getAndSet(null);
+        while (task != null) {
+            Task next = task.next;
+            long ticks = (task.deadlineNanos - startNanos) / tickNanos;
+            // 已经过期的任务放入当前槽位，本次就会到期
+            long target = Math.max(ticks, tick);
+            task.remainingRounds = (target - tick) / buckets.length;
+            int index = (int) (target & mask);
+            task.next = buckets[index];
+            buckets[index] = task;
+            task = next;
+        }
+    }
+
+    private void expireBucket() {
+        int index = (int) (tick & mask);
+        Task task = buckets[index];
+        Task kept = null;
+        while (task != null) {
+            Task next = task.next;
+            if (task.remainingRounds <= 0) {
+                task.next = null;
+                try {
+                    task.expire();
+                } catch (Exception e) {
+                    UdpLog.e(TAG, "timeout task failed", e);
+                }
+            } else {
+                task.remainingRounds--;
+                task.next = kept;
+                kept = task;
+            }
+            task = next;
+        }
+        buckets[index] = kept;
+    }
+}
@@ -0,0 +1,62 @@
+package com.eurigo.udpcore;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Eurigo
+ * desc   : 令牌桶，令牌按速率匀速补充，最多积累burst个。
+ * 令牌不足时仍然扣除并记为欠账，返回还清欠账需要等待的时间，调用方等待后再发送，
+ * 连续发送时数据报按速率均匀间隔发出。非线程安全
+ */
+final class TokenBucket {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long lastNanos;
+
+    /**
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param burst         最多积累的令牌数，初始为满
+     */
+    TokenBucket(long ratePerSecond, long burst, long now) {
+        this.tokensPerNano = ratePerSecond / NANOS_PER_SECOND;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastNanos = now;
+    }
+
+    /**
+     * 扣除令牌
+     *
+     * @param amount 令牌数
+     * @return 需要等待的纳秒数，令牌充足时为0
+     */
+    long reserve(long amount, long now) {
+        refill(now);
+        tokens -= amount;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    /**
+     * 不扣除令牌，超过突发量时按突发量计算
+     *
+     * @param amount 令牌数
+     * @return 积累到amount个令牌需要等待的纳秒数，令牌充足时为0
+     */
+    long delay(long amount, long now) {
+        refill(now);
+        double missing = Math.min(amount, burst) - tokens;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / tokensPerNano);
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * tokensPerNano);
+            lastNanos = now;
+        }
+    }
+}
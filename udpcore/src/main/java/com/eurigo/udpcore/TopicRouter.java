@@ -0,0 +1,101 @@
+package com.eurigo.udpcore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Eurigo
+ * desc   : 主题路由表，写时复制：订阅变化时重建不可变的开放寻址表，
+ * 接收线程无锁读取，每个数据包一次哈希查找即可得到该主题的全部订阅
+ */
+final class TopicRouter {
+
+    /**
+     * 主题ID的取值范围，帧头中占2字节
+     */
+    static final int MAX_TOPIC = 0xFFFF;
+
+    private static final class Table {
+        /**
+         * 空槽位为-1
+         */
+        final int[] topics;
+        final TopicSubscription[][] subscriptions;
+        final int mask;
+        /**
+         * 乘法哈希取高位，位数与表大小一致
+         */
+        final int shift;
+
+        Table(Map<Integer, List<TopicSubscription>> byTopic) {
+            // 负载因子不超过0.5，探测距离很短
+            int size = 2;
+            while (size < byTopic.size() * 2) {
+                size <<= 1;
+            }
+            topics = new int[size];
+            subscriptions = new TopicSubscription[size][];
+            mask = size - 1;
+            shift = Integer.numberOfLeadingZeros(mask);
+            Arrays.fill(topics, -1);
+            for (Map.Entry<Integer, List<TopicSubscription>> entry : byTopic.entrySet()) {
+                int index = index(entry.getKey());
+                while (topics[index] != -1) {
+                    index = (index + 1) & mask;
+                }
+                topics[index] = entry.getKey();
+                subscriptions[index] = entry.getValue().toArray(new TopicSubscription[0]);
+            }
+        }
+
+        TopicSubscription[] get(int topic) {
+            int index = index(topic);
+            int t;
+            while ((t = topics[index]) != -1) {
+                if (t == topic) {
+                    return subscriptions[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private int index(int topic) {
+            return (topic * 0x9E3779B1) >>> shift;
+        }
+    }
+
+    private final Map<Integer, List<TopicSubscription>> byTopic = new HashMap<>();
+    private volatile Table table = new Table(byTopic);
+
+    synchronized void add(TopicSubscription subscription) {
+        List<TopicSubscription> list = byTopic.get(subscription.getTopic());
+        if (list == null) {
+            list = new ArrayList<>();
+            byTopic.put(subscription.getTopic(), list);
+        }
+        list.add(subscription);
+        table = new Table(byTopic);
+    }
+
+    synchronized void remove(TopicSubscription subscription) {
+        List<TopicSubscription> list = byTopic.get(subscription.getTopic());
+        if (list == null || !list.remove(subscription)) {
+            return;
+        }
+        if (list.isEmpty()) {
+            byTopic.remove(subscription.getTopic());
+        }
+        table = new Table(byTopic);
+    }
+
+    /**
+     * @return 该主题的全部订阅，没有订阅时返回null，调用方需按来源过滤
+     */
+    TopicSubscription[] route(int topic) {
+        return table.get(topic);
+    }
+}
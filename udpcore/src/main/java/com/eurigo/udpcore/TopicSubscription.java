@@ -0,0 +1,53 @@
+package com.eurigo.udpcore;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * @author Eurigo
+ * desc   : 主题订阅，由{@link UdpEndpoint#subscribe}创建，
+ * 只接收发往该主题（{@link UdpEndpoint#sendToTopic}）且来源匹配的消息，不再经过全局接收回调
+ */
+public final class TopicSubscription {
+
+    private final TopicRouter router;
+    private final int topic;
+    private final InetAddress sourceAddress;
+    private final int sourcePort;
+    final OnUdpByteReceiveListener listener;
+    private volatile boolean isActive = true;
+
+    TopicSubscription(TopicRouter router, int topic, InetSocketAddress sourceFilter,
+                      OnUdpByteReceiveListener listener) {
+        this.router = router;
+        this.topic = topic;
+        this.sourceAddress = sourceFilter == null ? null : sourceFilter.getAddress();
+        this.sourcePort = sourceFilter == null ? 0 : sourceFilter.getPort();
+        this.listener = listener;
+    }
+
+    /**
+     * @param source 发送方地址
+     * @return 是否接收该发送方的消息
+     */
+    boolean accepts(InetSocketAddress source) {
+        return (sourceAddress == null || sourceAddress.equals(source.getAddress()))
+                && (sourcePort == 0 || sourcePort == source.getPort());
+    }
+
+    /**
+     * 取消订阅，已分发到回调线程的消息仍会回调
+     */
+    public void cancel() {
+        isActive = false;
+        router.remove(this);
+    }
+
+    public int getTopic() {
+        return topic;
+    }
+
+    public boolean isActive() {
+        return isActive;
+    }
+}
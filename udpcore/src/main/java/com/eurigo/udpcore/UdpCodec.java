@@ -0,0 +1,26 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : 消息编解码，通过{@link UdpEndpoint#registerMessageType}注册后，
+ * {@link UdpEndpoint#sendObject}按注册的类型ID编码发送，接收端按类型ID解码并回调对应的监听
+ */
+public interface UdpCodec<T> {
+
+    /**
+     * 编码，writer按线程复用，不要在方法外持有
+     *
+     * @param message 消息
+     * @param writer  编码器
+     */
+    void encode(T message, BinaryWriter writer);
+
+    /**
+     * 解码，在接收线程中调用，reader按线程复用，不要在方法外持有
+     * 循环调用{@link BinaryReader#nextField()}直到返回0，不认识的字段调用{@link BinaryReader#skipField()}
+     *
+     * @param reader 解码器
+     * @return 消息
+     */
+    T decode(BinaryReader reader);
+}
@@ -0,0 +1,60 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+
+/**
+ * @author Eurigo
+ * desc   : 接收回调的执行策略，决定接收回调和请求回调在哪个线程执行。
+ * 默认{@link #INLINE}在接收线程中直接执行；慢回调会阻塞接收，此时可使用{@link StripedDispatcher}，
+ * Android上需要更新UI时可使用udplibrary中的MainThreadDispatcher批量切换到主线程
+ */
+public interface UdpDispatcher {
+
+    /**
+     * 在接收线程中直接执行回调，数据包无需拷贝
+     */
+    UdpDispatcher INLINE = new UdpDispatcher() {
+        @Override
+        public boolean isInline() {
+            return true;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public boolean dispatch(InetSocketAddress source, Runnable callback) {
+            callback.run();
+            return true;
+        }
+
+        @Override
+        public void stop() {
+        }
+    };
+
+    /**
+     * @return 是否在接收线程中同步执行，非同步执行时端点会先拷贝数据包
+     */
+    boolean isInline();
+
+    /**
+     * 打开UDP时调用
+     */
+    void start();
+
+    /**
+     * 执行回调，在接收线程中调用，不能阻塞
+     *
+     * @param source   发送方地址，同一来源的回调应按提交顺序执行
+     * @param callback 回调
+     * @return 是否接受，队列已满等原因丢弃时返回false
+     */
+    boolean dispatch(InetSocketAddress source, Runnable callback);
+
+    /**
+     * 关闭UDP时调用，尚未执行的回调被丢弃
+     */
+    void stop();
+}
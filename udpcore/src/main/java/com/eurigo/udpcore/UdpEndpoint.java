@@ -0,0 +1,2689 @@
+package com.eurigo.udpcore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+/**
+ * @author Eurigo
+ * Created on 2021/7/1 14:43
+ * desc   : UDP端点，纯Java实现的收发核心，不依赖Android，
+ * Android端的{@code UdpUtils}在此基础上增加广播地址获取等功能
+ */
+public class UdpEndpoint {
+
+    private static final String TAG = "UdpEndpoint";
+
+    public UdpEndpoint() {
+    }
+
+    /**
+     * 打开UDP线程，与{@link #stopUdpSocket()}、{@link #rebindUdpSocket()}互斥，
+     * 多个线程同时首次发送时只会打开一次
+     */
+    public synchronized void startUdpSocket() {
+        if (isSocketStarted()) {
+            return;
+        }
+        if (bufferPool == null || bufferPool.getBufferSize() != maxDatagramSize) {
+            bufferPool = new ByteBufferPool(maxDatagramSize, MAX_POOLED_BUFFERS);
+        }
+        reassembler = new Reassembler(reassemblyMaxBytes
+                , maxDatagramSize - Frames.FRAGMENT_HEADER_LENGTH
+                , TimeUnit.MILLISECONDS.toNanos(reassemblyTimeoutMillis));
+        if (receiveMode == ReceiveMode.SELECTOR) {
+            startSelectorLoop();
+            return;
+        }
+        if (receiveMode == ReceiveMode.SHARDED) {
+            startShardedReceiver();
+            return;
+        }
+        try {
+            client = bindSocket(getCurrentPort());
+            if (receivePacket == null) {
+                receivePacket = new DatagramPacket(new byte[0], 0);
+            }
+            startSocketThread();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 阻塞模式下绑定端口，开启SO_REUSEADDR，重新绑定时可在旧Socket关闭前绑定
+     *
+     * @param port 监听端口
+     */
+    private DatagramSocket bindSocket(int port) throws IOException {
+        // 组播从监听端口发出，阻塞模式需要MulticastSocket设置TTL、环回和出口网卡
+        DatagramSocket socket = new MulticastSocket(null);
+        try {
+            socket.setReuseAddress(true);
+            socket.bind(new InetSocketAddress(port));
+            applySocketBufferSizes(socket);
+        } catch (SocketException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+
+    /**
+     * 以Selector模式打开UDP，绑定当前端口，事件循环运行在接收线程中
+     */
+    private void startSelectorLoop() {
+        try {
+            selectorLoop = new UdpSelectorLoop(bufferPool, packetHandler);
+            channel = selectorLoop.bind(getCurrentPort());
+            applySocketBufferSizes(channel.socket());
+            startSocketThread();
+        } catch (IOException e) {
+            if (selectorLoop != null) {
+                selectorLoop.close();
+                selectorLoop = null;
+            }
+            channel = null;
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 以多Socket接收模式打开UDP，多个Socket通过SO_REUSEPORT绑定当前端口，每个Socket一个接收线程
+     */
+    private void startShardedReceiver() {
+        ShardedReceiver receiver;
+        try {
+            receiver = bindShardedReceiver(getCurrentPort());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        shardedReceiver = receiver;
+        channel = receiver.getSendChannel();
+        startSocketThread();
+    }
+
+    private ShardedReceiver bindShardedReceiver(int port) throws IOException {
+        ShardedReceiver receiver = new ShardedReceiver(bufferPool, packetHandler);
+        try {
+            int shards = receiver.bind(port, receiveShardCount);
+            if (shards < receiveShardCount) {
+                UdpLog.e(TAG, "系统不支持SO_REUSEPORT或未找到本机地址，接收Socket数量: " + shards);
+            }
+            for (DatagramChannel shard : receiver.getChannels()) {
+                applySocketBufferSizes(shard.socket());
+            }
+        } catch (IOException e) {
+            receiver.close();
+            throw e;
+        }
+        return receiver;
+    }
+
+    /**
+     * 停止UDP，与{@link #rebindUdpSocket()}互斥
+     **/
+    public synchronized void stopUdpSocket() {
+        PeerDiscovery d = discovery;
+        discovery = null;
+        isThreadRunning = false;
+        // 先停止发送线程并等待当前批次写完，再关闭Socket，合并中和队列中的消息回调丢弃
+        UdpSender s = sender;
+        sender = null;
+        if (s != null) {
+            s.stop();
+            queueDroppedCount += s.getDroppedCount();
+        }
+        if (d != null) {
+            // 下线通知不经过已停止的发送队列，在关闭Socket前直接广播
+            d.stop(true);
+        }
+        receivePacket = null;
+        // 接收线程异常退出时也会调用，先取出再置空，避免并发停止时空指针
+        DatagramSocket socket = client;
+        client = null;
+        if (socket != null) {
+            socket.close();
+        }
+        if (selectorLoop != null) {
+            selectorLoop.close();
+            selectorLoop = null;
+        }
+        if (shardedReceiver != null) {
+            shardedReceiver.close();
+            shardedReceiver = null;
+        }
+        channel = null;
+        dispatcher.stop();
+        stopMetricsReporter();
+        stopReliableTimer();
+        stopRequestTimer();
+        multicastGroups.close();
+        destinationCache.invalidate();
+        closeConnectedLoop();
+        receiveListener = null;
+        Thread t = receiveThread;
+        receiveThread = null;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    /**
+     * 重启UDP服务，会关闭所有线程并丢弃发送队列中的消息，网络切换请使用{@link #rebindUdpSocket()}
+     **/
+    public synchronized void restartUdpSocket() {
+        stopUdpSocket();
+        startUdpSocket();
+    }
+
+    /**
+     * 网络切换后重新绑定当前端口，只替换底层Socket/通道，
+     * 发送线程、回调线程池、接收回调和发送队列中的消息都保留。
+     * 先绑定新Socket再关闭旧Socket，期间写入旧Socket失败的数据包在新Socket上重试一次。
+     * 多Socket接收模式下每个Socket的接收线程随Socket一起替换。未打开UDP时等同于{@link #startUdpSocket()}
+     *
+     * @return 是否重新绑定成功，失败时继续使用旧Socket
+     */
+    public synchronized boolean rebindUdpSocket() {
+        if (!isSocketStarted()) {
+            startUdpSocket();
+            return isSocketStarted();
+        }
+        // 替换后再关闭旧Socket，发送线程在旧Socket上失败时可据此判断需要重试
+        List<Closeable> olds = new ArrayList<>();
+        try {
+            if (selectorLoop != null) {
+                UdpSelectorLoop loop = selectorLoop;
+                for (Integer port : loop.getPorts()) {
+                    DatagramChannel old = loop.getChannel(port);
+                    DatagramChannel rebound = loop.rebind(port);
+                    olds.add(old);
+                    if (old == channel) {
+                        channel = rebound;
+                        applySocketBufferSizes(rebound.socket());
+                    }
+                }
+            } else if (shardedReceiver != null) {
+                // 绑定实际监听的端口，打开后可能修改过目标端口
+                ShardedReceiver receiver = bindShardedReceiver(channel.socket().getLocalPort());
+                receiver.start(new UdpThreadFactory(TAG + "-shard", Thread.NORM_PRIORITY, false));
+                olds.add(shardedReceiver);
+                shardedReceiver = receiver;
+                channel = receiver.getSendChannel();
+            } else {
+                DatagramSocket socket = bindSocket(client.getLocalPort());
+                olds.add(client);
+                client = socket;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            // Selector模式下失败前已替换的端口仍需关闭旧通道
+            closeReplaced(olds);
+            return false;
+        }
+        closeReplaced(olds);
+        onNetworkChanged();
+        // 在重新选择的网卡上重新加入组播组
+        multicastGroups.rejoin();
+        UdpLog.e(TAG, "UDP Socket is rebound");
+        return true;
+    }
+
+    /**
+     * 关闭已被替换的旧Socket，阻塞在旧Socket上的接收线程收到异常后切换到新Socket
+     */
+    private void closeReplaced(List<Closeable> olds) {
+        if (olds.isEmpty()) {
+            return;
+        }
+        socketGeneration++;
+        for (Closeable old : olds) {
+            closeQuietly(old);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 设置接收模式，需在{@link #startUdpSocket()}之前设置，运行中修改需重启UDP后生效
+     *
+     * @param receiveMode 接收模式，默认为{@link ReceiveMode#BLOCKING}
+     */
+    public void setReceiveMode(ReceiveMode receiveMode) {
+        this.receiveMode = receiveMode == null ? ReceiveMode.BLOCKING : receiveMode;
+    }
+
+    public ReceiveMode getReceiveMode() {
+        return receiveMode;
+    }
+
+    /**
+     * 额外监听一个端口，仅{@link ReceiveMode#SELECTOR}模式下可用，
+     * 所有端口共用同一个事件循环线程和接收回调
+     *
+     * @param port 监听端口
+     * @return 是否绑定成功
+     */
+    public boolean addReceivePort(int port) {
+        if (receiveMode != ReceiveMode.SELECTOR) {
+            UdpLog.e(TAG, "addReceivePort仅支持Selector模式");
+            return false;
+        }
+        if (selectorLoop == null) {
+            startUdpSocket();
+        }
+        if (selectorLoop == null) {
+            return false;
+        }
+        try {
+            applySocketBufferSizes(selectorLoop.bind(port).socket());
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 停止监听额外端口，当前主端口请使用{@link #stopUdpSocket()}
+     *
+     * @param port 监听端口
+     */
+    public void removeReceivePort(int port) {
+        if (selectorLoop == null || port == getCurrentPort()) {
+            return;
+        }
+        selectorLoop.unbind(port);
+    }
+
+    /**
+     * 设置多Socket接收模式下绑定到同一端口的Socket数量，需在{@link #startUdpSocket()}之前设置。
+     * 一个Socket绑定通配地址，接收广播、组播等数据包，本机每个IPv4地址再各绑定shardCount-1个Socket分担单播
+     *
+     * @param shardCount 接收Socket数量，默认为CPU核数
+     */
+    public void setReceiveShardCount(int shardCount) {
+        this.receiveShardCount = shardCount <= 0 ? CPU_COUNT : shardCount;
+    }
+
+    /**
+     * @return 多Socket接收模式下实际的接收Socket数量，未使用该模式时返回0
+     */
+    public int getReceiveShardCount() {
+        ShardedReceiver receiver = shardedReceiver;
+        return receiver == null ? 0 : receiver.getShardCount();
+    }
+
+    /**
+     * 设置接收的最大数据报长度，需在{@link #startUdpSocket()}之前设置
+     *
+     * @param maxDatagramSize 最大长度，默认为{@link #DEFAULT_MAX_DATAGRAM_SIZE}，不超过{@link #MAX_UDP_PAYLOAD}
+     */
+    public void setMaxDatagramSize(int maxDatagramSize) {
+        if (maxDatagramSize <= 0) {
+            maxDatagramSize = DEFAULT_MAX_DATAGRAM_SIZE;
+        }
+        this.maxDatagramSize = Math.min(maxDatagramSize, MAX_UDP_PAYLOAD);
+    }
+
+    public int getMaxDatagramSize() {
+        return maxDatagramSize;
+    }
+
+    /**
+     * 开启大消息分片，超过分片大小的消息拆分为多个分片发送，接收端重组后再回调，
+     * 收发双方需同时开启，需在{@link #startUdpSocket()}之前设置
+     *
+     * @param enabled 是否开启，默认关闭
+     */
+    public void setFragmentationEnabled(boolean enabled) {
+        this.isFragmentationEnabled = enabled;
+    }
+
+    /**
+     * 设置分片大小，需小于等于接收端的最大数据报长度
+     *
+     * @param fragmentSize 每个分片数据报的最大长度（含帧头），默认为{@link #DEFAULT_FRAGMENT_SIZE}
+     */
+    public void setFragmentSize(int fragmentSize) {
+        this.fragmentSize = fragmentSize <= Frames.FRAGMENT_HEADER_LENGTH
+                ? DEFAULT_FRAGMENT_SIZE : Math.min(fragmentSize, MAX_UDP_PAYLOAD);
+    }
+
+    /**
+     * 设置分片重组的资源限制，需在{@link #startUdpSocket()}之前设置
+     *
+     * @param maxBytes      所有未重组完成的消息最多占用的内存，超出时淘汰最早的消息，
+     *                      分片总数乘以最大分片长度超过该值的消息直接丢弃
+     * @param timeoutMillis 超时未收齐的消息被丢弃
+     */
+    public void setReassemblyLimits(long maxBytes, long timeoutMillis) {
+        this.reassemblyMaxBytes = maxBytes <= 0 ? DEFAULT_REASSEMBLY_MAX_BYTES : maxBytes;
+        this.reassemblyTimeoutMillis = timeoutMillis <= 0
+                ? DEFAULT_REASSEMBLY_TIMEOUT_MILLIS : timeoutMillis;
+    }
+
+    /**
+     * @return 超时未收齐而被丢弃的消息数量
+     */
+    public long getIncompleteMessageCount() {
+        Reassembler r = reassembler;
+        return r == null ? 0 : r.getTimeoutCount();
+    }
+
+    /**
+     * @return 因重组内存上限被淘汰的消息数量
+     */
+    public long getEvictedMessageCount() {
+        Reassembler r = reassembler;
+        return r == null ? 0 : r.getEvictedCount();
+    }
+
+    /**
+     * 开启小消息合并，发往同一目标的消息在发送线程中合并为一个数据报，
+     * 达到合并大小或最早的消息等待超过合并延迟时发出，以少量延迟换取更少的数据包。
+     * 收发双方需同时开启，接收端拆分后逐条回调，需在{@link #startUdpSocket()}之前设置
+     *
+     * @param enabled 是否开启，默认关闭
+     */
+    public void setCoalescingEnabled(boolean enabled) {
+        this.isCoalescingEnabled = enabled;
+    }
+
+    /**
+     * 设置小消息合并参数，需在{@link #startUdpSocket()}之前设置
+     *
+     * @param maxSize          合并后数据报的最大长度，默认为{@link #DEFAULT_FRAGMENT_SIZE}，
+     *                         开启分片时不超过分片大小
+     * @param flushDelayMillis 消息最多等待的时间，默认{@link #DEFAULT_COALESCING_DELAY_MILLIS}，
+     *                         为0时不额外等待，只合并发送队列中已积压的消息
+     */
+    public void setCoalescing(int maxSize, long flushDelayMillis) {
+        this.coalescingSize = maxSize <= 1 + Coalescer.LENGTH_PREFIX
+                ? DEFAULT_FRAGMENT_SIZE : Math.min(maxSize, MAX_UDP_PAYLOAD);
+        this.coalescingDelayMillis = flushDelayMillis < 0
+                ? DEFAULT_COALESCING_DELAY_MILLIS : flushDelayMillis;
+    }
+
+    /**
+     * 开启压缩，载荷不小于阈值时使用deflate压缩，压缩后没有变小则按原样发送，
+     * 收发双方需同时开启，未开启的接收端不解析压缩帧，按原始数据回调。压缩比和耗时见{@link #getMetrics()}
+     *
+     * @param enabled 是否开启，默认关闭
+     */
+    public void setCompressionEnabled(boolean enabled) {
+        this.isCompressionEnabled = enabled;
+    }
+
+    /**
+     * @param thresholdBytes 压缩阈值，默认为{@link #DEFAULT_COMPRESSION_THRESHOLD}
+     */
+    public void setCompressionThreshold(int thresholdBytes) {
+        this.compressionThreshold = thresholdBytes <= 0 ? DEFAULT_COMPRESSION_THRESHOLD : thresholdBytes;
+    }
+
+    /**
+     * 设置发送队列容量，每个{@link SendPriority}各一个队列，需在{@link #startUdpSocket()}之前设置
+     *
+     * @param capacity 每个队列的容量，会向上取整为2的幂，默认为{@link #DEFAULT_SEND_QUEUE_CAPACITY}
+     */
+    public void setSendQueueCapacity(int capacity) {
+        this.sendQueueCapacity = capacity <= 0 ? DEFAULT_SEND_QUEUE_CAPACITY : capacity;
+    }
+
+    /**
+     * 设置发送队列已满时的处理策略，需在{@link #startUdpSocket()}之前设置
+     *
+     * @param overflowPolicy 处理策略，默认为{@link OverflowPolicy#BLOCK}，在发送线程中发送时不阻塞
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy == null ? OverflowPolicy.BLOCK : overflowPolicy;
+    }
+
+    /**
+     * @return 发送队列中等待发送的消息数量
+     */
+    public int getSendQueueSize() {
+        UdpSender s = sender;
+        return s == null ? 0 : s.getQueueSize();
+    }
+
+    /**
+     * @return 该优先级队列中等待发送的消息数量
+     */
+    public int getSendQueueSize(SendPriority priority) {
+        UdpSender s = sender;
+        return s == null ? 0 : s.getQueueSize(priority);
+    }
+
+    /**
+     * 设置各优先级队列的加权轮询权重，发送线程每轮从各队列依次最多取出权重数量的消息，
+     * 低优先级消息不会被持续的高优先级流量饿死。可在运行期间修改
+     *
+     * @param urgent 紧急队列每轮取出的数量，三个权重都小于等于0时恢复严格优先级（默认）
+     * @param normal 普通队列每轮取出的数量
+     * @param bulk   批量队列每轮取出的数量
+     */
+    public void setSendLaneWeights(int urgent, int normal, int bulk) {
+        int[] weights = urgent <= 0 && normal <= 0 && bulk <= 0 ? null
+                : new int[]{Math.max(1, urgent), Math.max(1, normal), Math.max(1, bulk)};
+        this.sendLaneWeights = weights;
+        UdpSender s = sender;
+        if (s != null) {
+            s.setWeights(weights);
+        }
+    }
+
+    /**
+     * 按消息优先级设置IP_TOS（DSCP），见{@link SendPriority#getTrafficClass()}，
+     * 同一Socket只在与上一个数据报不同时才重新设置。可在运行期间修改
+     *
+     * @param enabled 是否开启，默认关闭，关闭时使用默认值0
+     */
+    public void setTrafficClassMarkingEnabled(boolean enabled) {
+        this.isTrafficClassMarkingEnabled = enabled;
+    }
+
+    /**
+     * 设置内核接收缓冲区（SO_RCVBUF）大小，突发流量下默认缓冲区容易溢出导致丢包，
+     * 需在{@link #startUdpSocket()}之前设置
+     *
+     * @param size 缓冲区大小，小于等于0表示使用系统默认值
+     */
+    public void setReceiveBufferSize(int size) {
+        this.receiveBufferSize = size;
+    }
+
+    /**
+     * 设置内核发送缓冲区（SO_SNDBUF）大小，需在{@link #startUdpSocket()}之前设置
+     *
+     * @param size 缓冲区大小，小于等于0表示使用系统默认值
+     */
+    public void setSendBufferSize(int size) {
+        this.sendBufferSize = size;
+    }
+
+    /**
+     * @return 内核实际分配的接收缓冲区大小，可能小于设置值，未打开UDP时返回0
+     */
+    public int getActualReceiveBufferSize() {
+        return actualReceiveBufferSize;
+    }
+
+    /**
+     * 收到的数据包长度等于接收缓冲区长度（超出部分已被丢弃），
+     * 或分片长度不一致时计为截断，可据此调整{@link #setMaxDatagramSize}
+     *
+     * @return 被截断的数据包数量
+     */
+    public long getTruncatedPacketCount() {
+        Reassembler r = reassembler;
+        return metrics.truncatedPackets.sum() + (r == null ? 0 : r.getTruncatedCount());
+    }
+
+    /**
+     * 获取收发统计快照，计数为端点创建以来的累计值
+     *
+     * @return 统计快照
+     */
+    public UdpMetricsSnapshot getMetrics() {
+        UdpMetricsSnapshot snapshot = metrics.snapshot();
+        UdpSender s = sender;
+        if (s != null) {
+            snapshot.queueDepth = s.getQueueSize();
+            for (SendPriority priority : SendPriority.values()) {
+                snapshot.laneQueueDepth[priority.ordinal()] = s.getQueueSize(priority);
+            }
+        }
+        snapshot.queueDropped = queueDroppedCount + (s == null ? 0 : s.getDroppedCount());
+        Reassembler r = reassembler;
+        if (r != null) {
+            snapshot.truncatedPackets += r.getTruncatedCount();
+            snapshot.reassemblyIncomplete = r.getTimeoutCount();
+            snapshot.reassemblyEvicted = r.getEvictedCount();
+        }
+        return snapshot;
+    }
+
+    /**
+     * 设置定时上报的统计回调，UDP打开期间按周期回调，传入null取消上报
+     *
+     * @param listener     统计回调，在统计线程中回调
+     * @param periodMillis 上报周期，毫秒
+     */
+    public void setMetricsListener(OnUdpMetricsListener listener, long periodMillis) {
+        this.metricsListener = listener;
+        this.metricsPeriodMillis = periodMillis;
+        stopMetricsReporter();
+        if (isSocketStarted()) {
+            startMetricsReporter();
+        }
+    }
+
+    private void startMetricsReporter() {
+        final OnUdpMetricsListener listener = metricsListener;
+        if (listener == null || metricsPeriodMillis <= 0 || metricsReporter != null) {
+            return;
+        }
+        metricsReporter = Executors.newSingleThreadScheduledExecutor(
+                new UdpThreadFactory(TAG + "-metrics", Thread.MIN_PRIORITY, true));
+        metricsReporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    listener.onMetrics(getMetrics());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }, metricsPeriodMillis, metricsPeriodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopMetricsReporter() {
+        ScheduledExecutorService reporter = metricsReporter;
+        metricsReporter = null;
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+    }
+
+    /**
+     * 打开到指定对端的可靠有序通道，同一对端重复打开返回同一个通道，
+     * 对端需开启{@link #setReliableReceiveEnabled}或也向本端打开通道，收到可靠数据帧时自动确认并按顺序回调。
+     * 对端按来源地址回复确认
+     *
+     * @param host 对端地址
+     * @param port 对端端口
+     * @return 可靠通道
+     */
+    public ReliableChannel openReliableChannel(String host, int port) {
+        return openReliableChannel(host, port, ReliableChannel.DEFAULT_WINDOW);
+    }
+
+    /**
+     * 开启接收端可靠通道，接收任意来源的可靠数据帧，回复确认并按顺序回调。
+     * 未开启时只解析已打开通道的对端发来的可靠帧，其余按原始数据回调
+     *
+     * @param enabled 是否开启，默认关闭
+     */
+    public void setReliableReceiveEnabled(boolean enabled) {
+        this.isReliableReceiveEnabled = enabled;
+    }
+
+    /**
+     * @param windowSize 发送窗口，即未确认消息的上限，1~{@link ReliableChannel#MAX_WINDOW}
+     */
+    public synchronized ReliableChannel openReliableChannel(String host, int port, int windowSize) {
+        InetSocketAddress peer = new InetSocketAddress(host, port);
+        if (peer.isUnresolved()) {
+            throw new IllegalArgumentException("Unresolved host: " + host);
+        }
+        ReliableChannel channel = reliableChannels.get(peer);
+        if (channel == null) {
+            int window = Math.max(1, Math.min(windowSize, ReliableChannel.MAX_WINDOW));
+            channel = new ReliableChannel(this, metrics, peer, window, ReliableChannel.DEFAULT_BACKLOG);
+            reliableChannels.put(peer, channel);
+        }
+        if (isSocketStarted()) {
+            startReliableTimer();
+        }
+        return channel;
+    }
+
+    /**
+     * 在自动选择的网卡上加入组播组，见{@link #joinGroup(String, int, NetworkInterface)}
+     */
+    public MulticastGroup joinGroup(String group, int port) {
+        return joinGroup(group, port, null);
+    }
+
+    /**
+     * 加入组播组，每个组单独一个接收Socket，收到的数据与单播共用接收回调，
+     * 关闭UDP时退出所有组，重新打开后需重新加入。
+     * 高频的一对多消息使用组播代替广播，未加入该组的设备不会被唤醒
+     *
+     * @param group            组播地址，例如239.255.0.1
+     * @param port             组播端口
+     * @param networkInterface 网卡，传入null时使用{@link #setMulticastInterface}指定的网卡或自动选择
+     * @return 组播组，加入失败时返回null
+     * @throws IllegalArgumentException 不是组播地址
+     */
+    public MulticastGroup joinGroup(String group, int port, NetworkInterface networkInterface) {
+        if (!isSocketStarted()) {
+            startUdpSocket();
+        }
+        try {
+            return multicastGroups.join(this, InetAddress.getByName(group), port, networkInterface, bufferPool);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 设置组播TTL，默认为1即不出本网段
+     *
+     * @param ttl 0~255
+     */
+    public void setMulticastTtl(int ttl) {
+        multicastGroups.setTimeToLive(Math.max(0, Math.min(255, ttl)));
+    }
+
+    /**
+     * 发送的组播是否回送到本机，默认开启
+     */
+    public void setMulticastLoopbackEnabled(boolean enabled) {
+        multicastGroups.setLoopbackEnabled(enabled);
+    }
+
+    /**
+     * 指定组播网卡，用于加入组和发送到未加入的组
+     *
+     * @param networkInterface 网卡，传入null时自动选择支持组播的网卡（Wi-Fi/热点/以太网优先）并缓存到网络变化
+     */
+    public void setMulticastInterface(NetworkInterface networkInterface) {
+        multicastGroups.setPreferredInterface(networkInterface);
+    }
+
+    /**
+     * 启动局域网对端发现，定时向子网广播地址的当前端口通告本端的服务，
+     * 所有对端需使用相同的端口，重复调用时增加服务并返回同一个实例
+     *
+     * @param services 本端提供的服务名称，只发现对端时可以不传
+     * @return 对端发现
+     */
+    public synchronized PeerDiscovery startDiscovery(String... services) {
+        return startDiscovery(null, services);
+    }
+
+    /**
+     * 启动局域网对端发现，回调在第一次通告和接收之前设置，不会错过启动时就已在线的对端
+     *
+     * @param listener 对端变化回调，传入null时保留已设置的回调
+     * @param services 本端提供的服务名称，只发现对端时可以不传
+     * @return 对端发现
+     */
+    public synchronized PeerDiscovery startDiscovery(OnPeerChangeListener listener, String... services) {
+        if (!isSocketStarted()) {
+            startUdpSocket();
+        }
+        if (discovery == null) {
+            PeerDiscovery d = new PeerDiscovery(this, getCurrentPort());
+            d.setListener(listener);
+            discovery = d;
+        } else if (listener != null) {
+            discovery.setListener(listener);
+        }
+        for (String service : services) {
+            discovery.addService(service);
+        }
+        discovery.start();
+        return discovery;
+    }
+
+    /**
+     * 停止对端发现并广播下线通知，关闭UDP时自动停止
+     */
+    public synchronized void stopDiscovery() {
+        if (discovery != null) {
+            discovery.stop();
+            discovery = null;
+        }
+    }
+
+    /**
+     * @return 运行中的对端发现，未启动时返回null
+     */
+    public PeerDiscovery getDiscovery() {
+        return discovery;
+    }
+
+    /**
+     * @return 实际监听的本地端口，未打开时为当前端口
+     */
+    int getLocalPort() {
+        DatagramSocket socket = client;
+        if (socket != null) {
+            return socket.getLocalPort();
+        }
+        DatagramChannel c = channel;
+        if (c != null) {
+            return c.socket().getLocalPort();
+        }
+        return getCurrentPort();
+    }
+
+    void removeReliableChannel(ReliableChannel channel) {
+        reliableChannels.remove(channel.getPeer(), channel);
+    }
+
+    private synchronized void startReliableTimer() {
+        if (reliableTimer != null) {
+            return;
+        }
+        reliableTimer = Executors.newSingleThreadScheduledExecutor(
+                new UdpThreadFactory(TAG + "-reliable", Thread.NORM_PRIORITY, true));
+        reliableTimer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.nanoTime();
+                for (ReliableChannel channel : reliableChannels.values()) {
+                    try {
+                        channel.onTick(now);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }, RELIABLE_TICK_MILLIS, RELIABLE_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized TimingWheel timer() {
+        if (requestTimer == null) {
+            requestTimer = new TimingWheel(REQUEST_TICK_MILLIS, REQUEST_WHEEL_SIZE,
+                    new UdpThreadFactory(TAG + "-timer", Thread.NORM_PRIORITY, true));
+        }
+        return requestTimer;
+    }
+
+    /**
+     * 停止请求超时计时，未完成的请求以取消结束，未发送的重复副本被丢弃
+     */
+    private synchronized void stopRequestTimer() {
+        if (requestTimer != null) {
+            requestTimer.stop();
+            requestTimer = null;
+        }
+        if (pendingRequests != null) {
+            pendingRequests.cancelAll();
+            pendingRequests = null;
+        }
+    }
+
+    private synchronized void stopReliableTimer() {
+        if (reliableTimer != null) {
+            reliableTimer.shutdownNow();
+            reliableTimer = null;
+        }
+    }
+
+    /**
+     * 设置全局发送限速，发送线程按速率均匀间隔发出数据报，令牌不足时等待，
+     * 期间新消息在发送队列中积压并按{@link OverflowPolicy}处理。
+     * {@link SendPriority#URGENT}消息不等待但计入用量。可在运行期间修改
+     *
+     * @param bytesPerSecond   每秒最多发送的字节数，0为不限制
+     * @param packetsPerSecond 每秒最多发送的数据报数，0为不限制
+     */
+    public void setSendRateLimit(long bytesPerSecond, long packetsPerSecond) {
+        setSendRateLimit(bytesPerSecond, 0, packetsPerSecond, 0);
+    }
+
+    /**
+     * @param burstBytes   空闲后最多可连续发送的字节数，0时为每秒字节数的1/10
+     * @param burstPackets 空闲后最多可连续发送的数据报数，0时为每秒数据报数的1/10
+     * @see #setSendRateLimit(long, long)
+     */
+    public void setSendRateLimit(long bytesPerSecond, long burstBytes, long packetsPerSecond, long burstPackets) {
+        pacer.setGlobalLimit(new Pacer.Limit(bytesPerSecond, burstBytes, packetsPerSecond, burstPackets));
+    }
+
+    /**
+     * 设置每个目标（地址+端口）的发送限速，与全局限速同时生效，可在运行期间修改。
+     * 目标令牌不足时消息暂存到该目标的等待队列，发送线程继续发送其他目标的消息，
+     * {@link SendPriority#URGENT}消息（包括可靠传输的ACK）不等待令牌，但仍计入用量
+     *
+     * @param bytesPerSecond   每秒最多发往同一目标的字节数，0为不限制
+     * @param packetsPerSecond 每秒最多发往同一目标的数据报数，0为不限制
+     */
+    public void setDestinationRateLimit(long bytesPerSecond, long packetsPerSecond) {
+        setDestinationRateLimit(bytesPerSecond, 0, packetsPerSecond, 0);
+    }
+
+    /**
+     * @see #setDestinationRateLimit(long, long)
+     * @see #setSendRateLimit(long, long, long, long)
+     */
+    public void setDestinationRateLimit(long bytesPerSecond, long burstBytes, long packetsPerSecond, long burstPackets) {
+        pacer.setDestinationLimit(new Pacer.Limit(bytesPerSecond, burstBytes, packetsPerSecond, burstPackets));
+    }
+
+    /**
+     * 开启后每条发送的消息带上8字节的消息ID，开启了{@link #setDuplicateFilterEnabled}的接收端
+     * 在解压和回调前丢弃时间窗口内重复的消息，可在运行期间修改。只需要对个别消息冗余发送时使用{@link #sendRedundant}
+     *
+     * @param enabled 是否开启，默认关闭
+     */
+    public void setMessageIdEnabled(boolean enabled) {
+        this.isMessageIdEnabled = enabled;
+    }
+
+    /**
+     * 开启接收端重复消息过滤，解析带消息ID的消息并丢弃重复的副本，可在运行期间修改。
+     * 未开启时不解析消息ID帧，按原始数据回调
+     *
+     * @param enabled 是否开启，默认关闭
+     */
+    public void setDuplicateFilterEnabled(boolean enabled) {
+        this.isDuplicateFilterEnabled = enabled;
+    }
+
+    /**
+     * 设置接收端重复消息过滤的范围，{@link #setDuplicateFilterEnabled}开启后生效
+     *
+     * @param idsPerSource 每个发送方记录的最近消息ID数量，默认{@link #DEFAULT_DEDUP_IDS_PER_SOURCE}
+     * @param windowMillis 时间窗口，超过该时间的重复消息不再过滤，默认{@link #DEFAULT_DEDUP_WINDOW_MILLIS}
+     */
+    public void setDuplicateFilter(int idsPerSource, long windowMillis) {
+        duplicateFilter = new DuplicateFilter(MAX_DEDUP_SOURCES,
+                idsPerSource <= 0 ? DEFAULT_DEDUP_IDS_PER_SOURCE : idsPerSource,
+                TimeUnit.MILLISECONDS.toNanos(windowMillis <= 0 ? DEFAULT_DEDUP_WINDOW_MILLIS : windowMillis));
+    }
+
+    /**
+     * 模拟丢包，发送线程按概率丢弃数据报，仅供同包的测试使用
+     *
+     * @param lossRate 丢包率，0~1，默认0
+     */
+    void setSimulatedLossRate(double lossRate) {
+        this.simulatedLossRate = Math.max(0, Math.min(1, lossRate));
+    }
+
+    private void applySocketBufferSizes(DatagramSocket socket) throws SocketException {
+        int actual = SocketOptionsCompat.applyBufferSizes(socket, receiveBufferSize, sendBufferSize);
+        if (receiveBufferSize > 0 && actual < receiveBufferSize) {
+            UdpLog.e(TAG, "接收缓冲区被系统限制为: " + actual);
+        }
+        actualReceiveBufferSize = actual;
+    }
+
+    private boolean isSocketStarted() {
+        return client != null || channel != null;
+    }
+
+    /**
+     * 有些路由器/Wi-Fi热点不支持255.255.255.255广播地址（例如：用Android手机做Wi-Fi热点的时候）
+     */
+    public static final String DEFAULT_SOCKET_HOST = "255.255.255.255";
+    public static final int DEFAULT_SOCKET_UDP_PORT = 9090;
+    /**
+     * 默认发送队列容量
+     */
+    public static final int DEFAULT_SEND_QUEUE_CAPACITY = 1024;
+
+    private String udpHost = "";
+    private int udpPort = 0;
+
+    public void setUdpHost(String udpHost) {
+        this.udpHost = udpHost;
+    }
+
+    public void setUdpPort(int udpPort) {
+        this.udpPort = udpPort;
+    }
+
+    public String getCurrentHost() {
+        return udpHost == null || udpHost.isEmpty() ? DEFAULT_SOCKET_HOST : udpHost;
+    }
+
+    public int getCurrentPort() {
+        return udpPort == 0 ? DEFAULT_SOCKET_UDP_PORT : udpPort;
+    }
+
+    /**
+     * 默认接收的最大数据报长度，超出部分会被截断
+     */
+    public static final int DEFAULT_MAX_DATAGRAM_SIZE = 2048;
+    /**
+     * UDP数据报负载的理论上限（IPv4）
+     */
+    public static final int MAX_UDP_PAYLOAD = 65507;
+    /**
+     * 默认分片大小（含帧头），以太网MTU 1500减去IP/UDP头部并预留隧道开销
+     */
+    public static final int DEFAULT_FRAGMENT_SIZE = 1400;
+    /**
+     * 默认所有未重组完成的消息最多占用的内存
+     */
+    public static final long DEFAULT_REASSEMBLY_MAX_BYTES = 4 * 1024 * 1024;
+    /**
+     * 默认分片重组超时时间，毫秒
+     */
+    public static final long DEFAULT_REASSEMBLY_TIMEOUT_MILLIS = 5000;
+    /**
+     * 默认小消息合并延迟，毫秒
+     */
+    public static final long DEFAULT_COALESCING_DELAY_MILLIS = 2;
+    /**
+     * 默认压缩阈值，小于该长度的消息压缩收益很小，直接发送
+     */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 256;
+    /**
+     * 可靠通道检查重传超时的周期，毫秒
+     */
+    private static final long RELIABLE_TICK_MILLIS = 10;
+    /**
+     * 默认同时等待响应的请求上限
+     */
+    public static final int DEFAULT_MAX_PENDING_REQUESTS = 8192;
+    /**
+     * 请求超时时间轮的刻度和槽位数，一圈约5秒，超时精度10毫秒
+     */
+    private static final long REQUEST_TICK_MILLIS = 10;
+    private static final int REQUEST_WHEEL_SIZE = 512;
+    /**
+     * 最多保留接收状态的可靠通道对端数量
+     */
+    private static final int MAX_RELIABLE_PEERS = 256;
+    /**
+     * 最多记录最近消息ID的发送方数量
+     */
+    private static final int MAX_DEDUP_SOURCES = 256;
+    /**
+     * 默认每个发送方记录的最近消息ID数量
+     */
+    public static final int DEFAULT_DEDUP_IDS_PER_SOURCE = 64;
+    /**
+     * 默认重复消息过滤的时间窗口，毫秒
+     */
+    public static final long DEFAULT_DEDUP_WINDOW_MILLIS = 5000;
+    /**
+     * 缓冲池最多缓存的接收缓冲区数量
+     */
+    private static final int MAX_POOLED_BUFFERS = 64;
+    /**
+     * 接收缓冲池，各接收模式共用，打开UDP时按最大数据报长度创建
+     */
+    private ByteBufferPool bufferPool;
+    private int maxDatagramSize = DEFAULT_MAX_DATAGRAM_SIZE;
+    private int receiveBufferSize = 0;
+    private int sendBufferSize = 0;
+    private volatile int actualReceiveBufferSize = 0;
+    /**
+     * 收发统计，跨越多次打开/关闭UDP累计
+     */
+    private final UdpMetrics metrics = new UdpMetrics();
+    private OnUdpMetricsListener metricsListener;
+    private long metricsPeriodMillis;
+    private ScheduledExecutorService metricsReporter;
+    /**
+     * 已关闭的发送器累计丢弃的消息数量，只在同步的{@link #stopUdpSocket()}中写入
+     */
+    private volatile long queueDroppedCount;
+
+    private volatile boolean isFragmentationEnabled = false;
+    private int fragmentSize = DEFAULT_FRAGMENT_SIZE;
+    private long reassemblyMaxBytes = DEFAULT_REASSEMBLY_MAX_BYTES;
+    private long reassemblyTimeoutMillis = DEFAULT_REASSEMBLY_TIMEOUT_MILLIS;
+    private boolean isCoalescingEnabled = false;
+    private int coalescingSize = DEFAULT_FRAGMENT_SIZE;
+    private long coalescingDelayMillis = DEFAULT_COALESCING_DELAY_MILLIS;
+    private volatile boolean isCompressionEnabled = false;
+    private final Map<InetSocketAddress, ReliableChannel> reliableChannels = new ConcurrentHashMap<>();
+    /**
+     * 各对端的可靠接收状态，按最近使用淘汰
+     */
+    private final Map<InetSocketAddress, ReliableReceiver> reliableReceivers =
+            new LinkedHashMap<InetSocketAddress, ReliableReceiver>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<InetSocketAddress, ReliableReceiver> eldest) {
+                    return size() > MAX_RELIABLE_PEERS;
+                }
+            };
+    private final ReliableReceiver.Delivery reliableDelivery = new ReliableReceiver.Delivery() {
+        @Override
+        public void onPayload(ByteBuffer payload, InetSocketAddress source, long receiveNanos) {
+            UdpEndpoint.this.onPayload(payload, source, receiveNanos);
+        }
+    };
+    private ScheduledExecutorService reliableTimer;
+    private volatile PendingRequests pendingRequests;
+    /**
+     * 请求超时和重复发送共用的时间轮
+     */
+    private TimingWheel requestTimer;
+    private volatile boolean isMessageIdEnabled = false;
+    private volatile boolean isDuplicateFilterEnabled = false;
+    private volatile boolean isReliableReceiveEnabled = false;
+    /**
+     * 第一次订阅后开启主题帧解析，此后取消全部订阅也不再关闭
+     */
+    private volatile boolean isTopicEnabled = false;
+    /**
+     * 消息ID从随机值开始递增，重启后不会与对端时间窗口内记录的ID重复
+     */
+    private final AtomicLong nextMessageId = new AtomicLong(ThreadLocalRandom.current().nextLong());
+    private final TopicRouter topicRouter = new TopicRouter();
+    private volatile DuplicateFilter duplicateFilter = new DuplicateFilter(MAX_DEDUP_SOURCES,
+            DEFAULT_DEDUP_IDS_PER_SOURCE, TimeUnit.MILLISECONDS.toNanos(DEFAULT_DEDUP_WINDOW_MILLIS));
+    private int maxPendingRequests = DEFAULT_MAX_PENDING_REQUESTS;
+    private volatile OnUdpRequestListener requestListener;
+    private volatile PeerDiscovery discovery;
+    private volatile UdpDispatcher dispatcher = UdpDispatcher.INLINE;
+    private volatile double simulatedLossRate;
+    private final Pacer pacer = new Pacer();
+    private volatile int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+    /**
+     * 仅在发送线程中使用
+     */
+    private Fragmenter fragmenter;
+    private Coalescer coalescer;
+    private final Coalescer.Output coalescerOutput = new Coalescer.Output() {
+        @Override
+        public boolean write(DestinationCache.Destination destination, ByteBuffer datagram, SendPriority priority)
+                throws IOException {
+            return writeDatagram(destination, datagram, priority);
+        }
+    };
+    private final Pacer.Output pacerOutput = new Pacer.Output() {
+        @Override
+        public void send(DestinationCache.Destination destination, UdpSender.SendTask task) {
+            sendPacket(destination, task);
+        }
+    };
+    private Reassembler reassembler;
+    /**
+     * 阻塞模式下复用的发送数据报，仅在发送线程中使用
+     */
+    private final DatagramPacket outgoingPacket = new DatagramPacket(new byte[0], 0);
+
+    /**
+     * 目标地址缓存容量
+     */
+    private static final int DESTINATION_CACHE_SIZE = 64;
+    /**
+     * 已解析的目标地址缓存
+     */
+    private final DestinationCache destinationCache = new DestinationCache(DESTINATION_CACHE_SIZE,
+            new DestinationCache.ConnectedReceiver() {
+                @Override
+                public int getLocalPort() {
+                    return UdpEndpoint.this.getLocalPort();
+                }
+
+                @Override
+                public void register(DatagramChannel channel) throws IOException {
+                    connectedLoop().register(channel);
+                }
+
+                @Override
+                public void unregister(DatagramChannel channel) {
+                    UdpSelectorLoop loop = connectedLoop;
+                    if (loop != null) {
+                        loop.unregister(channel);
+                    } else {
+                        try {
+                            channel.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }
+            });
+    /**
+     * 读取已connect通道的接收线程，该通道与监听Socket绑定同一端口，对端的回复会进入该通道，
+     * 第一次建立connect通道时创建
+     */
+    private volatile UdpSelectorLoop connectedLoop;
+
+    /**
+     * IP正则匹配
+     */
+    public static final String REGEX_IP = "((2[0-4]\\d|25[0-5]|[01]?\\d\\d?)\\.){3}(2[0-4]\\d|25[0-5]|[01]?\\d\\d?)";
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    private volatile boolean isThreadRunning = false;
+    private OnUdpByteReceiveListener receiveListener;
+    private final MessageRegistry messageRegistry = new MessageRegistry();
+
+    private ReceiveMode receiveMode = ReceiveMode.BLOCKING;
+    /**
+     * 以下字段在接收线程、发送线程和调用线程间共享，停止和重新绑定时替换
+     */
+    private volatile DatagramPacket receivePacket;
+    private volatile DatagramSocket client;
+    private volatile UdpSelectorLoop selectorLoop;
+    private volatile ShardedReceiver shardedReceiver;
+    private int receiveShardCount = CPU_COUNT;
+    /**
+     * Selector模式下主端口的通道或多Socket接收模式下绑定通配地址的通道，同时用于发送
+     */
+    private volatile DatagramChannel channel;
+    /**
+     * 各接收模式共用的数据包回调
+     */
+    private final PacketHandler packetHandler = new PacketHandler() {
+        @Override
+        public void onPacket(PacketBuffer buffer, SocketAddress source) {
+            onPacketReceived(buffer, source);
+        }
+    };
+    /**
+     * 网卡与广播地址缓存，网络变化时失效
+     */
+    private final NetworkState networkState = new NetworkState();
+    /**
+     * 组播收发，接收线程在第一次加入组时创建
+     */
+    private final MulticastGroups multicastGroups = new MulticastGroups(packetHandler,
+            new UdpThreadFactory(TAG + "-multicast"), networkState);
+    /**
+     * 单Socket或Selector模式的接收线程，多Socket接收模式下由{@link ShardedReceiver}自行创建
+     */
+    private Thread receiveThread;
+    private volatile UdpSender sender;
+    private int sendQueueCapacity = DEFAULT_SEND_QUEUE_CAPACITY;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private volatile int[] sendLaneWeights;
+    private volatile boolean isTrafficClassMarkingEnabled = false;
+    /**
+     * 监听Socket/通道当前的IP_TOS，仅在发送线程中使用
+     */
+    private int socketTrafficClass;
+    /**
+     * 已设置IP_TOS的Socket/通道，重新绑定后需重新设置，仅在发送线程中使用
+     */
+    private Object markedSocket;
+    /**
+     * 每次重新绑定Socket后加一，发送失败时据此判断是否在新Socket上重试
+     */
+    private volatile int socketGeneration;
+
+    /**
+     * 处理接受到的消息
+     **/
+    private void receiveMessage() {
+        while (isThreadRunning) {
+            DatagramPacket packet = receivePacket;
+            DatagramSocket socket = client;
+            if (socket == null || packet == null) {
+                UdpLog.e(TAG, "无法接收UDP数据或者接收到的UDP数据为空");
+                return;
+            }
+            PacketBuffer buffer = bufferPool.acquire();
+            // 每次接收前重新设置数据区和长度。否则可能会导致下次收到数据包被截断。
+            packet.setData(buffer.array());
+            try {
+                socket.receive(packet);
+            } catch (IOException e) {
+                bufferPool.release(buffer);
+                if (client != socket) {
+                    if (isThreadRunning && client != null && receivePacket == packet) {
+                        // Socket已被重新绑定，在新Socket上继续接收
+                        continue;
+                    }
+                    // 已停止或已重启，旧Socket由stopUdpSocket关闭
+                    UdpLog.e(TAG, "UDP Thread is Stop!!");
+                    return;
+                }
+                UdpLog.e(TAG, "UDP Thread is Stop!!");
+                stopUdpSocket();
+                e.printStackTrace();
+                return;
+            }
+            buffer.buffer().limit(packet.getLength());
+            buffer.receiveNanos = System.nanoTime();
+            onPacketReceived(buffer, packet.getSocketAddress());
+        }
+    }
+
+    /**
+     * 阻塞模式与Selector模式共用的数据包处理，处理完毕后归还缓冲区
+     *
+     * @param buffer 数据包，position~limit为有效数据
+     * @param source 发送方地址
+     */
+    private void onPacketReceived(PacketBuffer buffer, SocketAddress source) {
+        try {
+            ByteBuffer data = buffer.buffer();
+            metrics.packetsIn.increment();
+            if (!data.hasRemaining()) {
+                metrics.emptyPackets.increment();
+                UdpLog.e(TAG, "无法接收UDP数据或者接收到的UDP数据为空");
+                return;
+            }
+            metrics.bytesIn.add(data.remaining());
+            if (data.remaining() == data.capacity()) {
+                // 数据报长度不小于缓冲区长度，超出部分已被内核丢弃
+                metrics.truncatedPackets.increment();
+            }
+            handleFrame(buffer.readOnlyView(), (InetSocketAddress) source, buffer.receiveNanos);
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 解析内部帧，合并帧拆分后逐条处理，分片帧交给重组器，其余直接回调
+     *
+     * @param data         数据包只读视图
+     * @param source       发送方地址
+     * @param receiveNanos 收到数据包的时间
+     */
+    private void handleFrame(ByteBuffer data, InetSocketAddress source, long receiveNanos) {
+        if (isCoalescingEnabled && data.get(data.position()) == Frames.COALESCED) {
+            onCoalesced(data, source, receiveNanos);
+            return;
+        }
+        Reassembler r = reassembler;
+        if (isFragmentationEnabled && r != null && data.get(data.position()) == Frames.FRAGMENT) {
+            byte[] message = r.onFragment(data, source);
+            if (message != null) {
+                onMessage(ByteBuffer.wrap(message).asReadOnlyBuffer(), source, receiveNanos);
+            }
+            return;
+        }
+        onMessage(data, source, receiveNanos);
+    }
+
+    /**
+     * 拆分合并帧，每条消息为原数据包的只读切片，长度不合法时丢弃剩余部分
+     */
+    private void onCoalesced(ByteBuffer data, InetSocketAddress source, long receiveNanos) {
+        data.get();
+        while (data.remaining() >= Coalescer.LENGTH_PREFIX) {
+            int length = data.getShort() & 0xFFFF;
+            if (length > data.remaining()) {
+                return;
+            }
+            if (length == 0) {
+                continue;
+            }
+            ByteBuffer message = data.slice();
+            message.limit(length);
+            data.position(data.position() + length);
+            onMessage(message, source, receiveNanos);
+        }
+    }
+
+    /**
+     * 处理完整的消息，重复的消息ID帧直接丢弃，可靠通道帧按序号排序后再继续处理
+     */
+    private void onMessage(ByteBuffer data, InetSocketAddress source, long receiveNanos) {
+        if (isDuplicateFilterEnabled && data.get(data.position()) == Frames.DEDUP) {
+            if (data.remaining() <= Frames.DEDUP_HEADER_LENGTH) {
+                return;
+            }
+            long id = data.getLong(data.position() + 1);
+            if (duplicateFilter.isDuplicate(source, id, receiveNanos)) {
+                metrics.duplicatesSuppressed.increment();
+                return;
+            }
+            data.position(data.position() + Frames.DEDUP_HEADER_LENGTH);
+        }
+        if (data.remaining() >= 2 && data.get(data.position()) == Frames.RELIABLE
+                && (isReliableReceiveEnabled || reliableChannels.containsKey(source))) {
+            onReliableFrame(data, source, receiveNanos);
+            return;
+        }
+        onPayload(data, source, receiveNanos);
+    }
+
+    private void onReliableFrame(ByteBuffer data, InetSocketAddress source, long receiveNanos) {
+        data.get();
+        byte type = data.get();
+        if (type == ReliableChannel.TYPE_ACK) {
+            ReliableChannel channel = reliableChannels.get(source);
+            if (channel != null) {
+                channel.onAck(data);
+            }
+            return;
+        }
+        if (type != ReliableChannel.TYPE_DATA) {
+            return;
+        }
+        ReliableReceiver receiver;
+        synchronized (reliableReceivers) {
+            receiver = reliableReceivers.get(source);
+            if (receiver == null) {
+                receiver = new ReliableReceiver(metrics);
+                reliableReceivers.put(source, receiver);
+            }
+        }
+        byte[] ack = receiver.onData(data, source, receiveNanos, reliableDelivery);
+        if (ack != null) {
+            offerFrame(ack, source, SendPriority.URGENT);
+        }
+    }
+
+    /**
+     * 处理载荷，压缩帧先解压再回调。内部帧只在对应功能开启时解析，否则按原始数据回调
+     */
+    private void onPayload(ByteBuffer data, InetSocketAddress source, long receiveNanos) {
+        if (isTopicEnabled && data.remaining() >= Frames.TOPIC_HEADER_LENGTH
+                && data.get(data.position()) == Frames.TOPIC) {
+            onTopicFrame(data, source, receiveNanos);
+            return;
+        }
+        data = decompressIfNeeded(data, source);
+        if (data == null) {
+            return;
+        }
+        if (data.remaining() >= Frames.REQUEST_HEADER_LENGTH && data.get(data.position()) == Frames.REQUEST
+                && (requestListener != null || pendingRequests != null)) {
+            onRequestFrame(data, source);
+            return;
+        }
+        PeerDiscovery d = discovery;
+        if (d != null && data.hasRemaining() && data.get(data.position()) == Frames.DISCOVERY) {
+            d.onFrame(data, source);
+            return;
+        }
+        deliver(data, source, receiveNanos);
+    }
+
+    /**
+     * @return 解压后的消息，未开启压缩或不是压缩帧时原样返回，解压失败返回null
+     */
+    private ByteBuffer decompressIfNeeded(ByteBuffer data, InetSocketAddress source) {
+        if (!isCompressionEnabled || !data.hasRemaining() || data.get(data.position()) != Frames.COMPRESSED) {
+            return data;
+        }
+        long start = System.nanoTime();
+        byte[] message;
+        try {
+            message = Compressor.decompress(data, (int) Math.min(reassemblyMaxBytes, Integer.MAX_VALUE));
+        } catch (IllegalArgumentException e) {
+            metrics.decompressFailures.increment();
+            UdpLog.e(TAG, "drop packet from " + source + ": " + e.getMessage());
+            return null;
+        }
+        metrics.decompressedMessages.increment();
+        metrics.decompressNanos.add(System.nanoTime() - start);
+        return ByteBuffer.wrap(message).asReadOnlyBuffer();
+    }
+
+    /**
+     * 按主题查找订阅，没有匹配的订阅时不解压直接丢弃，每个订阅收到独立的只读视图
+     */
+    private void onTopicFrame(ByteBuffer data, InetSocketAddress source, long receiveNanos) {
+        int topic = data.getShort(data.position() + 1) & 0xFFFF;
+        TopicSubscription[] subscriptions = topicRouter.route(topic);
+        int matched = 0;
+        if (subscriptions != null) {
+            for (TopicSubscription subscription : subscriptions) {
+                if (subscription.accepts(source)) {
+                    matched++;
+                }
+            }
+        }
+        if (matched == 0) {
+            metrics.unroutedMessages.increment();
+            return;
+        }
+        data.position(data.position() + Frames.TOPIC_HEADER_LENGTH);
+        data = decompressIfNeeded(data, source);
+        if (data == null) {
+            return;
+        }
+        UdpDispatcher d = dispatcher;
+        if (!d.isInline()) {
+            data = copyOf(data);
+        }
+        for (TopicSubscription subscription : subscriptions) {
+            if (subscription.accepts(source)) {
+                dispatch(d, subscription.listener, --matched == 0 ? data : data.duplicate(), source, receiveNanos);
+            }
+        }
+    }
+
+    private void onRequestFrame(ByteBuffer data, InetSocketAddress source) {
+        data.get();
+        byte type = data.get();
+        long id = data.getLong();
+        if (type == Frames.TYPE_RESPONSE) {
+            PendingRequests table = pendingRequests;
+            PendingRequests.Pending pending = table == null ? null : table.remove(id, source);
+            if (pending == null) {
+                // 已超时、重复或来源不符的响应
+                metrics.lateResponses.increment();
+                return;
+            }
+            byte[] response = new byte[data.remaining()];
+            data.get(response);
+            pending.future.complete(response);
+            return;
+        }
+        OnUdpRequestListener listener = requestListener;
+        if (type != Frames.TYPE_REQUEST || listener == null) {
+            return;
+        }
+        UdpDispatcher d = dispatcher;
+        if (d.isInline()) {
+            invokeRequest(listener, new UdpRequest(this, id, source, data));
+            return;
+        }
+        final UdpRequest request = new UdpRequest(this, id, source, copyOf(data));
+        final OnUdpRequestListener l = listener;
+        if (!d.dispatch(source, new Runnable() {
+            @Override
+            public void run() {
+                invokeRequest(l, request);
+            }
+        })) {
+            metrics.dispatchDropped.increment();
+        }
+    }
+
+    private void invokeRequest(OnUdpRequestListener listener, UdpRequest request) {
+        try {
+            listener.onRequest(request);
+        } catch (Exception e) {
+            metrics.callbackFailures.increment();
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 按{@link #setDispatcher}设置的策略回调，非同步回调时先拷贝数据包，接收缓冲区可以立即归还
+     */
+    private void deliver(ByteBuffer data, final InetSocketAddress source, final long receiveNanos) {
+        final OnUdpByteReceiveListener listener = data.hasRemaining() && data.get(data.position()) == Frames.CODEC
+                && !messageRegistry.isEmpty() ? messageRegistry : receiveListener;
+        if (listener == null) {
+            return;
+        }
+        UdpDispatcher d = dispatcher;
+        dispatch(d, listener, d.isInline() ? data : copyOf(data), source, receiveNanos);
+    }
+
+    /**
+     * @param data 同步回调时为接收缓冲区的视图，否则为已拷贝的数据
+     */
+    private void dispatch(UdpDispatcher d, final OnUdpByteReceiveListener listener, final ByteBuffer data,
+                          final InetSocketAddress source, final long receiveNanos) {
+        if (d.isInline()) {
+            invoke(listener, data, source, receiveNanos);
+            return;
+        }
+        if (!d.dispatch(source, new Runnable() {
+            @Override
+            public void run() {
+                invoke(listener, data, source, receiveNanos);
+            }
+        })) {
+            metrics.dispatchDropped.increment();
+        }
+    }
+
+    private static ByteBuffer copyOf(ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    private void invoke(OnUdpByteReceiveListener listener, ByteBuffer data,
+                        InetSocketAddress source, long receiveNanos) {
+        long start = System.nanoTime();
+        metrics.receiveToCallback.record(start - receiveNanos);
+        try {
+            listener.onReceived(data, source);
+        } catch (Exception e) {
+            metrics.callbackFailures.increment();
+            e.printStackTrace();
+        }
+        metrics.callbackTime.record(System.nanoTime() - start);
+    }
+
+    /**
+     * 开启接收数据的线程
+     **/
+    private void startSocketThread() {
+        fragmenter = isFragmentationEnabled ? new Fragmenter(fragmentSize) : null;
+        socketTrafficClass = 0;
+        markedSocket = null;
+        final Coalescer c = isCoalescingEnabled ? new Coalescer(
+                isFragmentationEnabled ? Math.min(coalescingSize, fragmentSize) : coalescingSize,
+                TimeUnit.MILLISECONDS.toNanos(coalescingDelayMillis), coalescerOutput, metrics) : null;
+        coalescer = c;
+        sender = new UdpSender(sendQueueCapacity, overflowPolicy, new UdpSender.Transport() {
+            @Override
+            public void send(UdpSender.SendTask task) {
+                sendPacket(task);
+            }
+
+            @Override
+            public long flush(long now) {
+                long wait = pacer.flushReady(now, pacerOutput);
+                if (c == null) {
+                    return wait;
+                }
+                try {
+                    return Math.min(wait, c.flushExpired(now));
+                } catch (IOException | IllegalArgumentException e) {
+                    metrics.sendFailures.increment();
+                    e.printStackTrace();
+                    return 0;
+                }
+            }
+
+            @Override
+            public int dropPending() {
+                return pacer.dropAll() + (c == null ? 0 : c.dropAll());
+            }
+        });
+        sender.setWeights(sendLaneWeights);
+        sender.start(new UdpThreadFactory(TAG + "-sender", Thread.NORM_PRIORITY, false));
+        dispatcher.start();
+        startMetricsReporter();
+        if (!reliableChannels.isEmpty()) {
+            startReliableTimer();
+        }
+        if (shardedReceiver != null) {
+            isThreadRunning = true;
+            shardedReceiver.start(new UdpThreadFactory(TAG + "-shard", Thread.NORM_PRIORITY, false));
+            UdpLog.e(TAG, "UDP Shard Threads are running...");
+            return;
+        }
+        isThreadRunning = true;
+        receiveThread = new UdpThreadFactory(TAG).newThread(new Runnable() {
+            @Override
+            public void run() {
+                UdpLog.e(TAG, "UDP Thread is running...");
+                UdpSelectorLoop loop = selectorLoop;
+                if (loop != null) {
+                    loop.run();
+                    UdpLog.e(TAG, "UDP Selector Thread is Stop!!");
+                    return;
+                }
+                receiveMessage();
+            }
+        });
+        receiveThread.start();
+    }
+
+    /**
+     * 自定义广播地址并发送广播消息
+     *
+     * @param message 消息文本
+     * @return 入队结果
+     */
+    public SendStatus sendBroadcastInCustomHost(String host, String message) {
+        setUdpHost(host);
+        return sendMessage(message);
+    }
+
+    /**
+     * 自定义广播地址并发送广播消息
+     *
+     * @param map 数据Map
+     * @return 入队结果
+     */
+    public SendStatus sendBroadcastInCustomHost(String host, Map<String, Object> map) {
+        setUdpHost(host);
+        return sendMessage(map);
+    }
+
+    /**
+     * 发送字节数组消息,注意提前设置目标地址
+     *
+     * @param message 消息文本
+     * @return 入队结果
+     */
+    public SendStatus sendMessage(byte[] message) {
+        return enqueue(message);
+    }
+
+    /**
+     * 发送消息，注意提前设置目标地址
+     *
+     * @param message 消息文本
+     * @return 入队结果
+     */
+    public SendStatus sendMessage(final String message) {
+        return enqueue(message.getBytes());
+    }
+
+    /**
+     * 发送json数据，注意提前设置目标地址
+     * 数字、布尔、null、嵌套Map、集合和数组保留Json类型，其余对象按String.valueOf写为字符串
+     *
+     * @param map 数据Map
+     * @return 入队结果
+     */
+    public SendStatus sendMessage(Map<String, Object> map) {
+        return enqueue(JsonWriter.encode(map));
+    }
+
+    /**
+     * 按注册的编解码发送消息，注意提前设置目标地址
+     *
+     * @param message 已通过{@link #registerMessageType}注册类型的消息
+     * @return 入队结果
+     * @throws IllegalArgumentException 消息类型未注册
+     */
+    public SendStatus sendObject(Object message) {
+        return enqueue(encodeObject(message));
+    }
+
+    /**
+     * 按优先级发送，不同优先级的消息不保证先后顺序，注意提前设置目标地址
+     *
+     * @param message  消息
+     * @param priority 优先级，{@link #sendMessage(byte[])}等为{@link SendPriority#NORMAL}
+     * @return 入队结果
+     */
+    public SendStatus sendMessage(byte[] message, SendPriority priority) {
+        return enqueue(message, priority);
+    }
+
+    public SendStatus sendMessage(String message, SendPriority priority) {
+        return enqueue(message.getBytes(), priority);
+    }
+
+    public SendStatus sendMessage(Map<String, Object> map, SendPriority priority) {
+        return enqueue(JsonWriter.encode(map), priority);
+    }
+
+    public SendStatus sendObject(Object message, SendPriority priority) {
+        return enqueue(encodeObject(message), priority);
+    }
+
+    /**
+     * 异步发送，写入Socket、被丢弃或失败后回调，注意提前设置目标地址。
+     * 回调在发送线程中执行，不经过其他线程，可以据此控制发送速度；
+     * 在回调中继续发送时{@link OverflowPolicy#BLOCK}不会阻塞，队列已满返回{@link SendStatus#DROPPED}
+     *
+     * @param message  消息
+     * @param listener 完成回调
+     * @return 入队结果，未进入队列时已在当前线程回调
+     */
+    public SendStatus sendMessageAsync(byte[] message, OnSendCompleteListener listener) {
+        return sendMessageAsync(message, SendPriority.NORMAL, listener);
+    }
+
+    public SendStatus sendMessageAsync(String message, OnSendCompleteListener listener) {
+        return sendMessageAsync(message.getBytes(), SendPriority.NORMAL, listener);
+    }
+
+    public SendStatus sendMessageAsync(byte[] message, SendPriority priority, OnSendCompleteListener listener) {
+        return offer(prepareMessage(message), getCurrentHost(), getCurrentPort(), priority, listener);
+    }
+
+    /**
+     * 异步发送，future在发送线程中完成，后续处理不是轻量操作时请使用thenXxxAsync
+     *
+     * @param message 消息
+     * @return 发送结果，不会异常完成，失败原因见{@link SendResult#getCause()}
+     */
+    public CompletableFuture<SendResult> sendMessageAsync(byte[] message) {
+        final CompletableFuture<SendResult> future = new CompletableFuture<>();
+        sendMessageAsync(message, new OnSendCompleteListener() {
+            @Override
+            public void onComplete(SendResult result) {
+                future.complete(result);
+            }
+        });
+        return future;
+    }
+
+    public CompletableFuture<SendResult> sendMessageAsync(String message) {
+        return sendMessageAsync(message.getBytes());
+    }
+
+    /**
+     * 批量发送到当前目标地址，全部入队后才唤醒发送线程一次
+     *
+     * @param messages 消息，按顺序发送
+     * @return 进入队列的消息数量
+     */
+    public int sendAll(List<byte[]> messages) {
+        return sendAll(messages, null);
+    }
+
+    /**
+     * @param listener 每条消息各回调一次，同一目标的回调顺序与消息顺序一致，可以为null
+     * @see #sendAll(List)
+     */
+    public int sendAll(List<byte[]> messages, OnSendCompleteListener listener) {
+        List<byte[]> frames = new ArrayList<>(messages.size());
+        for (int i = 0, size = messages.size(); i < size; i++) {
+            frames.add(prepareMessage(messages.get(i)));
+        }
+        if (!isSocketStarted()) {
+            startUdpSocket();
+        }
+        UdpSender s = sender;
+        if (s == null) {
+            for (int i = 0; i < frames.size(); i++) {
+                UdpSender.SendTask.complete(listener, SendResult.REJECTED);
+            }
+            return 0;
+        }
+        return s.offerAll(frames, getCurrentHost(), getCurrentPort(), SendPriority.NORMAL, listener);
+    }
+
+    /**
+     * 发送到主题，对端只回调订阅了该主题的{@link #subscribe}，注意提前设置目标地址。
+     * 从未订阅过任何主题的接收端不解析主题帧，按原始数据回调
+     *
+     * @param topic   主题ID，0~65535
+     * @param message 消息
+     * @return 入队结果
+     */
+    public SendStatus sendToTopic(int topic, byte[] message) {
+        return sendToTopic(topic, message, SendPriority.NORMAL);
+    }
+
+    public SendStatus sendToTopic(int topic, String message) {
+        return sendToTopic(topic, message.getBytes(), SendPriority.NORMAL);
+    }
+
+    public SendStatus sendToTopic(int topic, byte[] message, SendPriority priority) {
+        checkTopic(topic);
+        byte[] payload = compressIfEnabled(message);
+        byte[] frame = new byte[Frames.TOPIC_HEADER_LENGTH + payload.length];
+        ByteBuffer.wrap(frame).put(Frames.TOPIC).putShort((short) topic).put(payload);
+        return offer(isMessageIdEnabled ? withMessageId(frame) : frame,
+                getCurrentHost(), getCurrentPort(), priority);
+    }
+
+    /**
+     * 订阅主题，收到发往该主题的消息时回调，同一主题可以有多个订阅。
+     * 主题消息不经过{@link #setReceiveListener}等全局回调，回调线程同样由{@link #setDispatcher}决定
+     *
+     * @param topic    主题ID，0~65535
+     * @param listener 回调
+     * @return 订阅，调用{@link TopicSubscription#cancel()}取消
+     */
+    public TopicSubscription subscribe(int topic, OnUdpByteReceiveListener listener) {
+        return subscribe(topic, null, listener);
+    }
+
+    public TopicSubscription subscribe(int topic, OnUdpReceiveListener listener) {
+        return subscribe(topic, null, new StringReceiveAdapter(listener));
+    }
+
+    /**
+     * @param sourceFilter 只接收来自该地址的消息，端口为0时匹配任意端口，为null时不过滤
+     * @see #subscribe(int, OnUdpByteReceiveListener)
+     */
+    public TopicSubscription subscribe(int topic, InetSocketAddress sourceFilter, OnUdpByteReceiveListener listener) {
+        checkTopic(topic);
+        if (listener == null) {
+            throw new NullPointerException("listener == null");
+        }
+        TopicSubscription subscription = new TopicSubscription(topicRouter, topic, sourceFilter, listener);
+        topicRouter.add(subscription);
+        isTopicEnabled = true;
+        return subscription;
+    }
+
+    private static void checkTopic(int topic) {
+        if (topic < 0 || topic > TopicRouter.MAX_TOPIC) {
+            throw new IllegalArgumentException("topic out of range: " + topic);
+        }
+    }
+
+    /**
+     * 在调用线程中压缩，多个线程发送时可并行压缩
+     *
+     * @param data 原始载荷
+     * @return 压缩帧，压缩后没有变小时返回原始载荷
+     */
+    private byte[] compress(byte[] data) {
+        long start = System.nanoTime();
+        byte[] compressed = Compressor.compress(data);
+        metrics.compressNanos.add(System.nanoTime() - start);
+        if (compressed == null) {
+            metrics.compressSkipped.increment();
+            return data;
+        }
+        metrics.compressedMessages.increment();
+        metrics.compressInputBytes.add(data.length);
+        metrics.compressOutputBytes.add(compressed.length);
+        return compressed;
+    }
+
+    /**
+     * 按当前目标地址入队，目标地址在入队时确定，发送线程按入队顺序发送
+     *
+     * @param data 数据
+     * @return 入队结果
+     */
+    private SendStatus enqueue(byte[] data) {
+        return enqueue(data, SendPriority.NORMAL);
+    }
+
+    private SendStatus enqueue(byte[] data, SendPriority priority) {
+        return offer(prepareMessage(data), getCurrentHost(), getCurrentPort(), priority);
+    }
+
+    /**
+     * 为消息加上ID后向当前目标地址重复发送多次，对端收到的重复副本在回调前被丢弃，
+     * 适合对重要的广播消息做冗余发送以抵抗丢包，无需开启{@link #setMessageIdEnabled}，
+     * 接收端需开启{@link #setDuplicateFilterEnabled}
+     *
+     * @param message        消息
+     * @param copies         发送次数
+     * @param intervalMillis 每次发送的间隔，为0时连续入队
+     * @return 第一次发送的入队结果
+     */
+    public SendStatus sendRedundant(byte[] message, int copies, long intervalMillis) {
+        byte[] frame = withMessageId(compressIfEnabled(message));
+        String host = getCurrentHost();
+        int port = getCurrentPort();
+        SendStatus status = offer(frame, host, port, SendPriority.NORMAL);
+        if (copies <= 1 || status == SendStatus.REJECTED) {
+            return status;
+        }
+        if (intervalMillis <= 0) {
+            for (int i = 1; i < copies; i++) {
+                offer(frame, host, port, SendPriority.NORMAL);
+            }
+            return status;
+        }
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        timer().schedule(new RepeatTask(frame, host, port, copies - 1, intervalNanos), intervalNanos);
+        return status;
+    }
+
+    public SendStatus sendRedundant(String message, int copies, long intervalMillis) {
+        return sendRedundant(message.getBytes(), copies, intervalMillis);
+    }
+
+    /**
+     * 在时间轮中按间隔重复入队同一帧，关闭UDP后时间轮停止，剩余副本不再发送
+     */
+    private final class RepeatTask extends TimingWheel.Task {
+        private final byte[] frame;
+        private final String host;
+        private final int port;
+        private final long intervalNanos;
+        private int remaining;
+
+        RepeatTask(byte[] frame, String host, int port, int remaining, long intervalNanos) {
+            this.frame = frame;
+            this.host = host;
+            this.port = port;
+            this.remaining = remaining;
+            this.intervalNanos = intervalNanos;
+        }
+
+        @Override
+        void expire() {
+            UdpSender s = sender;
+            if (s == null || s.offer(frame, host, port, SendPriority.NORMAL, null) == SendStatus.REJECTED) {
+                return;
+            }
+            if (--remaining > 0) {
+                timer().schedule(this, intervalNanos);
+            }
+        }
+    }
+
+    /**
+     * 发送请求并等待响应，对端需设置{@link #setRequestListener}，
+     * 关联ID由端点分配，响应在接收线程中完成future，耗时的后续处理请使用thenXxxAsync
+     *
+     * @param host          对端地址，只接受来自该地址和端口的响应；
+     *                      可以是广播地址（255.255.255.255或当前子网广播地址）或组播地址，此时由任意来源的第一个响应完成。
+     *                      请求从本端监听端口发出，组播时响应方需已加入该组
+     * @param port          对端端口
+     * @param payload       请求内容
+     * @param timeoutMillis 超时时间，超时后future以{@link TimeoutException}完成
+     * @return 响应内容，未完成的请求过多或入队失败时以{@link RejectedExecutionException}完成，
+     * 无法解析对端地址时以{@link UnknownHostException}完成
+     */
+    public CompletableFuture<byte[]> request(String host, int port, byte[] payload, long timeoutMillis) {
+        if (!isSocketStarted()) {
+            startUdpSocket();
+        }
+        InetSocketAddress peer = new InetSocketAddress(host, port);
+        if (peer.isUnresolved()) {
+            CompletableFuture<byte[]> future = new CompletableFuture<>();
+            future.completeExceptionally(new UnknownHostException(host));
+            return future;
+        }
+        PendingRequests table;
+        TimingWheel wheel;
+        synchronized (this) {
+            if (pendingRequests == null) {
+                pendingRequests = new PendingRequests(maxPendingRequests, metrics);
+            }
+            table = pendingRequests;
+            wheel = timer();
+        }
+        PendingRequests.Pending pending = table.add(isBroadcastAddress(peer.getAddress()) ? null : peer);
+        if (pending == null) {
+            CompletableFuture<byte[]> future = new CompletableFuture<>();
+            future.completeExceptionally(new RejectedExecutionException("too many pending requests"));
+            return future;
+        }
+        byte[] frame = new byte[Frames.REQUEST_HEADER_LENGTH + payload.length];
+        ByteBuffer.wrap(frame).put(Frames.REQUEST).put(Frames.TYPE_REQUEST).putLong(pending.id).put(payload);
+        wheel.schedule(pending, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        metrics.requestsSent.increment();
+        SendStatus status = offer(compressIfEnabled(frame), host, port, SendPriority.NORMAL);
+        if (status != SendStatus.QUEUED && table.remove(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException("request " + status));
+        }
+        return pending.future;
+    }
+
+    public CompletableFuture<byte[]> request(String host, int port, String payload, long timeoutMillis) {
+        return request(host, port, payload.getBytes(), timeoutMillis);
+    }
+
+    /**
+     * @return 是否为受限广播地址、当前子网广播地址或组播地址，这类请求的响应来自其他地址
+     */
+    private boolean isBroadcastAddress(InetAddress address) {
+        return address.isMulticastAddress()
+                || DEFAULT_SOCKET_HOST.equals(address.getHostAddress())
+                || networkState.get().broadcastHost.equals(address.getHostAddress());
+    }
+
+    SendStatus sendResponse(long id, InetSocketAddress peer, byte[] response) {
+        byte[] frame = new byte[Frames.REQUEST_HEADER_LENGTH + response.length];
+        ByteBuffer.wrap(frame).put(Frames.REQUEST).put(Frames.TYPE_RESPONSE).putLong(id).put(response);
+        return offer(compressIfEnabled(frame), peer.getAddress().getHostAddress(), peer.getPort(),
+                SendPriority.NORMAL);
+    }
+
+    /**
+     * 设置接收回调和请求回调的执行策略，运行中设置时立即切换
+     *
+     * @param dispatcher 执行策略，传入null时为{@link UdpDispatcher#INLINE}
+     */
+    public void setDispatcher(UdpDispatcher dispatcher) {
+        UdpDispatcher d = dispatcher == null ? UdpDispatcher.INLINE : dispatcher;
+        UdpDispatcher old = this.dispatcher;
+        if (d == old) {
+            return;
+        }
+        if (isSocketStarted()) {
+            d.start();
+        }
+        this.dispatcher = d;
+        old.stop();
+    }
+
+    /**
+     * 设置同时等待响应的请求上限，需在第一次{@link #request}之前设置
+     *
+     * @param maxPendingRequests 上限，默认为{@link #DEFAULT_MAX_PENDING_REQUESTS}
+     */
+    public void setMaxPendingRequests(int maxPendingRequests) {
+        this.maxPendingRequests = maxPendingRequests <= 0 ? DEFAULT_MAX_PENDING_REQUESTS : maxPendingRequests;
+    }
+
+    /**
+     * 设置请求回调，处理对端通过{@link #request}发来的请求，与其他接收回调互不影响
+     *
+     * @param listener 请求回调，传入null时忽略所有请求
+     */
+    public void setRequestListener(OnUdpRequestListener listener) {
+        this.requestListener = listener;
+    }
+
+    /**
+     * 在调用线程中直接写出内部帧，只能在发送线程停止后、关闭Socket前调用
+     */
+    void writeFrameNow(byte[] frame, InetSocketAddress peer) {
+        DestinationCache.Destination destination = new DestinationCache.Destination(
+                peer.getAddress().getHostAddress(), peer.getPort(), peer);
+        try {
+            writeDatagram(destination, ByteBuffer.wrap(frame), SendPriority.NORMAL);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 内部帧直接入队，不经过压缩
+     */
+    SendStatus offerFrame(byte[] frame, InetSocketAddress peer) {
+        return offerFrame(frame, peer, SendPriority.NORMAL);
+    }
+
+    SendStatus offerFrame(byte[] frame, InetSocketAddress peer, SendPriority priority) {
+        return offer(frame, peer.getAddress().getHostAddress(), peer.getPort(), priority);
+    }
+
+    private SendStatus offer(byte[] data, String host, int port, SendPriority priority) {
+        return offer(data, host, port, priority, null);
+    }
+
+    /**
+     * @param callback 完成回调，未进入队列时在当前线程回调
+     */
+    private SendStatus offer(byte[] data, String host, int port, SendPriority priority,
+                             OnSendCompleteListener callback) {
+        if (!isSocketStarted()) {
+            startUdpSocket();
+        }
+        UdpSender s = sender;
+        SendStatus status = s == null ? SendStatus.REJECTED
+                : s.offer(data, host, port, priority == null ? SendPriority.NORMAL : priority, callback);
+        if (status != SendStatus.QUEUED) {
+            UdpSender.SendTask.complete(callback, SendResult.of(status));
+        }
+        return status;
+    }
+
+    /**
+     * 用户消息入队前的处理：按设置压缩，开启消息ID时加上ID
+     */
+    byte[] prepareMessage(byte[] data) {
+        byte[] payload = compressIfEnabled(data);
+        return isMessageIdEnabled ? withMessageId(payload) : payload;
+    }
+
+    private byte[] withMessageId(byte[] payload) {
+        byte[] frame = new byte[Frames.DEDUP_HEADER_LENGTH + payload.length];
+        ByteBuffer.wrap(frame).put(Frames.DEDUP).putLong(nextMessageId.getAndIncrement()).put(payload);
+        return frame;
+    }
+
+    byte[] compressIfEnabled(byte[] data) {
+        return isCompressionEnabled && data.length >= compressionThreshold ? compress(data) : data;
+    }
+
+    byte[] encodeObject(Object message) {
+        return messageRegistry.encode(message);
+    }
+
+    /**
+     * 在发送线程中发送数据，目标地址从缓存中获取，目标令牌不足时先进入该目标的等待队列
+     *
+     * @param task 待发送的消息
+     */
+    private void sendPacket(UdpSender.SendTask task) {
+        metrics.laneWait[task.priority.ordinal()].record(System.nanoTime() - task.enqueueNanos);
+        double lossRate = simulatedLossRate;
+        if (lossRate > 0 && ThreadLocalRandom.current().nextDouble() < lossRate) {
+            // 模拟的是网络丢包，对发送方而言已发出
+            task.complete(SendResult.SENT);
+            return;
+        }
+        DestinationCache.Destination destination;
+        try {
+            destination = destinationCache.get(task.host, task.port);
+        } catch (IOException | IllegalArgumentException e) {
+            metrics.sendFailures.increment();
+            e.printStackTrace();
+            task.complete(SendResult.failed(e));
+            return;
+        }
+        // 紧急消息（包括可靠传输的ACK）不等待目标令牌，其他目标的消息也不受该目标限速影响
+        if (task.priority != SendPriority.URGENT && pacer.defer(destination, task, System.nanoTime())) {
+            metrics.throttledPackets.increment();
+            return;
+        }
+        sendPacket(destination, task);
+    }
+
+    /**
+     * 开启合并时小消息先写入合并缓冲区，开启分片时大消息拆分为多个分片
+     */
+    private void sendPacket(DestinationCache.Destination destination, UdpSender.SendTask task) {
+        byte[] data = task.data;
+        try {
+            Coalescer c = coalescer;
+            // 紧急消息不等待合并
+            if (c != null && task.priority != SendPriority.URGENT) {
+                if (c.accepts(data.length)) {
+                    // 合并的消息在数据报发出后回调
+                    c.add(destination, task, System.nanoTime());
+                    metrics.enqueueToWire.record(System.nanoTime() - task.enqueueNanos);
+                    return;
+                }
+                // 大消息不能越过之前合并的小消息
+                c.flush(destination);
+            }
+            Fragmenter f = fragmenter;
+            boolean isWritten = true;
+            if (f == null || !f.needsFragment(data.length)) {
+                isWritten = writeDatagram(destination, ByteBuffer.wrap(data), task.priority);
+            } else {
+                int messageId = f.nextMessageId();
+                int count = f.fragmentCount(data.length);
+                // 缺一个分片整条消息都无法重组，之后的分片不再发送，避免浪费带宽和令牌
+                for (int i = 0; i < count && isWritten; i++) {
+                    isWritten = writeDatagram(destination, f.fragment(data, messageId, i, count), task.priority);
+                }
+            }
+            metrics.enqueueToWire.record(System.nanoTime() - task.enqueueNanos);
+            task.complete(isWritten ? SendResult.SENT : SendResult.failed(new IOException("send buffer full")));
+        } catch (IOException | IllegalArgumentException e) {
+            metrics.sendFailures.increment();
+            e.printStackTrace();
+            task.complete(SendResult.failed(e));
+        }
+    }
+
+    /**
+     * 写出单个数据报，高频目标可使用已connect的通道，Selector/多Socket接收模式下使用通道发送
+     *
+     * @param destination 目标
+     * @param datagram    数据报，position~limit为有效数据
+     * @param priority    优先级，开启标记时决定IP_TOS
+     * @return 是否写入，发送缓冲区已满被丢弃时为false
+     */
+    private boolean writeDatagram(DestinationCache.Destination destination, ByteBuffer datagram,
+                                  SendPriority priority) throws IOException {
+        int length = datagram.remaining();
+        if (pacer.isEnabled()) {
+            pace(destination, length, priority);
+        }
+        int trafficClass = isTrafficClassMarkingEnabled ? priority.getTrafficClass() : 0;
+        int generation = socketGeneration;
+        int position = datagram.position();
+        boolean isWritten;
+        try {
+            isWritten = write(destination, datagram, trafficClass);
+        } catch (IOException e) {
+            if (generation == socketGeneration) {
+                throw e;
+            }
+            // 写入时Socket被重新绑定，旧Socket已关闭，在新Socket上重试一次
+            datagram.position(position);
+            isWritten = write(destination, datagram, trafficClass);
+        }
+        if (isWritten) {
+            metrics.packetsOut.increment();
+            metrics.bytesOut.add(length);
+        }
+        return isWritten;
+    }
+
+    private boolean write(DestinationCache.Destination destination, ByteBuffer datagram,
+                          int trafficClass) throws IOException {
+        DatagramChannel connected = destination.getConnectedChannel();
+        DatagramChannel sendChannel = channel;
+        DatagramSocket socket = client;
+        if (connected != null) {
+            if (destination.connectedTrafficClass != trafficClass) {
+                destination.connectedTrafficClass = trafficClass;
+                setTrafficClass(connected, trafficClass);
+            }
+            if (connected.write(datagram) == 0) {
+                metrics.sendFailures.increment();
+                UdpLog.e(TAG, "发送缓冲区已满，数据包被丢弃");
+                return false;
+            }
+        } else if (sendChannel != null) {
+            if (socketTrafficClass != trafficClass || markedSocket != sendChannel) {
+                socketTrafficClass = trafficClass;
+                markedSocket = sendChannel;
+                setTrafficClass(sendChannel, trafficClass);
+            }
+            if (destination.isMulticast) {
+                multicastGroups.configure(sendChannel, destination.address);
+            }
+            if (sendChannel.send(datagram, destination.address) == 0) {
+                metrics.sendFailures.increment();
+                UdpLog.e(TAG, "发送缓冲区已满，数据包被丢弃");
+                return false;
+            }
+        } else if (socket != null) {
+            if (socketTrafficClass != trafficClass || markedSocket != socket) {
+                socketTrafficClass = trafficClass;
+                markedSocket = socket;
+                try {
+                    socket.setTrafficClass(trafficClass);
+                } catch (SocketException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (destination.isMulticast) {
+                multicastGroups.configure((MulticastSocket) socket, destination.address);
+            }
+            outgoingPacket.setData(datagram.array(), datagram.arrayOffset() + datagram.position()
+                    , datagram.remaining());
+            outgoingPacket.setSocketAddress(destination.address);
+            socket.send(outgoingPacket);
+        } else {
+            throw new IOException("UDP socket is closed");
+        }
+        return true;
+    }
+
+    /**
+     * 设置失败（如部分系统不支持IPv6通道的IP_TOS）时不影响发送，也不再重试
+     */
+    static void setTrafficClass(DatagramChannel channel, int trafficClass) {
+        try {
+            channel.setOption(StandardSocketOptions.IP_TOS, trafficClass);
+        } catch (IOException | UnsupportedOperationException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 扣除全局和目标的令牌，目标的欠账由之后的消息在等待队列中偿还，
+     * 只有全局令牌不足时发送线程才等待，紧急消息不等待，关闭UDP时立即返回
+     */
+    private void pace(DestinationCache.Destination destination, int length, SendPriority priority) {
+        long now = System.nanoTime();
+        pacer.reserveDestination(destination, length, now);
+        long wait = pacer.reserveGlobal(length, now);
+        if (wait <= 0 || priority == SendPriority.URGENT) {
+            return;
+        }
+        metrics.throttledPackets.increment();
+        metrics.throttledNanos.add(wait);
+        long deadline = now + wait;
+        UdpSender s = sender;
+        // 生产者入队时可能唤醒发送线程，需等到截止时间
+        while (s != null && s.isRunning() && (wait = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, wait);
+        }
+    }
+
+    /**
+     * 高频目标是否使用已connect的独立通道发送，默认关闭。
+     * 开启后内核无需每次发送都查找路由。该通道与监听Socket绑定同一端口，对端看到的源端口不变，
+     * 对端发来的数据包（包括请求响应和可靠通道的确认）由该通道接收，回调与监听端口收到的一致
+     *
+     * @param enabled 是否开启
+     */
+    public void setConnectedSendEnabled(boolean enabled) {
+        destinationCache.setConnectedSendEnabled(enabled);
+    }
+
+    private synchronized UdpSelectorLoop connectedLoop() throws IOException {
+        UdpSelectorLoop loop = connectedLoop;
+        if (loop == null) {
+            loop = new UdpSelectorLoop(bufferPool, packetHandler);
+            new UdpThreadFactory(TAG + "-connected").newThread(loop).start();
+            connectedLoop = loop;
+        }
+        return loop;
+    }
+
+    private synchronized void closeConnectedLoop() {
+        if (connectedLoop != null) {
+            connectedLoop.close();
+            connectedLoop = null;
+        }
+    }
+
+    /**
+     * 网络发生变化时调用，清空目标地址缓存并关闭已connect的通道，重新解析网卡和广播地址
+     */
+    public void onNetworkChanged() {
+        destinationCache.invalidate();
+        networkState.invalidate();
+    }
+
+    /**
+     * 获取当前网络的子网广播地址，支持Wi-Fi、热点（ap0等）和以太网，
+     * 结果缓存到{@link #onNetworkChanged()}，可以在每次发送前调用
+     *
+     * @return 子网广播地址，没有可用网卡时为{@link #DEFAULT_SOCKET_HOST}
+     */
+    public String getSubnetBroadcastAddress() {
+        return networkState.get().broadcastHost;
+    }
+
+    /**
+     * @return 当前用于广播的网卡，没有可用网卡时返回null
+     */
+    public NetworkInterface getNetworkInterface() {
+        return networkState.get().networkInterface;
+    }
+
+    /**
+     * @return 当前网卡的IPv4地址，没有可用网卡时返回null
+     */
+    public String getLocalIpAddress() {
+        InetAddress address = networkState.get().address;
+        return address == null ? null : address.getHostAddress();
+    }
+
+    /**
+     * 是否为Ip地址
+     *
+     * @param regexString 匹配的字符串
+     * @return 是否是IP
+     */
+    public boolean isIpAddress(String regexString) {
+        return regexString != null && !regexString.isEmpty() && Pattern.matches(REGEX_IP, regexString);
+    }
+
+    /**
+     * 创建独立的UDP端点，每个端点拥有各自的端口、回调、发送队列和线程，互不影响
+     */
+    public static final class Builder extends BaseBuilder<Builder> {
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        /**
+         * @return 未启动的端点，调用{@link #startUdpSocket()}后开始接收
+         */
+        public UdpEndpoint build() {
+            return applyTo(new UdpEndpoint());
+        }
+    }
+
+    /**
+     * 端点配置，子类通过{@link #applyTo}将配置应用到具体的端点类型上
+     *
+     * @param <B> 子类Builder类型，保证链式调用返回子类
+     */
+    public abstract static class BaseBuilder<B extends BaseBuilder<B>> {
+
+        private String host;
+        private int port;
+        private ReceiveMode receiveMode = ReceiveMode.BLOCKING;
+        private int receiveShardCount = CPU_COUNT;
+        private int sendQueueCapacity = DEFAULT_SEND_QUEUE_CAPACITY;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private int maxDatagramSize = DEFAULT_MAX_DATAGRAM_SIZE;
+        private int receiveBufferSize = 0;
+        private int sendBufferSize = 0;
+        private boolean isFragmentationEnabled = false;
+        private int fragmentSize = DEFAULT_FRAGMENT_SIZE;
+        private boolean isCoalescingEnabled = false;
+        private int coalescingSize = DEFAULT_FRAGMENT_SIZE;
+        private long coalescingDelayMillis = DEFAULT_COALESCING_DELAY_MILLIS;
+        private boolean isCompressionEnabled = false;
+        private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+        private OnUdpReceiveListener receiveListener;
+        private OnUdpByteReceiveListener byteReceiveListener;
+        private final MessageRegistry messageRegistry = new MessageRegistry();
+        private OnUdpRequestListener requestListener;
+        private UdpDispatcher dispatcher;
+        private int[] sendLaneWeights = new int[3];
+        private boolean isTrafficClassMarkingEnabled = false;
+        private Pacer.Limit sendRateLimit;
+        private Pacer.Limit destinationRateLimit;
+
+        /**
+         * @param host 默认发送目标地址
+         */
+        public B setHost(String host) {
+            this.host = host;
+            return self();
+        }
+
+        /**
+         * @param port 监听端口，同时也是默认发送目标端口
+         */
+        public B setPort(int port) {
+            this.port = port;
+            return self();
+        }
+
+        public B setReceiveMode(ReceiveMode receiveMode) {
+            this.receiveMode = receiveMode;
+            return self();
+        }
+
+        /**
+         * @param shardCount {@link ReceiveMode#SHARDED}模式下的接收Socket数量
+         */
+        public B setReceiveShardCount(int shardCount) {
+            this.receiveShardCount = shardCount;
+            return self();
+        }
+
+        public B setSendQueueCapacity(int capacity) {
+            this.sendQueueCapacity = capacity;
+            return self();
+        }
+
+        public B setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return self();
+        }
+
+        /**
+         * @see UdpEndpoint#setSendLaneWeights(int, int, int)
+         */
+        public B setSendLaneWeights(int urgent, int normal, int bulk) {
+            this.sendLaneWeights = new int[]{urgent, normal, bulk};
+            return self();
+        }
+
+        /**
+         * @see UdpEndpoint#setTrafficClassMarkingEnabled(boolean)
+         */
+        public B setTrafficClassMarkingEnabled(boolean enabled) {
+            this.isTrafficClassMarkingEnabled = enabled;
+            return self();
+        }
+
+        public B setMaxDatagramSize(int maxDatagramSize) {
+            this.maxDatagramSize = maxDatagramSize;
+            return self();
+        }
+
+        /**
+         * @param receiveBufferSize 内核接收缓冲区大小（SO_RCVBUF）
+         * @param sendBufferSize    内核发送缓冲区大小（SO_SNDBUF）
+         */
+        public B setSocketBufferSizes(int receiveBufferSize, int sendBufferSize) {
+            this.receiveBufferSize = receiveBufferSize;
+            this.sendBufferSize = sendBufferSize;
+            return self();
+        }
+
+        /**
+         * @param fragmentSize 开启大消息分片，每个分片数据报的最大长度（含帧头）
+         */
+        public B setFragmentation(int fragmentSize) {
+            this.isFragmentationEnabled = true;
+            this.fragmentSize = fragmentSize;
+            return self();
+        }
+
+        /**
+         * @param maxSize          开启小消息合并，合并后数据报的最大长度
+         * @param flushDelayMillis 消息最多等待的时间
+         */
+        public B setCoalescing(int maxSize, long flushDelayMillis) {
+            this.isCoalescingEnabled = true;
+            this.coalescingSize = maxSize;
+            this.coalescingDelayMillis = flushDelayMillis;
+            return self();
+        }
+
+        /**
+         * @param bytesPerSecond   全局每秒最多发送的字节数，0为不限制
+         * @param packetsPerSecond 全局每秒最多发送的数据报数，0为不限制
+         */
+        public B setSendRateLimit(long bytesPerSecond, long packetsPerSecond) {
+            this.sendRateLimit = new Pacer.Limit(bytesPerSecond, 0, packetsPerSecond, 0);
+            return self();
+        }
+
+        /**
+         * @param bytesPerSecond   每秒最多发往同一目标的字节数，0为不限制
+         * @param packetsPerSecond 每秒最多发往同一目标的数据报数，0为不限制
+         */
+        public B setDestinationRateLimit(long bytesPerSecond, long packetsPerSecond) {
+            this.destinationRateLimit = new Pacer.Limit(bytesPerSecond, 0, packetsPerSecond, 0);
+            return self();
+        }
+
+        /**
+         * @param thresholdBytes 开启发送压缩，不小于该长度的载荷压缩后发送
+         */
+        public B setCompression(int thresholdBytes) {
+            this.isCompressionEnabled = true;
+            this.compressionThreshold = thresholdBytes;
+            return self();
+        }
+
+        public B setReceiveListener(OnUdpReceiveListener listener) {
+            this.receiveListener = listener;
+            this.byteReceiveListener = null;
+            return self();
+        }
+
+        public B setByteReceiveListener(OnUdpByteReceiveListener listener) {
+            this.byteReceiveListener = listener;
+            this.receiveListener = null;
+            return self();
+        }
+
+        public B setRequestListener(OnUdpRequestListener listener) {
+            this.requestListener = listener;
+            return self();
+        }
+
+        public B setDispatcher(UdpDispatcher dispatcher) {
+            this.dispatcher = dispatcher;
+            return self();
+        }
+
+        public B setJsonReceiveListener(OnUdpJsonReceiveListener listener) {
+            return setByteReceiveListener(listener == null ? null : new JsonReceiveAdapter(listener));
+        }
+
+        public <T> B setJsonReceiveListener(Class<T> type, OnUdpObjectReceiveListener<T> listener) {
+            return setByteReceiveListener(listener == null ? null : new ObjectReceiveAdapter<>(type, listener));
+        }
+
+        public <T> B registerMessageType(int typeId, Class<T> type, UdpCodec<T> codec) {
+            messageRegistry.register(typeId, type, codec);
+            return self();
+        }
+
+        public <T> B setMessageListener(Class<T> type, OnUdpObjectReceiveListener<T> listener) {
+            messageRegistry.setListener(type, listener);
+            return self();
+        }
+
+        protected abstract B self();
+
+        /**
+         * 将配置应用到端点上
+         *
+         * @param endpoint 未启动的端点
+         * @return 传入的端点
+         */
+        protected <T extends UdpEndpoint> T applyTo(T endpoint) {
+            endpoint.setUdpHost(host);
+            endpoint.setUdpPort(port);
+            endpoint.setReceiveMode(receiveMode);
+            endpoint.setReceiveShardCount(receiveShardCount);
+            endpoint.setSendQueueCapacity(sendQueueCapacity);
+            endpoint.setOverflowPolicy(overflowPolicy);
+            endpoint.setSendLaneWeights(sendLaneWeights[0], sendLaneWeights[1], sendLaneWeights[2]);
+            endpoint.setTrafficClassMarkingEnabled(isTrafficClassMarkingEnabled);
+            endpoint.setMaxDatagramSize(maxDatagramSize);
+            endpoint.setReceiveBufferSize(receiveBufferSize);
+            endpoint.setSendBufferSize(sendBufferSize);
+            endpoint.setFragmentationEnabled(isFragmentationEnabled);
+            endpoint.setFragmentSize(fragmentSize);
+            endpoint.setCoalescingEnabled(isCoalescingEnabled);
+            endpoint.setCoalescing(coalescingSize, coalescingDelayMillis);
+            endpoint.setCompressionEnabled(isCompressionEnabled);
+            endpoint.setCompressionThreshold(compressionThreshold);
+            ((UdpEndpoint) endpoint).messageRegistry.copyFrom(messageRegistry);
+            ((UdpEndpoint) endpoint).pacer.setGlobalLimit(sendRateLimit);
+            ((UdpEndpoint) endpoint).pacer.setDestinationLimit(destinationRateLimit);
+            endpoint.setRequestListener(requestListener);
+            endpoint.setDispatcher(dispatcher);
+            if (byteReceiveListener != null) {
+                endpoint.setByteReceiveListener(byteReceiveListener);
+            } else if (receiveListener != null) {
+                endpoint.setReceiveListener(receiveListener);
+            }
+            return endpoint;
+        }
+    }
+
+    /**
+     * 设置文本接收回调，与{@link #setByteReceiveListener}互相覆盖
+     *
+     * @param onUdpReceiveListener 文本回调
+     */
+    public void setReceiveListener(OnUdpReceiveListener onUdpReceiveListener) {
+        this.receiveListener = onUdpReceiveListener == null
+                ? null : new StringReceiveAdapter(onUdpReceiveListener);
+    }
+
+    /**
+     * 设置字节级接收回调，可获取发送方地址，与{@link #setReceiveListener}互相覆盖
+     *
+     * @param listener 字节回调
+     */
+    public void setByteReceiveListener(OnUdpByteReceiveListener listener) {
+        this.receiveListener = listener;
+    }
+
+    /**
+     * 设置Json接收回调，数据包直接从接收缓冲区解析为Map，与其他接收回调互相覆盖
+     *
+     * @param listener Json回调
+     */
+    public void setJsonReceiveListener(OnUdpJsonReceiveListener listener) {
+        this.receiveListener = listener == null ? null : new JsonReceiveAdapter(listener);
+    }
+
+    /**
+     * 设置Json接收回调，数据包由Gson绑定为指定类型的对象，与其他接收回调互相覆盖
+     *
+     * @param type     绑定类型
+     * @param listener 对象回调
+     */
+    public <T> void setJsonReceiveListener(Class<T> type, OnUdpObjectReceiveListener<T> listener) {
+        this.receiveListener = listener == null ? null : new ObjectReceiveAdapter<>(type, listener);
+    }
+
+    /**
+     * 注册消息类型，收发双方需使用相同的类型ID和编解码，
+     * 编码后的消息没有字段名，通常比同样内容的Json小很多
+     *
+     * @param typeId 类型ID，0~4095，小于128时帧头只占2字节
+     * @param type   消息类型，发送时按消息的实际类型查找
+     * @param codec  编解码
+     */
+    public <T> void registerMessageType(int typeId, Class<T> type, UdpCodec<T> codec) {
+        messageRegistry.register(typeId, type, codec);
+    }
+
+    /**
+     * 设置已注册类型的接收回调，与其他接收回调互不影响，未设置回调的类型会被丢弃
+     *
+     * @param type     已注册的消息类型
+     * @param listener 对象回调，传入null取消
+     */
+    public <T> void setMessageListener(Class<T> type, OnUdpObjectReceiveListener<T> listener) {
+        messageRegistry.setListener(type, listener);
+    }
+}
@@ -0,0 +1,48 @@
+package com.eurigo.udpcore;
+
+/**
+ * @author Eurigo
+ * desc   : 日志输出，核心模块不依赖Android，默认输出到标准错误流，
+ * Android端由udplibrary替换为android.util.Log
+ */
+public final class UdpLog {
+
+    public interface Logger {
+        /**
+         * @param tag       标签
+         * @param message   日志内容
+         * @param throwable 异常，可能为null
+         */
+        void e(String tag, String message, Throwable throwable);
+    }
+
+    private static volatile Logger logger = new Logger() {
+        @Override
+        public void e(String tag, String message, Throwable throwable) {
+            System.err.println(tag + ": " + message);
+            if (throwable != null) {
+                throwable.printStackTrace();
+            }
+        }
+    };
+
+    private UdpLog() {
+    }
+
+    /**
+     * @param logger 日志实现，传入null时保持不变
+     */
+    public static void setLogger(Logger logger) {
+        if (logger != null) {
+            UdpLog.logger = logger;
+        }
+    }
+
+    static void e(String tag, String message) {
+        logger.e(tag, message, null);
+    }
+
+    static void e(String tag, String message, Throwable throwable) {
+        logger.e(tag, message, throwable);
+    }
+}
@@ -0,0 +1,108 @@
+package com.eurigo.udpcore;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Eurigo
+ * desc   : 单个端点的收发统计，计数使用LongAdder，热路径上只有原子累加
+ */
+final class UdpMetrics {
+
+    final LongAdder packetsIn = new LongAdder();
+    final LongAdder bytesIn = new LongAdder();
+    final LongAdder packetsOut = new LongAdder();
+    final LongAdder bytesOut = new LongAdder();
+    final LongAdder sendFailures = new LongAdder();
+    final LongAdder emptyPackets = new LongAdder();
+    final LongAdder truncatedPackets = new LongAdder();
+    final LongAdder callbackFailures = new LongAdder();
+    final LongAdder compressedMessages = new LongAdder();
+    final LongAdder compressSkipped = new LongAdder();
+    final LongAdder compressInputBytes = new LongAdder();
+    final LongAdder compressOutputBytes = new LongAdder();
+    final LongAdder compressNanos = new LongAdder();
+    final LongAdder decompressedMessages = new LongAdder();
+    final LongAdder decompressFailures = new LongAdder();
+    final LongAdder decompressNanos = new LongAdder();
+    final LongAdder reliableRetransmits = new LongAdder();
+    final LongAdder reliableFailures = new LongAdder();
+    final LongAdder reliableDuplicates = new LongAdder();
+    final LongAdder requestsSent = new LongAdder();
+    final LongAdder requestTimeouts = new LongAdder();
+    final LongAdder lateResponses = new LongAdder();
+    final LongAdder dispatchDropped = new LongAdder();
+    final LongAdder coalescedMessages = new LongAdder();
+    final LongAdder coalescedDatagrams = new LongAdder();
+    final LongAdder throttledPackets = new LongAdder();
+    final LongAdder throttledNanos = new LongAdder();
+    final LongAdder duplicatesSuppressed = new LongAdder();
+    final LongAdder unroutedMessages = new LongAdder();
+
+    /**
+     * 入队到写入Socket的耗时
+     */
+    final LatencyHistogram enqueueToWire = new LatencyHistogram();
+    /**
+     * 收到数据包到开始回调的耗时
+     */
+    final LatencyHistogram receiveToCallback = new LatencyHistogram();
+    /**
+     * 接收回调自身的耗时
+     */
+    final LatencyHistogram callbackTime = new LatencyHistogram();
+    /**
+     * 各优先级消息在发送队列中的等待时间，下标为{@link SendPriority#ordinal()}
+     */
+    final LatencyHistogram[] laneWait = new LatencyHistogram[SendPriority.values().length];
+
+    UdpMetrics() {
+        for (int i = 0; i < laneWait.length; i++) {
+            laneWait[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * 填充计数部分，队列深度等由端点补充
+     */
+    UdpMetricsSnapshot snapshot() {
+        UdpMetricsSnapshot snapshot = new UdpMetricsSnapshot();
+        snapshot.timestampMillis = System.currentTimeMillis();
+        snapshot.packetsIn = packetsIn.sum();
+        snapshot.bytesIn = bytesIn.sum();
+        snapshot.packetsOut = packetsOut.sum();
+        snapshot.bytesOut = bytesOut.sum();
+        snapshot.sendFailures = sendFailures.sum();
+        snapshot.emptyPackets = emptyPackets.sum();
+        snapshot.truncatedPackets = truncatedPackets.sum();
+        snapshot.callbackFailures = callbackFailures.sum();
+        snapshot.compressedMessages = compressedMessages.sum();
+        snapshot.compressSkipped = compressSkipped.sum();
+        snapshot.compressInputBytes = compressInputBytes.sum();
+        snapshot.compressOutputBytes = compressOutputBytes.sum();
+        snapshot.compressNanos = compressNanos.sum();
+        snapshot.decompressedMessages = decompressedMessages.sum();
+        snapshot.decompressFailures = decompressFailures.sum();
+        snapshot.decompressNanos = decompressNanos.sum();
+        snapshot.reliableRetransmits = reliableRetransmits.sum();
+        snapshot.reliableFailures = reliableFailures.sum();
+        snapshot.reliableDuplicates = reliableDuplicates.sum();
+        snapshot.requestsSent = requestsSent.sum();
+        snapshot.requestTimeouts = requestTimeouts.sum();
+        snapshot.lateResponses = lateResponses.sum();
+        snapshot.dispatchDropped = dispatchDropped.sum();
+        snapshot.coalescedMessages = coalescedMessages.sum();
+        snapshot.coalescedDatagrams = coalescedDatagrams.sum();
+        snapshot.throttledPackets = throttledPackets.sum();
+        snapshot.throttledNanos = throttledNanos.sum();
+        snapshot.duplicatesSuppressed = duplicatesSuppressed.sum();
+        snapshot.unroutedMessages = unroutedMessages.sum();
+        snapshot.enqueueToWire = enqueueToWire.snapshot();
+        snapshot.receiveToCallback = receiveToCallback.snapshot();
+        snapshot.callbackTime = callbackTime.snapshot();
+        snapshot.laneWait = new UdpMetricsSnapshot.Latency[laneWait.length];
+        for (int i = 0; i < laneWait.length; i++) {
+            snapshot.laneWait[i] = laneWait[i].snapshot();
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,389 @@
+package com.eurigo.udpcore;
+
+import java.util.Arrays;
+
+/**
+ * @author Eurigo
+ * desc   : 端点收发统计快照，计数均为启动以来的累计值，吞吐量可由两次快照相减得到
+ */
+public final class UdpMetricsSnapshot {
+
+    long timestampMillis;
+    long packetsIn;
+    long bytesIn;
+    long packetsOut;
+    long bytesOut;
+    long sendFailures;
+    long emptyPackets;
+    long truncatedPackets;
+    long callbackFailures;
+    long compressedMessages;
+    long compressSkipped;
+    long compressInputBytes;
+    long compressOutputBytes;
+    long compressNanos;
+    long decompressedMessages;
+    long decompressFailures;
+    long decompressNanos;
+    long reliableRetransmits;
+    long reliableFailures;
+    long reliableDuplicates;
+    long requestsSent;
+    long requestTimeouts;
+    long lateResponses;
+    long dispatchDropped;
+    long coalescedMessages;
+    long coalescedDatagrams;
+    long throttledPackets;
+    long throttledNanos;
+    long duplicatesSuppressed;
+    long unroutedMessages;
+    int queueDepth;
+    int[] laneQueueDepth = new int[SendPriority.values().length];
+    long queueDropped;
+    long reassemblyIncomplete;
+    long reassemblyEvicted;
+    Latency enqueueToWire;
+    Latency receiveToCallback;
+    Latency callbackTime;
+    Latency[] laneWait;
+
+    UdpMetricsSnapshot() {
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public long getPacketsIn() {
+        return packetsIn;
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public long getPacketsOut() {
+        return packetsOut;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    public long getSendFailures() {
+        return sendFailures;
+    }
+
+    public long getEmptyPackets() {
+        return emptyPackets;
+    }
+
+    /**
+     * @return 被截断的数据包数量（数据报超出接收缓冲区或分片长度不一致）
+     */
+    public long getTruncatedPackets() {
+        return truncatedPackets;
+    }
+
+    public long getCallbackFailures() {
+        return callbackFailures;
+    }
+
+    /**
+     * @return 压缩后发送的消息数量
+     */
+    public long getCompressedMessages() {
+        return compressedMessages;
+    }
+
+    /**
+     * @return 超过阈值但压缩后没有变小、按原样发送的消息数量
+     */
+    public long getCompressSkipped() {
+        return compressSkipped;
+    }
+
+    /**
+     * @return 压缩后字节数与原始字节数之比，越小越好，没有压缩过时为1
+     */
+    public double getCompressionRatio() {
+        return compressInputBytes == 0 ? 1 : (double) compressOutputBytes / compressInputBytes;
+    }
+
+    public long getCompressInputBytes() {
+        return compressInputBytes;
+    }
+
+    public long getCompressOutputBytes() {
+        return compressOutputBytes;
+    }
+
+    /**
+     * @return 压缩累计耗时，纳秒，包含没有变小的尝试
+     */
+    public long getCompressNanos() {
+        return compressNanos;
+    }
+
+    public long getDecompressedMessages() {
+        return decompressedMessages;
+    }
+
+    /**
+     * @return 压缩帧损坏或超出长度限制而被丢弃的消息数量
+     */
+    public long getDecompressFailures() {
+        return decompressFailures;
+    }
+
+    /**
+     * @return 解压累计耗时，纳秒
+     */
+    public long getDecompressNanos() {
+        return decompressNanos;
+    }
+
+    /**
+     * @return 可靠通道的重传次数
+     */
+    public long getReliableRetransmits() {
+        return reliableRetransmits;
+    }
+
+    /**
+     * @return 可靠通道因对端不可达而放弃的消息数量
+     */
+    public long getReliableFailures() {
+        return reliableFailures;
+    }
+
+    /**
+     * @return 可靠通道收到的重复数据帧数量
+     */
+    public long getReliableDuplicates() {
+        return reliableDuplicates;
+    }
+
+    public long getRequestsSent() {
+        return requestsSent;
+    }
+
+    public long getRequestTimeouts() {
+        return requestTimeouts;
+    }
+
+    /**
+     * @return 超时后才到达、重复或来源与请求目标不符的响应数量
+     */
+    public long getLateResponses() {
+        return lateResponses;
+    }
+
+    /**
+     * @return 回调队列已满被丢弃的消息数量，见{@link UdpEndpoint#setDispatcher}
+     */
+    public long getDispatchDropped() {
+        return dispatchDropped;
+    }
+
+    /**
+     * @return 合并发送的消息数量，只有一条消息的缓冲区按原样发送，不计入
+     */
+    public long getCoalescedMessages() {
+        return coalescedMessages;
+    }
+
+    /**
+     * @return 合并后发出的数据报数量
+     */
+    public long getCoalescedDatagrams() {
+        return coalescedDatagrams;
+    }
+
+    /**
+     * @return 因全局限速等待的数据报与进入目标等待队列的消息数量，见{@link UdpEndpoint#setSendRateLimit}、{@link UdpEndpoint#setDestinationRateLimit}
+     */
+    public long getThrottledPackets() {
+        return throttledPackets;
+    }
+
+    /**
+     * @return 发送线程因全局限速等待的总时间，纳秒
+     */
+    public long getThrottledNanos() {
+        return throttledNanos;
+    }
+
+    /**
+     * @return 按消息ID过滤掉的重复消息数量
+     */
+    public long getDuplicatesSuppressed() {
+        return duplicatesSuppressed;
+    }
+
+    /**
+     * @return 没有匹配的订阅而丢弃的主题消息数量
+     */
+    public long getUnroutedMessages() {
+        return unroutedMessages;
+    }
+
+    /**
+     * @return 快照时发送队列中等待的消息数量
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return 因发送队列已满被丢弃的消息数量
+     */
+    public long getQueueDropped() {
+        return queueDropped;
+    }
+
+    public long getReassemblyIncomplete() {
+        return reassemblyIncomplete;
+    }
+
+    public long getReassemblyEvicted() {
+        return reassemblyEvicted;
+    }
+
+    /**
+     * @return 入队到写入Socket的延迟
+     */
+    public Latency getEnqueueToWire() {
+        return enqueueToWire;
+    }
+
+    /**
+     * @return 收到数据包到开始回调的延迟
+     */
+    public Latency getReceiveToCallback() {
+        return receiveToCallback;
+    }
+
+    /**
+     * @return 接收回调自身的耗时
+     */
+    public Latency getCallbackTime() {
+        return callbackTime;
+    }
+
+    /**
+     * @return 快照时该优先级队列中等待的消息数量
+     */
+    public int getLaneQueueDepth(SendPriority priority) {
+        return laneQueueDepth[priority.ordinal()];
+    }
+
+    /**
+     * @return 该优先级的消息在发送队列中的等待时间
+     */
+    public Latency getLaneWait(SendPriority priority) {
+        return laneWait[priority.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        return "UdpMetricsSnapshot{" +
+                "packetsIn=" + packetsIn +
+                ", bytesIn=" + bytesIn +
+                ", packetsOut=" + packetsOut +
+                ", bytesOut=" + bytesOut +
+                ", sendFailures=" + sendFailures +
+                ", emptyPackets=" + emptyPackets +
+                ", truncatedPackets=" + truncatedPackets +
+                ", callbackFailures=" + callbackFailures +
+                ", compressedMessages=" + compressedMessages +
+                ", compressSkipped=" + compressSkipped +
+                ", compressionRatio=" + getCompressionRatio() +
+                ", compressNanos=" + compressNanos +
+                ", decompressedMessages=" + decompressedMessages +
+                ", decompressFailures=" + decompressFailures +
+                ", decompressNanos=" + decompressNanos +
+                ", reliableRetransmits=" + reliableRetransmits +
+                ", reliableFailures=" + reliableFailures +
+                ", reliableDuplicates=" + reliableDuplicates +
+                ", requestsSent=" + requestsSent +
+                ", requestTimeouts=" + requestTimeouts +
+                ", lateResponses=" + lateResponses +
+                ", dispatchDropped=" + dispatchDropped +
+                ", coalescedMessages=" + coalescedMessages +
+                ", coalescedDatagrams=" + coalescedDatagrams +
+                ", throttledPackets=" + throttledPackets +
+                ", throttledNanos=" + throttledNanos +
+                ", duplicatesSuppressed=" + duplicatesSuppressed +
+                ", unroutedMessages=" + unroutedMessages +
+                ", queueDepth=" + queueDepth +
+                ", queueDropped=" + queueDropped +
+                ", reassemblyIncomplete=" + reassemblyIncomplete +
+                ", reassemblyEvicted=" + reassemblyEvicted +
+                ", enqueueToWire=" + enqueueToWire +
+                ", receiveToCallback=" + receiveToCallback +
+                ", callbackTime=" + callbackTime +
+                ", laneQueueDepth=" + Arrays.toString(laneQueueDepth) +
+                ", laneWait=" + Arrays.toString(laneWait) +
+                '}';
+    }
+
+    /**
+     * 延迟分布，单位纳秒，分位数为所在2的幂区间的上界
+     */
+    public static final class Latency {
+
+        private final long count;
+        private final long mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        Latency(long count, long mean, long p50, long p90, long p99, long p999, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getP999() {
+            return p999;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count + ", mean=" + mean + "ns, p50=" + p50 + "ns, p99=" + p99
+                    + "ns, p999=" + p999 + "ns, max=" + max + "ns}";
+        }
+    }
+}
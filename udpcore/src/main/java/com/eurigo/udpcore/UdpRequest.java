@@ -0,0 +1,48 @@
+package com.eurigo.udpcore;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * @author Eurigo
+ * desc   : 收到的请求，携带关联ID，回复时原样带回
+ */
+public final class UdpRequest {
+
+    private final UdpEndpoint endpoint;
+    private final long id;
+    private final InetSocketAddress source;
+    private final ByteBuffer data;
+
+    UdpRequest(UdpEndpoint endpoint, long id, InetSocketAddress source, ByteBuffer data) {
+        this.endpoint = endpoint;
+        this.id = id;
+        this.source = source;
+        this.data = data;
+    }
+
+    /**
+     * @return 请求内容的只读视图，仅在{@link OnUdpRequestListener#onRequest}期间有效，异步处理时请先拷贝
+     */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    public InetSocketAddress getSource() {
+        return source;
+    }
+
+    /**
+     * 回复请求，可在任意线程调用
+     *
+     * @param response 响应内容
+     * @return 入队结果
+     */
+    public SendStatus reply(byte[] response) {
+        return endpoint.sendResponse(id, source, response);
+    }
+
+    public SendStatus reply(String response) {
+        return reply(response.getBytes());
+    }
+}
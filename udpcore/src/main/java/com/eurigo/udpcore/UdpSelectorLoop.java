@@ -0,0 +1,257 @@
+package com.eurigo.udpcore;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * @author Eurigo
+ * desc   : 基于 {@link Selector} 的UDP接收事件循环，
+ * 单线程监听多个端口，通道就绪后循环读空再重新select，避免每个包一次唤醒
+ */
+final class UdpSelectorLoop implements Runnable {
+
+    /**
+     * 单个通道每轮最多读取的包数，防止某个高流量端口饿死其他端口
+     */
+    private static final int MAX_READS_PER_ROUND = 256;
+
+    private final Selector selector;
+    private final ByteBufferPool bufferPool;
+    private final PacketHandler handler;
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, DatagramChannel> channels = new ConcurrentHashMap<>();
+    /**
+     * 由调用方创建并配置的通道，不按端口索引，例如同一端口的多个组播组
+     */
+    private final Set<DatagramChannel> registered = Collections.newSetFromMap(
+            new ConcurrentHashMap<DatagramChannel, Boolean>());
+    private volatile boolean isRunning = true;
+
+    UdpSelectorLoop(ByteBufferPool bufferPool, PacketHandler handler) throws IOException {
+        this.selector = Selector.open();
+        this.bufferPool = bufferPool;
+        this.handler = handler;
+    }
+
+    /**
+     * 绑定端口并注册到Selector，可在任意线程调用
+     *
+     * @param port 监听端口
+     * @return 绑定后的非阻塞通道，可直接用于发送
+     */
+    DatagramChannel bind(int port) throws IOException {
+        DatagramChannel exist = channels.get(port);
+        if (exist != null) {
+            return exist;
+        }
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.socket().setReuseAddress(true);
+            channel.socket().setBroadcast(true);
+            channel.socket().bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        channels.put(port, channel);
+        pendingTasks.add(() -> {
+            try {
+                channel.register(selector, SelectionKey.OP_READ);
+            } catch (IOException e) {
+                channels.remove(port, channel);
+                closeQuietly(channel);
+            }
+        });
+        selector.wakeup();
+        return channel;
+    }
+
+    /**
+     * 重新绑定端口并注册新通道，可在任意线程调用。旧通道不关闭，由调用方切换到新通道后关闭，
+     * 绑定失败时保留旧通道
+     *
+     * @param port 监听端口
+     * @return 新的非阻塞通道
+     */
+    DatagramChannel rebind(int port) throws IOException {
+        DatagramChannel old = channels.remove(port);
+        try {
+            return bind(port);
+        } catch (IOException e) {
+            if (old != null) {
+                channels.put(port, old);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 解绑端口，可在任意线程调用
+     *
+     * @param port 监听端口
+     */
+    void unbind(int port) {
+        DatagramChannel channel = channels.remove(port);
+        if (channel == null) {
+            return;
+        }
+        // 关闭通道会自动取消SelectionKey
+        closeQuietly(channel);
+        selector.wakeup();
+    }
+
+    /**
+     * 注册已绑定的通道，可在任意线程调用，关闭事件循环时一并关闭
+     *
+     * @param channel 已绑定的通道，会被设置为非阻塞
+     */
+    void register(final DatagramChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        registered.add(channel);
+        pendingTasks.add(() -> {
+            try {
+                channel.register(selector, SelectionKey.OP_READ);
+            } catch (IOException e) {
+                registered.remove(channel);
+                closeQuietly(channel);
+            }
+        });
+        selector.wakeup();
+    }
+
+    /**
+     * 注销并关闭通过{@link #register}注册的通道
+     */
+    void unregister(DatagramChannel channel) {
+        if (registered.remove(channel)) {
+            closeQuietly(channel);
+            selector.wakeup();
+        }
+    }
+
+    DatagramChannel getChannel(int port) {
+        return channels.get(port);
+    }
+
+    /**
+     * @return 已绑定的端口
+     */
+    List<Integer> getPorts() {
+        return new ArrayList<>(channels.keySet());
+    }
+
+    boolean isRunning() {
+        return isRunning;
+    }
+
+    @Override
+    public void run() {
+        while (isRunning) {
+            try {
+                runPendingTasks();
+                if (selector.select() == 0) {
+                    continue;
+                }
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (key.isValid() && key.isReadable()) {
+                        drain((DatagramChannel) key.channel());
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (IOException e) {
+                // Selector自身异常，无法恢复
+                break;
+            }
+        }
+        closeChannels();
+    }
+
+    private void drain(DatagramChannel channel) {
+        PacketBuffer buffer = bufferPool.acquire();
+        try {
+            for (int i = 0; i < MAX_READS_PER_ROUND; i++) {
+                SocketAddress source;
+                try {
+                    source = channel.receive(buffer.buffer());
+                } catch (IOException e) {
+                    // 单个通道异常（例如ICMP端口不可达）不影响其他通道
+                    return;
+                }
+                if (source == null) {
+                    // 已读空
+                    return;
+                }
+                buffer.buffer().flip();
+                buffer.receiveNanos = System.nanoTime();
+                PacketBuffer received = buffer;
+                buffer = null;
+                try {
+                    handler.onPacket(received, source);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                buffer = bufferPool.acquire();
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * 停止事件循环并关闭所有通道
+     */
+    void close() {
+        isRunning = false;
+        selector.wakeup();
+        closeChannels();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void closeChannels() {
+        for (DatagramChannel channel : channels.values()) {
+            closeQuietly(channel);
+        }
+        channels.clear();
+        for (DatagramChannel channel : registered) {
+            closeQuietly(channel);
+        }
+        registered.clear();
+    }
+
+    private static void closeQuietly(DatagramChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
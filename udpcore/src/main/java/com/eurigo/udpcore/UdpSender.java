@@ -0,0 +1,367 @@
+package com.eurigo.udpcore;
+
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author Eurigo
+ * desc   : 单线程发送器，多个调用线程写入有界环形队列，发送线程批量取出后按入队顺序发送，
+ * 队列满时按{@link OverflowPolicy}处理，内存占用可预期。
+ * 每个{@link SendPriority}一个队列，同一优先级内保持入队顺序，
+ * 默认严格按优先级取出，设置权重后按权重轮询
+ */
+final class UdpSender implements Runnable {
+
+    /**
+     * 发送线程每批最多取出的消息数量
+     */
+    private static final int BATCH_SIZE = 32;
+    /**
+     * 严格优先级下有更高优先级队列时每批最多取出的消息数量，减少紧急消息的等待
+     */
+    private static final int LOWER_LANE_BATCH_SIZE = 8;
+    private static final SendPriority[] PRIORITIES = SendPriority.values();
+    /**
+     * 队列为空时发送线程的最长休眠时间，正常情况下由生产者唤醒
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    /**
+     * {@link OverflowPolicy#BLOCK}下生产者每次等待的时间
+     */
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    /**
+     * 停止时等待发送线程写完当前批次的最长时间
+     */
+    private static final long STOP_TIMEOUT_MILLIS = 1000;
+
+    interface Transport {
+        /**
+         * 在发送线程中回调，将数据写入Socket，异常需自行处理
+         *
+         * @param task 待发送的消息
+         */
+        void send(SendTask task);
+
+        /**
+         * 每批发送完成后及空闲等待前在发送线程中回调，发出到期的延迟数据
+         *
+         * @param now 当前时间
+         * @return 距离下一次需要回调的纳秒数，没有延迟数据时返回Long.MAX_VALUE
+         */
+        long flush(long now);
+
+        /**
+         * 发送线程退出前回调，丢弃尚未发出的延迟数据
+         *
+         * @return 丢弃的消息数量
+         */
+        int dropPending();
+    }
+
+    static final class SendTask {
+        final byte[] data;
+        final String host;
+        final int port;
+        final SendPriority priority;
+        /**
+         * 异步发送的完成回调，普通发送为null
+         */
+        final OnSendCompleteListener callback;
+        final long enqueueNanos;
+
+        SendTask(byte[] data, String host, int port, SendPriority priority, OnSendCompleteListener callback) {
+            this.data = data;
+            this.host = host;
+            this.port = port;
+            this.priority = priority;
+            this.callback = callback;
+            this.enqueueNanos = System.nanoTime();
+        }
+
+        void complete(SendResult result) {
+            complete(callback, result);
+        }
+
+        static void complete(OnSendCompleteListener callback, SendResult result) {
+            if (callback == null) {
+                return;
+            }
+            try {
+                callback.onComplete(result);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private final SendRingBuffer<SendTask>[] lanes;
+    /**
+     * 各优先级每批取出的消息数量，为null时严格按优先级取出
+     */
+    private volatile int[] weights;
+    private final OverflowPolicy overflowPolicy;
+    private final Transport transport;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile boolean isRunning = false;
+    private volatile boolean isParked = false;
+    private volatile Thread thread;
+
+    /**
+     * @param capacity 每个优先级队列的容量
+     */
+    @SuppressWarnings("unchecked")
+    UdpSender(int capacity, OverflowPolicy overflowPolicy, Transport transport) {
+        this.lanes = (SendRingBuffer<SendTask>[]) new SendRingBuffer<?>[PRIORITIES.length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new SendRingBuffer<>(capacity);
+        }
+        this.overflowPolicy = overflowPolicy;
+        this.transport = transport;
+    }
+
+    void start(ThreadFactory threadFactory) {
+        if (isRunning) {
+            return;
+        }
+        isRunning = true;
+        Thread t = threadFactory.newThread(this);
+        thread = t;
+        t.start();
+    }
+
+    /**
+     * 停止发送线程并等待其退出，正在发送的批次写完后退出，队列中未发送的消息被丢弃。
+     * 调用方需在关闭Socket之前调用
+     */
+    void stop() {
+        isRunning = false;
+        Thread t = thread;
+        thread = null;
+        if (t != null) {
+            LockSupport.unpark(t);
+            // 完成回调中停止时不能等待自身
+            if (t != Thread.currentThread()) {
+                try {
+                    t.join(STOP_TIMEOUT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        dropQueued();
+    }
+
+    private void dropQueued() {
+        for (SendRingBuffer<SendTask> queue : lanes) {
+            SendTask task;
+            while ((task = queue.poll()) != null) {
+                drop(task);
+            }
+        }
+    }
+
+    private void drop(SendTask task) {
+        droppedCount.incrementAndGet();
+        task.complete(SendResult.DROPPED);
+    }
+
+    /**
+     * 设置各优先级每轮取出的消息数量，按{@link SendPriority}的顺序，传入null恢复严格优先级
+     */
+    void setWeights(int[] weights) {
+        this.weights = weights;
+    }
+
+    boolean isRunning() {
+        return isRunning;
+    }
+
+    /**
+     * 消息入队，可在任意线程调用
+     *
+     * @param data     数据
+     * @param host     目标地址
+     * @param port     目标端口
+     * @param priority 优先级
+     * @param callback 完成回调，可以为null，未进入队列时不回调，由调用方处理
+     * @return 入队结果
+     */
+    SendStatus offer(byte[] data, String host, int port, SendPriority priority, OnSendCompleteListener callback) {
+        SendStatus status = enqueue(new SendTask(data, host, port, priority, callback));
+        if (status == SendStatus.QUEUED) {
+            wakeUp();
+        }
+        return status;
+    }
+
+    /**
+     * 批量入队，全部入队后才唤醒发送线程一次
+     *
+     * @param callback 每条消息各回调一次，可以为null，未进入队列的消息立即回调
+     * @return 进入队列的消息数量
+     */
+    int offerAll(List<byte[]> data, String host, int port, SendPriority priority, OnSendCompleteListener callback) {
+        int queued = 0;
+        for (int i = 0, size = data.size(); i < size; i++) {
+            SendStatus status = enqueue(new SendTask(data.get(i), host, port, priority, callback));
+            if (status == SendStatus.QUEUED) {
+                queued++;
+            } else {
+                SendTask.complete(callback, SendResult.of(status));
+            }
+        }
+        if (queued > 0) {
+            wakeUp();
+        }
+        return queued;
+    }
+
+    private SendStatus enqueue(SendTask task) {
+        if (!isRunning) {
+            return SendStatus.REJECTED;
+        }
+        SendRingBuffer<SendTask> queue = lanes[task.priority.ordinal()];
+        if (!queue.offer(task)) {
+            switch (overflowPolicy) {
+                case BLOCK:
+                    if (Thread.currentThread() == thread) {
+                        // 完成回调中再次发送，只有本线程能腾出空位，阻塞会等待自身，按丢弃处理
+                        droppedCount.incrementAndGet();
+                        return SendStatus.DROPPED;
+                    }
+                    while (!queue.offer(task)) {
+                        if (!isRunning) {
+                            return SendStatus.REJECTED;
+                        }
+                        // 批量入队时发送线程可能尚未被唤醒
+                        wakeUp();
+                        LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                    }
+                    break;
+                case DROP_OLDEST:
+                    do {
+                        SendTask oldest = queue.poll();
+                        if (oldest != null) {
+                            drop(oldest);
+                        }
+                    } while (!queue.offer(task));
+                    break;
+                case DROP_NEWEST:
+                    droppedCount.incrementAndGet();
+                    return SendStatus.DROPPED;
+                case FAIL_FAST:
+                default:
+                    return SendStatus.REJECTED;
+            }
+        }
+        if (!isRunning) {
+            // 入队前检查之后被停止，stop()可能已清空过队列，再清空一次保证每条消息都有回调
+            dropQueued();
+        }
+        return SendStatus.QUEUED;
+    }
+
+    private void wakeUp() {
+        if (isParked) {
+            Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        SendTask[] batch = new SendTask[BATCH_SIZE];
+        long wait = Long.MAX_VALUE;
+        while (isRunning) {
+            int count = drain(batch);
+            if (count == 0) {
+                isParked = true;
+                // 设置标记后再检查一次，避免生产者入队后未唤醒
+                if (isEmpty() && isRunning) {
+                    LockSupport.parkNanos(this, Math.min(IDLE_PARK_NANOS, wait));
+                }
+                isParked = false;
+                wait = flush();
+                continue;
+            }
+            for (int i = 0; i < count; i++) {
+                try {
+                    transport.send(batch[i]);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                batch[i] = null;
+            }
+            wait = flush();
+        }
+        try {
+            droppedCount.addAndGet(transport.dropPending());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private int drain(SendTask[] batch) {
+        int[] w = weights;
+        if (w == null) {
+            for (int i = 0; i < lanes.length; i++) {
+                int count = lanes[i].drainTo(batch, 0, i == 0 ? BATCH_SIZE : LOWER_LANE_BATCH_SIZE);
+                if (count > 0) {
+                    return count;
+                }
+            }
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < lanes.length && count < batch.length; i++) {
+            count += lanes[i].drainTo(batch, count, Math.min(w[i], batch.length - count));
+        }
+        return count;
+    }
+
+    private boolean isEmpty() {
+        for (SendRingBuffer<SendTask> queue : lanes) {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long flush() {
+        try {
+            return transport.flush(System.nanoTime());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Long.MAX_VALUE;
+        }
+    }
+
+    int getQueueSize() {
+        int size = 0;
+        for (SendRingBuffer<SendTask> queue : lanes) {
+            size += queue.size();
+        }
+        return size;
+    }
+
+    int getQueueSize(SendPriority priority) {
+        return lanes[priority.ordinal()].size();
+    }
+
+    /**
+     * @return 每个优先级队列的容量
+     */
+    int getQueueCapacity() {
+        return lanes[0].capacity();
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -0,0 +1,55 @@
+package com.eurigo.udpcore;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Eurigo
+ * desc   : UDP线程工厂，线程名带前缀便于排查，线程内未捕获的异常只记录日志
+ */
+final class UdpThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger(1);
+    private final AtomicLong threadNumber = new AtomicLong();
+    private final String tag;
+    private final String namePrefix;
+    private final int priority;
+    private final boolean isDaemon;
+
+    UdpThreadFactory(String prefix) {
+        this(prefix, Thread.NORM_PRIORITY, false);
+    }
+
+    UdpThreadFactory(String prefix, int priority, boolean isDaemon) {
+        tag = prefix;
+        namePrefix = prefix + "-pool-" +
+                POOL_NUMBER.getAndIncrement() +
+                "-thread-";
+        this.priority = priority;
+        this.isDaemon = isDaemon;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, namePrefix + threadNumber.getAndIncrement()) {
+            @Override
+            public void run() {
+                try {
+                    super.run();
+                } catch (Throwable e) {
+                    UdpLog.e(tag, "UDP Thread run threw throwable", e);
+                }
+            }
+        };
+        t.setDaemon(isDaemon);
+        t.setPriority(priority);
+        t.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                UdpLog.e(tag, t.getName() + "Request threw uncaught throwable", e);
+            }
+        });
+        return t;
+    }
+}
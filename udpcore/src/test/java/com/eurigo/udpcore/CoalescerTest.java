@@ -0,0 +1,189 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 小消息合并测试：合并帧格式、发出时机、优先级以及完成回调
+ */
+public class CoalescerTest {
+
+    private static final int MAX_SIZE = 64;
+    private static final long DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final List<byte[]> datagrams = new ArrayList<>();
+    private final List<SendPriority> priorities = new ArrayList<>();
+    private final List<SendResult.Status> results = new ArrayList<>();
+    private boolean isWritable = true;
+    private final UdpMetrics metrics = new UdpMetrics();
+    private final Coalescer coalescer = new Coalescer(MAX_SIZE, DELAY_NANOS, new Coalescer.Output() {
+        @Override
+        public boolean write(DestinationCache.Destination destination, ByteBuffer datagram, SendPriority priority) {
+            if (!isWritable) {
+                return false;
+            }
+            byte[] data = new byte[datagram.remaining()];
+            datagram.get(data);
+            datagrams.add(data);
+            priorities.add(priority);
+            return true;
+        }
+    }, metrics);
+    private final OnSendCompleteListener callback = new OnSendCompleteListener() {
+        @Override
+        public void onComplete(SendResult result) {
+            results.add(result.getStatus());
+        }
+    };
+    private final DestinationCache.Destination destination = new DestinationCache.Destination(
+            "127.0.0.1", 9090, new InetSocketAddress("127.0.0.1", 9090));
+
+    @Test
+    public void mergesUntilBufferIsFull() throws IOException {
+        // 每条消息占长度前缀2字节加10字节，64字节的数据报放得下5条
+        for (int i = 0; i < 6; i++) {
+            coalescer.add(destination, task(i, 10, SendPriority.NORMAL), 0);
+        }
+        assertEquals(1, datagrams.size());
+        List<byte[]> messages = split(datagrams.get(0));
+        assertEquals(5, messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertArrayEquals(message(i, 10), messages.get(i));
+        }
+        assertEquals(5, results.size());
+        assertEquals(1, metrics.snapshot().getCoalescedDatagrams());
+        assertEquals(5, metrics.snapshot().getCoalescedMessages());
+    }
+
+    @Test
+    public void flushesAfterDelay() throws IOException {
+        coalescer.add(destination, task(0, 10, SendPriority.NORMAL), 0);
+        coalescer.add(destination, task(1, 10, SendPriority.NORMAL), 1);
+        long wait = coalescer.flushExpired(DELAY_NANOS - 1);
+        assertEquals(1, wait);
+        assertEquals(0, datagrams.size());
+        assertEquals(Long.MAX_VALUE, coalescer.flushExpired(DELAY_NANOS));
+        assertEquals(1, datagrams.size());
+        assertEquals(2, split(datagrams.get(0)).size());
+    }
+
+    @Test
+    public void sendsSingleMessageWithoutFrame() throws IOException {
+        coalescer.add(destination, task(7, 10, SendPriority.NORMAL), 0);
+        coalescer.flush(destination);
+        // 只有一条消息时与未开启合并时完全相同
+        assertArrayEquals(message(7, 10), datagrams.get(0));
+        assertEquals(0, metrics.snapshot().getCoalescedDatagrams());
+    }
+
+    @Test
+    public void separatesPriorities() throws IOException {
+        coalescer.add(destination, task(0, 10, SendPriority.NORMAL), 0);
+        coalescer.add(destination, task(1, 10, SendPriority.URGENT), 0);
+        coalescer.flushExpired(DELAY_NANOS);
+        assertEquals(2, datagrams.size());
+        assertEquals(SendPriority.NORMAL, priorities.get(0));
+        assertEquals(SendPriority.URGENT, priorities.get(1));
+    }
+
+    @Test
+    public void rejectsOversizedMessages() {
+        assertTrue(coalescer.accepts(MAX_SIZE - 1 - Coalescer.LENGTH_PREFIX));
+        assertFalse(coalescer.accepts(MAX_SIZE - Coalescer.LENGTH_PREFIX));
+    }
+
+    @Test
+    public void completesCallbacks() throws IOException {
+        isWritable = false;
+        coalescer.add(destination, task(0, 10, SendPriority.NORMAL), 0);
+        coalescer.add(destination, task(1, 10, SendPriority.NORMAL), 0);
+        coalescer.flush(destination);
+        assertEquals(2, results.size());
+        assertEquals(SendResult.Status.FAILED, results.get(0));
+        // 停止时缓冲区中的消息回调丢弃
+        results.clear();
+        coalescer.add(destination, task(2, 10, SendPriority.NORMAL), 0);
+        coalescer.add(destination, task(3, 10, SendPriority.NORMAL), 0);
+        assertEquals(2, coalescer.dropAll());
+        assertEquals(2, results.size());
+        assertEquals(SendResult.Status.DROPPED, results.get(1));
+        assertEquals(Long.MAX_VALUE, coalescer.flushExpired(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void deliversCoalescedMessagesInOrder() throws Exception {
+        int count = 200;
+        final List<Integer> received = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(count);
+        UdpEndpoint receiver = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setCoalescing(512, 5)
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        synchronized (received) {
+                            received.add(data.getInt());
+                        }
+                        latch.countDown();
+                    }
+                })
+                .build();
+        UdpEndpoint sender = new UdpEndpoint.Builder()
+                .setHost("127.0.0.1")
+                .setPort(TestPorts.free())
+                .setCoalescing(512, 5)
+                .build();
+        receiver.startUdpSocket();
+        sender.startUdpSocket();
+        try {
+            sender.setUdpPort(receiver.getLocalPort());
+            for (int i = 0; i < count; i++) {
+                sender.sendMessage(ByteBuffer.allocate(16).putInt(i).array());
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            synchronized (received) {
+                for (int i = 0; i < count; i++) {
+                    assertEquals(i, (int) received.get(i));
+                }
+            }
+            assertTrue(sender.getMetrics().getCoalescedDatagrams() > 0);
+        } finally {
+            sender.stopUdpSocket();
+            receiver.stopUdpSocket();
+        }
+    }
+
+    private UdpSender.SendTask task(int id, int length, SendPriority priority) {
+        return new UdpSender.SendTask(message(id, length), "127.0.0.1", 9090, priority, callback);
+    }
+
+    private static byte[] message(int id, int length) {
+        byte[] message = new byte[length];
+        message[0] = (byte) id;
+        return message;
+    }
+
+    private static List<byte[]> split(byte[] datagram) {
+        ByteBuffer data = ByteBuffer.wrap(datagram);
+        assertEquals(Frames.COALESCED, data.get());
+        List<byte[]> messages = new ArrayList<>();
+        while (data.hasRemaining()) {
+            byte[] message = new byte[data.getShort() & 0xFFFF];
+            data.get(message);
+            messages.add(message);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,95 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * 压缩帧测试：往返、不可压缩数据以及恶意帧
+ */
+public class CompressorTest {
+
+    private static final int MAX_LENGTH = 4 * 1024 * 1024;
+
+    @Test
+    public void roundTrips() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append("{\"id\":").append(i).append(",\"name\":\"device\"}");
+        }
+        byte[] data = builder.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] frame = Compressor.compress(data);
+        assertNotNull(frame);
+        assertEquals(Frames.COMPRESSED, frame[0]);
+        assertArrayEquals(data, Compressor.decompress(ByteBuffer.wrap(frame), MAX_LENGTH));
+        // 接收端传入的是只读视图
+        assertArrayEquals(data, Compressor.decompress(ByteBuffer.wrap(frame).asReadOnlyBuffer(), MAX_LENGTH));
+    }
+
+    @Test
+    public void roundTripsAtMaximumRatio() {
+        // 全零数据接近deflate的最大压缩率，不应被压缩率校验拒绝
+        byte[] data = new byte[MAX_LENGTH];
+        byte[] frame = Compressor.compress(data);
+        assertNotNull(frame);
+        assertArrayEquals(data, Compressor.decompress(ByteBuffer.wrap(frame), MAX_LENGTH));
+    }
+
+    @Test
+    public void skipsIncompressibleData() {
+        byte[] data = new byte[1024];
+        new Random(1).nextBytes(data);
+        assertNull(Compressor.compress(data));
+        assertNull(Compressor.compress(new byte[8]));
+    }
+
+    @Test
+    public void rejectsImplausibleLength() {
+        // 8字节的帧声明4MB原始长度，不应分配输出数组
+        ByteBuffer bomb = ByteBuffer.wrap(new byte[]{Frames.COMPRESSED,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x02, 0x03, 0x00, 0x00});
+        assertRejected(bomb, MAX_LENGTH);
+    }
+
+    @Test
+    public void rejectsLengthBeyondLimit() {
+        byte[] frame = Compressor.compress(new byte[64 * 1024]);
+        assertNotNull(frame);
+        assertRejected(ByteBuffer.wrap(frame), 1024);
+    }
+
+    @Test
+    public void rejectsCorruptData() {
+        byte[] data = new byte[4096];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 7);
+        }
+        byte[] frame = Compressor.compress(data);
+        assertNotNull(frame);
+        // 截断
+        assertRejected(ByteBuffer.wrap(frame, 0, frame.length - 4), MAX_LENGTH);
+        // 声明的长度与实际不符
+        byte[] mismatch = frame.clone();
+        mismatch[1]++;
+        assertRejected(ByteBuffer.wrap(mismatch), MAX_LENGTH);
+        // 缺少长度
+        assertRejected(ByteBuffer.wrap(new byte[]{Frames.COMPRESSED, (byte) 0x80}), MAX_LENGTH);
+    }
+
+    private static void assertRejected(ByteBuffer frame, int maxLength) {
+        try {
+            Compressor.decompress(frame, maxLength);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // 丢弃该数据包
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 重复消息过滤测试：时间窗口、每个发送方的ID数量、发送方淘汰以及端点上的冗余发送
+ */
+public class DuplicateFilterTest {
+
+    private static final InetSocketAddress A = new InetSocketAddress("127.0.0.1", 9090);
+    private static final InetSocketAddress B = new InetSocketAddress("127.0.0.1", 9091);
+    private static final InetSocketAddress C = new InetSocketAddress("127.0.0.1", 9092);
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(5);
+
+    @Test
+    public void suppressesRepeatsWithinWindow() {
+        DuplicateFilter filter = new DuplicateFilter(16, 8, WINDOW);
+        assertFalse(filter.isDuplicate(A, 1, 0));
+        assertTrue(filter.isDuplicate(A, 1, WINDOW));
+        // 超过时间窗口视为新消息
+        assertFalse(filter.isDuplicate(A, 1, 2 * WINDOW + 1));
+        // 不同发送方的ID互不影响
+        assertFalse(filter.isDuplicate(B, 1, 0));
+    }
+
+    @Test
+    public void remembersOnlyRecentIds() {
+        DuplicateFilter filter = new DuplicateFilter(16, 4, WINDOW);
+        for (long id = 0; id < 4; id++) {
+            assertFalse(filter.isDuplicate(A, id, 0));
+        }
+        assertTrue(filter.isDuplicate(A, 0, 0));
+        // 第5个ID覆盖最早的ID
+        assertFalse(filter.isDuplicate(A, 4, 0));
+        assertFalse(filter.isDuplicate(A, 0, 0));
+        assertTrue(filter.isDuplicate(A, 4, 0));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedSource() {
+        DuplicateFilter filter = new DuplicateFilter(2, 4, WINDOW);
+        assertFalse(filter.isDuplicate(A, 1, 0));
+        assertFalse(filter.isDuplicate(B, 1, 0));
+        assertTrue(filter.isDuplicate(A, 1, 0));
+        // 第3个发送方淘汰最久未使用的B
+        assertFalse(filter.isDuplicate(C, 1, 0));
+        assertFalse(filter.isDuplicate(B, 1, 0));
+    }
+
+    @Test
+    public void deliversRedundantCopiesOnce() throws Exception {
+        final List<String> received = new ArrayList<>();
+        UdpEndpoint receiver = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        byte[] message = new byte[data.remaining()];
+                        data.get(message);
+                        synchronized (received) {
+                            received.add(new String(message));
+                        }
+                    }
+                })
+                .build();
+        receiver.setDuplicateFilterEnabled(true);
+        UdpEndpoint sender = new UdpEndpoint.Builder()
+                .setHost("127.0.0.1")
+                .setPort(TestPorts.free())
+                .build();
+        receiver.startUdpSocket();
+        sender.startUdpSocket();
+        try {
+            sender.setUdpPort(receiver.getLocalPort());
+            sender.sendRedundant("once", 3, 0);
+            sender.sendRedundant("spaced", 3, 20);
+            sender.setMessageIdEnabled(true);
+            sender.sendMessage("tagged");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (receiver.getMetrics().getDuplicatesSuppressed() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            assertEquals(4, receiver.getMetrics().getDuplicatesSuppressed());
+            synchronized (received) {
+                assertEquals(3, received.size());
+                assertTrue(received.contains("once"));
+                assertTrue(received.contains("spaced"));
+                // 接收端去掉消息ID后回调
+                assertTrue(received.contains("tagged"));
+            }
+        } finally {
+            sender.stopUdpSocket();
+            receiver.stopUdpSocket();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Json编解码测试：类型保留、转义、数值边界以及非法输入
+ */
+public class JsonTest {
+
+    @Test
+    public void roundTripsTypes() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("k", "v");
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("int", 42);
+        map.put("negative", -7L);
+        map.put("min", Long.MIN_VALUE);
+        map.put("max", Long.MAX_VALUE);
+        map.put("double", 3.5);
+        map.put("nan", Double.NaN);
+        map.put("ok", true);
+        map.put("nil", null);
+        map.put("list", Arrays.asList(1, "two", false));
+        map.put("array", new int[]{4, 5});
+        map.put("nested", nested);
+        Map<String, Object> back = JsonReader.parseObject(ByteBuffer.wrap(JsonWriter.encode(map)));
+        assertEquals(42L, back.get("int"));
+        assertEquals(-7L, back.get("negative"));
+        assertEquals(Long.MIN_VALUE, back.get("min"));
+        assertEquals(Long.MAX_VALUE, back.get("max"));
+        assertEquals(3.5, back.get("double"));
+        // Json不支持NaN
+        assertTrue(back.containsKey("nan"));
+        assertNull(back.get("nan"));
+        assertEquals(Boolean.TRUE, back.get("ok"));
+        assertTrue(back.containsKey("nil"));
+        assertEquals(Arrays.<Object>asList(1L, "two", false), back.get("list"));
+        assertEquals(Arrays.<Object>asList(4L, 5L), back.get("array"));
+        assertEquals(nested, back.get("nested"));
+        // 保持写入顺序
+        assertEquals(Arrays.asList(map.keySet().toArray()), Arrays.asList(back.keySet().toArray()));
+    }
+
+    @Test
+    public void escapesStrings() {
+        String text = "quote\" backslash\\ newline\n tab\t control\u0001 中文 emoji\uD83D\uDE00";
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put(text, text);
+        byte[] json = JsonWriter.encode(map);
+        String encoded = new String(json, StandardCharsets.UTF_8);
+        assertTrue(encoded.contains("\\\"") && encoded.contains("\\n") && encoded.contains("\\u0001"));
+        assertEquals(map, JsonReader.parseObject(ByteBuffer.wrap(json)));
+        // 接收端传入的是只读视图
+        assertEquals(map, JsonReader.parseObject(ByteBuffer.wrap(json).asReadOnlyBuffer()));
+    }
+
+    @Test
+    public void parsesUnicodeEscapes() {
+        Map<String, Object> map = parse("{\"s\":\"\\u4e2d\\ud83d\\ude00\\/\"}");
+        assertEquals("中\uD83D\uDE00/", map.get("s"));
+    }
+
+    @Test
+    public void parsesNumbers() {
+        Map<String, Object> map = parse(" {\"a\" : 1e3, \"b\":-0.25, \"c\":99999999999999999999, \"d\":[ ]} ");
+        assertEquals(1000.0, map.get("a"));
+        assertEquals(-0.25, map.get("b"));
+        // 超出long的整数按double解析
+        assertEquals(1e20, map.get("c"));
+        assertEquals(0, ((List<?>) map.get("d")).size());
+    }
+
+    @Test
+    public void rejectsMalformedJson() {
+        String[] inputs = {"", "hello", "[1]", "{\"a\":}", "{\"a\":1,}", "{\"a\" 1}", "{\"a\":1} x",
+                "{\"a\":\"unterminated}", "{\"a\":tru}", "{\"a\":-}", "{\"a\":\"\\x\"}", "{\"a\":\"\\u12\"}"};
+        for (String input : inputs) {
+            try {
+                parse(input);
+                fail("expected IllegalArgumentException for " + input);
+            } catch (IllegalArgumentException expected) {
+                // 非法输入
+            }
+        }
+    }
+
+    @Test
+    public void rejectsInvalidUtf8() {
+        byte[] json = {'{', '"', 'a', '"', ':', '"', (byte) 0xC3, '"', '}'};
+        try {
+            JsonReader.parseObject(ByteBuffer.wrap(json));
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // 截断的多字节字符
+        }
+    }
+
+    @Test
+    public void limitsNestingDepth() {
+        StringBuilder deep = new StringBuilder("{\"a\":");
+        for (int i = 0; i < 100; i++) {
+            deep.append('[');
+        }
+        try {
+            parse(deep.toString());
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // 嵌套过深，不会栈溢出
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        Map<String, Object> current = map;
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> child = new LinkedHashMap<>();
+            current.put("a", child);
+            current = child;
+        }
+        try {
+            JsonWriter.encode(map);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // 写入端同样限制嵌套深度
+        }
+    }
+
+    private static Map<String, Object> parse(String json) {
+        return JsonReader.parseObject(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
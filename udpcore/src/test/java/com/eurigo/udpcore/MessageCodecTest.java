@@ -0,0 +1,246 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 二进制编解码测试：字段类型、嵌套消息、未知字段以及恶意帧
+ */
+public class MessageCodecTest {
+
+    private static final InetSocketAddress SOURCE = new InetSocketAddress("127.0.0.1", 9090);
+
+    static final class Point {
+        long x;
+        long y;
+    }
+
+    static final class Sample {
+        long id;
+        long delta;
+        boolean isOk;
+        float ratio;
+        double value;
+        String name;
+        byte[] raw;
+        Point point;
+    }
+
+    private static final UdpCodec<Point> POINT_CODEC = new UdpCodec<Point>() {
+        @Override
+        public void encode(Point message, BinaryWriter writer) {
+            writer.writeSInt(1, message.x).writeSInt(2, message.y);
+        }
+
+        @Override
+        public Point decode(BinaryReader reader) {
+            Point point = new Point();
+            int field;
+            while ((field = reader.nextField()) != 0) {
+                if (field == 1) {
+                    point.x = reader.readSInt();
+                } else if (field == 2) {
+                    point.y = reader.readSInt();
+                } else {
+                    reader.skipField();
+                }
+            }
+            return point;
+        }
+    };
+
+    private static final UdpCodec<Sample> SAMPLE_CODEC = new UdpCodec<Sample>() {
+        @Override
+        public void encode(Sample message, BinaryWriter writer) {
+            writer.writeInt(1, message.id)
+                    .writeSInt(2, message.delta)
+                    .writeBool(3, message.isOk)
+                    .writeFloat(4, message.ratio)
+                    .writeDouble(5, message.value)
+                    .writeString(6, message.name)
+                    .writeBytes(7, message.raw);
+            if (message.point != null) {
+                writer.writeMessage(8, message.point, POINT_CODEC);
+            }
+        }
+
+        @Override
+        public Sample decode(BinaryReader reader) {
+            Sample sample = new Sample();
+            int field;
+            while ((field = reader.nextField()) != 0) {
+                switch (field) {
+                    case 1:
+                        sample.id = reader.readInt();
+                        break;
+                    case 2:
+                        sample.delta = reader.readSInt();
+                        break;
+                    case 3:
+                        sample.isOk = reader.readBool();
+                        break;
+                    case 4:
+                        sample.ratio = reader.readFloat();
+                        break;
+                    case 5:
+                        sample.value = reader.readDouble();
+                        break;
+                    case 6:
+                        sample.name = reader.readString();
+                        break;
+                    case 7:
+                        sample.raw = reader.readBytes();
+                        break;
+                    case 8:
+                        sample.point = reader.readMessage(POINT_CODEC);
+                        break;
+                    default:
+                        reader.skipField();
+                        break;
+                }
+            }
+            return sample;
+        }
+    };
+
+    private final List<Object> received = new ArrayList<>();
+
+    @Test
+    public void roundTripsAllFieldTypes() {
+        MessageRegistry registry = registry();
+        Sample sample = new Sample();
+        sample.id = Long.MAX_VALUE;
+        sample.delta = -3;
+        sample.isOk = true;
+        sample.ratio = 0.5f;
+        sample.value = -1.25;
+        // 超过127字节，长度前缀需要2字节
+        char[] name = new char[200];
+        Arrays.fill(name, '中');
+        sample.name = new String(name);
+        sample.raw = new byte[]{1, 2, 3};
+        sample.point = new Point();
+        sample.point.x = -100;
+        sample.point.y = 1 << 20;
+        byte[] frame = registry.encode(sample);
+        assertEquals(Frames.CODEC, frame[0]);
+        assertEquals(1, frame[1]);
+
+        // 接收端传入的是只读视图
+        registry.onReceived(ByteBuffer.wrap(frame).asReadOnlyBuffer(), SOURCE);
+        assertEquals(1, received.size());
+        Sample back = (Sample) received.get(0);
+        assertEquals(sample.id, back.id);
+        assertEquals(sample.delta, back.delta);
+        assertTrue(back.isOk);
+        assertEquals(sample.ratio, back.ratio, 0);
+        assertEquals(sample.value, back.value, 0);
+        assertEquals(sample.name, back.name);
+        assertArrayEquals(sample.raw, back.raw);
+        assertEquals(sample.point.x, back.point.x);
+        assertEquals(sample.point.y, back.point.y);
+    }
+
+    @Test
+    public void usesProtobufWireFormat() {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeInt(1, 150).writeSInt(2, -1).writeString(3, "testing");
+        assertArrayEquals(new byte[]{0x08, (byte) 0x96, 0x01, 0x10, 0x01,
+                        0x1A, 0x07, 't', 'e', 's', 't', 'i', 'n', 'g'},
+                writer.toByteArray());
+    }
+
+    @Test
+    public void skipsUnknownFields() {
+        MessageRegistry registry = registry();
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeRaw(Frames.CODEC);
+        writer.writeVarint(1);
+        // 新版本增加的字段，旧版本解码时跳过
+        writer.writeInt(1, 7)
+                .writeInt(20, 1)
+                .writeDouble(21, 1)
+                .writeFloat(22, 1)
+                .writeString(23, "new")
+                .writeSInt(2, 9);
+        registry.onReceived(ByteBuffer.wrap(writer.toByteArray()), SOURCE);
+        Sample back = (Sample) received.get(0);
+        assertEquals(7, back.id);
+        assertEquals(9, back.delta);
+        assertNull(back.name);
+    }
+
+    @Test
+    public void dropsMalformedFrames() {
+        MessageRegistry registry = registry();
+        Sample sample = new Sample();
+        sample.name = "name";
+        byte[] frame = registry.encode(sample);
+        byte[][] malformed = {
+                // 截断
+                Arrays.copyOf(frame, frame.length - 2),
+                // 未注册的类型
+                {Frames.CODEC, 9},
+                // 类型ID不完整
+                {Frames.CODEC, (byte) 0x80},
+                // 字段号为0
+                {Frames.CODEC, 1, 0x00},
+                // 长度超出数据
+                {Frames.CODEC, 1, 0x32, 0x7F},
+        };
+        for (byte[] data : malformed) {
+            registry.onReceived(ByteBuffer.wrap(data), SOURCE);
+        }
+        assertEquals(0, received.size());
+    }
+
+    @Test
+    public void rejectsConflictingRegistration() {
+        MessageRegistry registry = registry();
+        // 同一类型重复注册保留监听
+        registry.register(1, Sample.class, SAMPLE_CODEC);
+        registry.onReceived(ByteBuffer.wrap(registry.encode(new Sample())), SOURCE);
+        assertEquals(1, received.size());
+        try {
+            registry.register(1, Point.class, POINT_CODEC);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // 类型ID已被占用
+        }
+        try {
+            registry.register(MessageRegistry.MAX_TYPE_ID + 1, Point.class, POINT_CODEC);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // 超出类型ID范围
+        }
+        try {
+            registry.encode(new Point());
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // 未注册的类型
+        }
+    }
+
+    private MessageRegistry registry() {
+        MessageRegistry registry = new MessageRegistry();
+        registry.register(1, Sample.class, SAMPLE_CODEC);
+        registry.setListener(Sample.class, new OnUdpObjectReceiveListener<Sample>() {
+            @Override
+            public void onReceived(Sample object, InetSocketAddress source) {
+                received.add(object);
+            }
+        });
+        return registry;
+    }
+}
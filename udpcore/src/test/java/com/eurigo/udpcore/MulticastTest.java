@@ -0,0 +1,154 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * 组播测试：加入组后收发，重新绑定后重新加入，环回设置、发送端口和退出组。
+ * 本机没有支持组播的网卡时跳过
+ */
+public class MulticastTest {
+
+    private static final String GROUP = "239.255.42.99";
+
+    @Test
+    public void keepsReceivingAfterRebind() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        UdpEndpoint receiver = receiver(received);
+        UdpEndpoint sender = new UdpEndpoint.Builder().setHost(GROUP).setPort(TestPorts.free()).build();
+        try {
+            int port = TestPorts.free();
+            MulticastGroup group = receiver.joinGroup(GROUP, port);
+            assumeNotNull(group);
+            NetworkInterface joinedOn = group.getNetworkInterface();
+            sender.startUdpSocket();
+            sender.setUdpPort(port);
+            sender.sendMessage("before");
+            assertEquals("before", received.poll(5, TimeUnit.SECONDS));
+
+            // 网络切换后重新绑定，在重新选择的网卡上重新加入
+            assertTrue(receiver.rebindUdpSocket());
+            assertTrue(sender.rebindUdpSocket());
+            assertTrue(group.isJoined());
+            assertEquals(joinedOn, group.getNetworkInterface());
+            sender.sendMessage("after");
+            assertEquals("after", received.poll(5, TimeUnit.SECONDS));
+
+            // 重复加入返回已有的组
+            assertTrue(receiver.joinGroup(GROUP, port) == group);
+        } finally {
+            sender.stopUdpSocket();
+            receiver.stopUdpSocket();
+        }
+    }
+
+    @Test
+    public void appliesLoopbackChangeToOpenChannel() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        UdpEndpoint endpoint = receiver(received);
+        try {
+            MulticastGroup group = endpoint.joinGroup(GROUP, TestPorts.free());
+            assumeNotNull(group);
+            group.send("first");
+            assertEquals("first", received.poll(5, TimeUnit.SECONDS));
+            // 发送通道已打开，关闭环回后本机不再收到
+            endpoint.setMulticastLoopbackEnabled(false);
+            group.send("muted");
+            assertNull(received.poll(300, TimeUnit.MILLISECONDS));
+            endpoint.setMulticastLoopbackEnabled(true);
+            group.send("again");
+            assertEquals("again", received.poll(5, TimeUnit.SECONDS));
+        } finally {
+            endpoint.stopUdpSocket();
+        }
+    }
+
+    @Test
+    public void sendsFromListeningPortInEveryMode() throws Exception {
+        for (ReceiveMode mode : ReceiveMode.values()) {
+            sendsFromListeningPort(mode);
+        }
+    }
+
+    private void sendsFromListeningPort(ReceiveMode mode) throws Exception {
+        final BlockingQueue<InetSocketAddress> sources = new LinkedBlockingQueue<>();
+        UdpEndpoint receiver = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        sources.add(source);
+                    }
+                })
+                .build();
+        receiver.startUdpSocket();
+        UdpEndpoint sender = new UdpEndpoint.Builder()
+                .setHost(GROUP)
+                .setPort(TestPorts.free())
+                .setReceiveMode(mode)
+                .build();
+        try {
+            int port = TestPorts.free();
+            assumeNotNull(receiver.joinGroup(GROUP, port));
+            sender.startUdpSocket();
+            sender.setUdpPort(port);
+            sender.sendMessage("hello");
+            InetSocketAddress source = sources.poll(5, TimeUnit.SECONDS);
+            // 按来源地址回复时发送端的监听端口能收到
+            assertEquals(mode.name(), sender.getLocalPort(), source.getPort());
+        } finally {
+            sender.stopUdpSocket();
+            receiver.stopUdpSocket();
+        }
+    }
+
+    @Test
+    public void stopsReceivingAfterLeave() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        UdpEndpoint endpoint = receiver(received);
+        try {
+            MulticastGroup group = endpoint.joinGroup(GROUP, TestPorts.free());
+            assumeNotNull(group);
+            group.send("joined");
+            assertEquals("joined", received.poll(5, TimeUnit.SECONDS));
+            group.leave();
+            assertFalse(group.isJoined());
+            group.send("left");
+            assertNull(received.poll(300, TimeUnit.MILLISECONDS));
+        } finally {
+            endpoint.stopUdpSocket();
+        }
+        // 关闭UDP时退出所有组
+        MulticastGroup group = endpoint.joinGroup(GROUP, TestPorts.free());
+        endpoint.stopUdpSocket();
+        assertTrue(group == null || !group.isJoined());
+    }
+
+    private static UdpEndpoint receiver(final BlockingQueue<String> received) throws Exception {
+        UdpEndpoint endpoint = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        byte[] bytes = new byte[data.remaining()];
+                        data.get(bytes);
+                        received.add(new String(bytes));
+                    }
+                })
+                .build();
+        endpoint.startUdpSocket();
+        return endpoint;
+    }
+}
@@ -0,0 +1,88 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.NetworkInterface;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 网络状态测试：网卡按名称排序，没有可用网卡时间隔重试，有可用网卡时缓存到网络变化
+ */
+public class NetworkStateTest {
+
+    @Test
+    public void ranksWlanAheadOfEth() {
+        String[] ordered = {"wlan0", "ap0", "swlan0", "softap0", "eth0", "enp3s0"};
+        for (int i = 1; i < ordered.length; i++) {
+            assertTrue(ordered[i - 1] + " before " + ordered[i],
+                    NetworkState.rank(ordered[i - 1], false) < NetworkState.rank(ordered[i], false));
+        }
+        // 点对点网卡（VPN、蜂窝）排在所有普通网卡之后，即使名称优先
+        assertTrue(NetworkState.rank("enp3s0", false) < NetworkState.rank("wlan0", true));
+        assertTrue(NetworkState.rank("wlan0", true) < NetworkState.rank("tun0", true));
+    }
+
+    @Test
+    public void retriesEmptyResultAfterInterval() {
+        final AtomicInteger resolved = new AtomicInteger();
+        final long[] resolvedNanos = {System.nanoTime()};
+        NetworkState state = new NetworkState(new NetworkState.Resolver() {
+            @Override
+            public NetworkState.Snapshot resolve() {
+                resolved.incrementAndGet();
+                return new NetworkState.Snapshot(null, null, UdpEndpoint.DEFAULT_SOCKET_HOST, null,
+                        resolvedNanos[0]);
+            }
+        });
+        NetworkState.Snapshot empty = state.get();
+        assertEquals(UdpEndpoint.DEFAULT_SOCKET_HOST, empty.broadcastHost);
+        // 有效期内直接使用缓存，断网期间发送不会每次都遍历网卡
+        assertTrue(state.get() == empty);
+        assertEquals(1, resolved.get());
+        // 超过有效期后重新解析
+        resolvedNanos[0] = System.nanoTime() - TimeUnit.SECONDS.toNanos(2);
+        state.invalidate();
+        state.get();
+        state.get();
+        assertEquals(3, resolved.get());
+    }
+
+    @Test
+    public void cachesResolvedInterfaceUntilInvalidated() throws Exception {
+        List<NetworkInterface> nis = Collections.list(NetworkInterface.getNetworkInterfaces());
+        assumeTrue(!nis.isEmpty());
+        final NetworkInterface ni = nis.get(0);
+        final AtomicInteger resolved = new AtomicInteger();
+        NetworkState state = new NetworkState(new NetworkState.Resolver() {
+            @Override
+            public NetworkState.Snapshot resolve() {
+                resolved.incrementAndGet();
+                // 解析时间早于有效期，有可用网卡时不影响缓存
+                return new NetworkState.Snapshot(ni, null, "192.168.1.255", ni,
+                        System.nanoTime() - TimeUnit.SECONDS.toNanos(2));
+            }
+        });
+        assertTrue(state.get().networkInterface == ni);
+        state.get();
+        assertEquals(1, resolved.get());
+        state.invalidate();
+        assertEquals("192.168.1.255", state.get().broadcastHost);
+        assertEquals(2, resolved.get());
+    }
+
+    @Test
+    public void resolvesSystemInterfaces() throws Exception {
+        NetworkState.Snapshot snapshot = new NetworkState().get();
+        assertNotNull(snapshot.broadcastHost);
+        // 不会选中环回网卡
+        assertTrue(snapshot.networkInterface == null || !snapshot.networkInterface.isLoopback());
+    }
+}
@@ -0,0 +1,226 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 对端发现测试：通告解析、服务变化、下线、TTL过期以及本机回环上的双向发现
+ */
+public class PeerDiscoveryTest {
+
+    private static final InetSocketAddress SOURCE = new InetSocketAddress("127.0.0.1", 40000);
+
+    private final List<String> events = new ArrayList<>();
+    private final OnPeerChangeListener recorder = new OnPeerChangeListener() {
+        @Override
+        public void onPeerAdded(Peer peer) {
+            events.add("added " + peer.getServices());
+        }
+
+        @Override
+        public void onPeerChanged(Peer peer) {
+            events.add("changed " + peer.getServices());
+        }
+
+        @Override
+        public void onPeerRemoved(Peer peer) {
+            events.add("removed");
+        }
+    };
+
+    @Test
+    public void tracksAnnouncedServices() {
+        PeerDiscovery discovery = discovery();
+        discovery.onFrame(announce(1, 9000, 15000, "display", "audio"), SOURCE);
+        assertEquals(1, discovery.getPeers().size());
+        Peer peer = discovery.getPeer("display");
+        assertNotNull(peer);
+        // 地址取发送方IP和通告中的监听端口
+        assertEquals(new InetSocketAddress("127.0.0.1", 9000), peer.getAddress());
+        assertTrue(peer.hasService("audio"));
+        assertNull(discovery.getPeer("ctrl"));
+
+        // 重复的通告不回调
+        discovery.onFrame(announce(1, 9000, 15000, "display", "audio"), SOURCE);
+        discovery.onFrame(announce(1, 9000, 15000, "display"), SOURCE);
+        assertEquals(0, discovery.getPeers("audio").size());
+
+        discovery.onFrame(bye(1), SOURCE);
+        assertEquals(0, discovery.getPeers().size());
+        assertEquals("[added [display, audio], changed [display], removed]", events.toString());
+    }
+
+    @Test
+    public void removesPeerAfterTtl() {
+        PeerDiscovery discovery = discovery();
+        discovery.onFrame(announce(1, 9000, 1000, "display"), SOURCE);
+        discovery.onFrame(announce(2, 9001, 60000, "display"), SOURCE);
+        long now = System.nanoTime();
+        discovery.sweep(now);
+        assertEquals(2, discovery.getPeers("display").size());
+        discovery.sweep(now + TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, discovery.getPeers("display").size());
+        assertEquals(9001, discovery.getPeer("display").getPort());
+    }
+
+    @Test
+    public void clampsAnnouncedTtl() {
+        PeerDiscovery discovery = discovery();
+        // 最大的无符号TTL约49天
+        discovery.onFrame(announce(1, 9000, -1, "display"), SOURCE);
+        long now = System.nanoTime();
+        long maxTtl = TimeUnit.MILLISECONDS.toNanos(
+                PeerDiscovery.DEFAULT_INTERVAL_MILLIS * PeerDiscovery.MAX_TTL_INTERVALS);
+        discovery.sweep(now + maxTtl - TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, discovery.getPeers().size());
+        discovery.sweep(now + maxTtl + TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, discovery.getPeers().size());
+    }
+
+    @Test
+    public void capsPeerTable() {
+        PeerDiscovery discovery = discovery();
+        for (int id = 1; id <= PeerDiscovery.MAX_PEERS + 10; id++) {
+            discovery.onFrame(announce(id, 9000, 15000, "display"), SOURCE);
+        }
+        assertEquals(PeerDiscovery.MAX_PEERS, discovery.getPeers().size());
+        // 已记录的对端照常更新
+        discovery.onFrame(announce(1, 9000, 15000, "audio"), SOURCE);
+        assertEquals(1, discovery.getPeers("audio").size());
+        // 有对端下线后可以加入新对端
+        discovery.onFrame(bye(2), SOURCE);
+        discovery.onFrame(announce(PeerDiscovery.MAX_PEERS + 100, 9000, 15000, "ctrl"), SOURCE);
+        assertNotNull(discovery.getPeer("ctrl"));
+    }
+
+    @Test
+    public void ignoresMalformedFrames() {
+        PeerDiscovery discovery = discovery();
+        ByteBuffer truncated = announce(1, 9000, 15000, "display");
+        truncated.limit(truncated.limit() - 2);
+        discovery.onFrame(truncated, SOURCE);
+        discovery.onFrame(ByteBuffer.wrap(new byte[]{Frames.DISCOVERY, PeerDiscovery.TYPE_ANNOUNCE}), SOURCE);
+        assertEquals(0, discovery.getPeers().size());
+        assertEquals(0, events.size());
+    }
+
+    @Test
+    public void discoversPeersOnLoopback() throws Exception {
+        int portA = TestPorts.free();
+        int portB = TestPorts.free();
+        // 所有对端本应使用同一端口，同一台机器上交叉设置目标端口
+        UdpEndpoint a = new UdpEndpoint.Builder().setPort(portA).build();
+        UdpEndpoint b = new UdpEndpoint.Builder().setPort(portB).build();
+        a.startUdpSocket();
+        b.startUdpSocket();
+        a.setUdpPort(portB);
+        b.setUdpPort(portA);
+        final CountDownLatch added = new CountDownLatch(2);
+        final CountDownLatch removed = new CountDownLatch(1);
+        try {
+            // 回调随启动传入，启动时的回复也会回调
+            PeerDiscovery discoveryA = a.startDiscovery(listener(added, removed), "ctrl");
+            discoveryA.setBroadcastHost("127.0.0.1");
+            // 停止时本端移除所有对端也会回调，只统计A端的移除
+            PeerDiscovery discoveryB = b.startDiscovery(listener(added, new CountDownLatch(1)), "display");
+            discoveryB.setBroadcastHost("127.0.0.1");
+            assertTrue(added.await(5, TimeUnit.SECONDS));
+            assertEquals(portB, discoveryA.getPeer("display").getPort());
+            assertEquals(portA, discoveryB.getPeer("ctrl").getPort());
+            // 停止时广播下线通知
+            b.stopDiscovery();
+            assertTrue(removed.await(5, TimeUnit.SECONDS));
+            assertEquals(0, discoveryA.getPeers().size());
+        } finally {
+            a.stopUdpSocket();
+            b.stopUdpSocket();
+        }
+    }
+
+    @Test
+    public void announcesByeWhenSocketStops() throws Exception {
+        // 发送队列在关闭时被丢弃，多跑几轮确认下线通知每次都能送达
+        for (int round = 0; round < 5; round++) {
+            int portA = TestPorts.free();
+            int portB = TestPorts.free();
+            UdpEndpoint a = new UdpEndpoint.Builder().setPort(portA).build();
+            UdpEndpoint b = new UdpEndpoint.Builder().setPort(portB).build();
+            a.startUdpSocket();
+            b.startUdpSocket();
+            a.setUdpPort(portB);
+            b.setUdpPort(portA);
+            final CountDownLatch added = new CountDownLatch(1);
+            final CountDownLatch removed = new CountDownLatch(1);
+            try {
+                PeerDiscovery discoveryA = a.startDiscovery(listener(added, removed), "ctrl");
+                discoveryA.setBroadcastHost("127.0.0.1");
+                b.startDiscovery("display").setBroadcastHost("127.0.0.1");
+                assertTrue(added.await(5, TimeUnit.SECONDS));
+                // 关闭UDP时同样广播下线通知，对端不必等TTL过期
+                b.stopUdpSocket();
+                assertTrue(removed.await(2, TimeUnit.SECONDS));
+                assertEquals(0, discoveryA.getPeers().size());
+            } finally {
+                a.stopUdpSocket();
+                b.stopUdpSocket();
+            }
+        }
+    }
+
+    private static OnPeerChangeListener listener(final CountDownLatch added, final CountDownLatch removed) {
+        return new OnPeerChangeListener() {
+            @Override
+            public void onPeerAdded(Peer peer) {
+                added.countDown();
+            }
+
+            @Override
+            public void onPeerChanged(Peer peer) {
+            }
+
+            @Override
+            public void onPeerRemoved(Peer peer) {
+                removed.countDown();
+            }
+        };
+    }
+
+    private PeerDiscovery discovery() {
+        // 未打开UDP的端点，只解析通告，不回复
+        PeerDiscovery discovery = new PeerDiscovery(new UdpEndpoint.Builder().build(), 9000);
+        discovery.setListener(recorder);
+        return discovery;
+    }
+
+    private static ByteBuffer announce(long instanceId, int port, int ttlMillis, String... services) {
+        ByteBuffer frame = ByteBuffer.allocate(256);
+        frame.put(Frames.DISCOVERY).put(PeerDiscovery.TYPE_ANNOUNCE).put((byte) 0).putLong(instanceId)
+                .putInt(ttlMillis).putShort((short) port).put((byte) services.length);
+        for (String service : services) {
+            byte[] name = service.getBytes(StandardCharsets.UTF_8);
+            frame.put((byte) name.length).put(name);
+        }
+        frame.flip();
+        return frame;
+    }
+
+    private static ByteBuffer bye(long instanceId) {
+        ByteBuffer frame = ByteBuffer.allocate(PeerDiscovery.HEADER_LENGTH);
+        frame.put(Frames.DISCOVERY).put(PeerDiscovery.TYPE_BYE).put((byte) 0).putLong(instanceId)
+                .putInt(0).putShort((short) 0).put((byte) 0);
+        frame.flip();
+        return frame;
+    }
+}
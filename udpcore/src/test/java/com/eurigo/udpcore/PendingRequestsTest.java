@@ -0,0 +1,237 @@
+package com.eurigo.udpcore;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * 请求表测试：超时、响应来源校验、容量以及端点上的单播、connect通道和组播请求/响应
+ */
+public class PendingRequestsTest {
+
+    private static final InetSocketAddress PEER = new InetSocketAddress("127.0.0.1", 9090);
+    private static final InetSocketAddress OTHER = new InetSocketAddress("127.0.0.1", 9091);
+    private static final String GROUP = "239.255.42.98";
+
+    private final UdpMetrics metrics = new UdpMetrics();
+    private final TimingWheel wheel = new TimingWheel(10, 64, new UdpThreadFactory("PendingRequestsTest"));
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void completesWithTimeoutException() throws InterruptedException {
+        PendingRequests table = new PendingRequests(16, metrics);
+        PendingRequests.Pending pending = table.add(PEER);
+        long start = System.nanoTime();
+        wheel.schedule(pending, TimeUnit.MILLISECONDS.toNanos(50));
+        assertTimedOut(pending.future);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 到期精度为一个刻度
+        assertTrue(elapsedMillis >= 40);
+        assertTrue(elapsedMillis < 1000);
+        assertEquals(1, metrics.snapshot().getRequestTimeouts());
+        // 超时后到达的响应找不到请求
+        assertNull(table.remove(pending.id, PEER));
+    }
+
+    @Test
+    public void responseBeforeDeadlineSkipsTimeout() throws Exception {
+        PendingRequests table = new PendingRequests(16, metrics);
+        PendingRequests.Pending pending = table.add(PEER);
+        wheel.schedule(pending, TimeUnit.MILLISECONDS.toNanos(30));
+        PendingRequests.Pending removed = table.remove(pending.id, PEER);
+        assertTrue(removed == pending);
+        removed.future.complete(new byte[]{1});
+        Thread.sleep(100);
+        assertEquals(1, pending.future.get().length);
+        assertEquals(0, metrics.snapshot().getRequestTimeouts());
+        // 重复的响应
+        assertNull(table.remove(pending.id, PEER));
+    }
+
+    @Test
+    public void checksResponseSource() {
+        PendingRequests table = new PendingRequests(16, metrics);
+        PendingRequests.Pending unicast = table.add(PEER);
+        assertNull(table.remove(unicast.id, OTHER));
+        assertTrue(table.remove(unicast.id, PEER) == unicast);
+        // 广播请求接受任意来源的第一个响应
+        PendingRequests.Pending broadcast = table.add(null);
+        assertTrue(table.remove(broadcast.id, OTHER) == broadcast);
+    }
+
+    @Test
+    public void rejectsWhenFull() {
+        PendingRequests table = new PendingRequests(4, metrics);
+        PendingRequests.Pending[] pendings = new PendingRequests.Pending[4];
+        for (int i = 0; i < pendings.length; i++) {
+            pendings[i] = table.add(PEER);
+            assertNotNull(pendings[i]);
+        }
+        assertNull(table.add(PEER));
+        table.cancelAll();
+        for (PendingRequests.Pending pending : pendings) {
+            assertTrue(pending.future.isCancelled());
+        }
+        assertNotNull(table.add(PEER));
+    }
+
+    @Test
+    public void skipsSlotHeldByLongRequest() {
+        PendingRequests table = new PendingRequests(4, metrics);
+        // 超时较长的请求一直占用一个槽位
+        PendingRequests.Pending longLived = table.add(PEER);
+        for (int i = 0; i < 4 * 3; i++) {
+            PendingRequests.Pending pending = table.add(PEER);
+            assertNotNull(pending);
+            assertTrue(pending.id != longLived.id);
+            assertTrue(table.remove(pending.id, PEER) == pending);
+        }
+        assertTrue(table.remove(longLived.id, PEER) == longLived);
+    }
+
+    @Test
+    public void endpointRequestTimesOutWithoutResponse() throws Exception {
+        UdpEndpoint server = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setRequestListener(new OnUdpRequestListener() {
+                    @Override
+                    public void onRequest(UdpRequest request) {
+                        byte[] data = new byte[request.getData().remaining()];
+                        request.getData().get(data);
+                        if (!"silent".equals(new String(data))) {
+                            request.reply("echo:" + new String(data));
+                        }
+                    }
+                })
+                .build();
+        UdpEndpoint client = new UdpEndpoint.Builder().setPort(TestPorts.free()).build();
+        server.startUdpSocket();
+        client.startUdpSocket();
+        try {
+            int port = server.getLocalPort();
+            assertEquals("echo:hi", new String(client.request("127.0.0.1", port, "hi", 2000)
+                    .get(5, TimeUnit.SECONDS)));
+            long start = System.nanoTime();
+            assertTimedOut(client.request("127.0.0.1", port, "silent", 200));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+            assertEquals(1, client.getMetrics().getRequestTimeouts());
+            // 停止时取消未完成的请求
+            CompletableFuture<byte[]> pending = client.request("127.0.0.1", port, "silent", 10_000);
+            client.stopUdpSocket();
+            assertTrue(pending.isCancelled());
+        } finally {
+            client.stopUdpSocket();
+            server.stopUdpSocket();
+        }
+    }
+
+    @Test
+    public void endpointRequestOverConnectedChannelInEveryMode() throws Exception {
+        for (ReceiveMode mode : ReceiveMode.values()) {
+            requestOverConnectedChannel(mode);
+        }
+    }
+
+    /**
+     * 超过connect阈值后请求改由已connect的通道发出，响应仍需回到客户端
+     */
+    private void requestOverConnectedChannel(ReceiveMode mode) throws Exception {
+        final AtomicInteger sourcePort = new AtomicInteger();
+        UdpEndpoint server = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setRequestListener(new OnUdpRequestListener() {
+                    @Override
+                    public void onRequest(UdpRequest request) {
+                        sourcePort.set(request.getSource().getPort());
+                        request.reply("ok");
+                    }
+                })
+                .build();
+        UdpEndpoint client = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setReceiveMode(mode)
+                .build();
+        client.setConnectedSendEnabled(true);
+        server.startUdpSocket();
+        client.startUdpSocket();
+        try {
+            int port = server.getLocalPort();
+            for (int i = 0; i < 2 * DestinationCache.CONNECT_THRESHOLD; i++) {
+                assertEquals(mode + " #" + i, "ok", new String(client.request("127.0.0.1", port, "hi", 2000)
+                        .get(5, TimeUnit.SECONDS)));
+                assertEquals(client.getLocalPort(), sourcePort.get());
+            }
+        } finally {
+            client.stopUdpSocket();
+            server.stopUdpSocket();
+        }
+    }
+
+    @Test
+    public void endpointRequestToMulticastGroup() throws Exception {
+        UdpEndpoint server = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setRequestListener(new OnUdpRequestListener() {
+                    @Override
+                    public void onRequest(UdpRequest request) {
+                        request.reply("member");
+                    }
+                })
+                .build();
+        UdpEndpoint client = new UdpEndpoint.Builder().setPort(TestPorts.free()).build();
+        server.startUdpSocket();
+        client.startUdpSocket();
+        try {
+            int port = TestPorts.free();
+            assumeNotNull(server.joinGroup(GROUP, port));
+            // 请求从监听端口发出，按来源地址回复的响应能被收到
+            assertEquals("member", new String(client.request(GROUP, port, "who", 2000)
+                    .get(5, TimeUnit.SECONDS)));
+        } finally {
+            client.stopUdpSocket();
+            server.stopUdpSocket();
+        }
+    }
+
+    @Test
+    public void endpointRejectsUnresolvedHost() throws SocketException {
+        UdpEndpoint client = new UdpEndpoint.Builder().setPort(TestPorts.free()).build();
+        try {
+            CompletableFuture<byte[]> future = client.request("invalid.host.invalid", 9090, "hi", 1000);
+            assertTrue(future.isCompletedExceptionally());
+        } finally {
+            client.stopUdpSocket();
+        }
+    }
+
+    private static void assertTimedOut(CompletableFuture<byte[]> future) throws InterruptedException {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected TimeoutException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        } catch (TimeoutException e) {
+            fail("request did not time out");
+        }
+        assertFalse(future.isCancelled());
+    }
+}
@@ -0,0 +1,107 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分片重组测试：乱序、丢失、重复以及内存上限
+ */
+public class ReassemblerTest {
+
+    private static final InetSocketAddress SOURCE = new InetSocketAddress("127.0.0.1", 9090);
+    private static final int PAYLOAD = 100;
+
+    @Test
+    public void reassemblesOutOfOrderFragments() {
+        Reassembler reassembler = new Reassembler(1024 * 1024, PAYLOAD, TimeUnit.SECONDS.toNanos(5));
+        byte[] message = message(950);
+        int count = 10;
+        byte[] result = null;
+        for (int index = count - 1; index >= 0; index--) {
+            byte[] fragment = fragment(message, index);
+            result = reassembler.onFragment(frame(1, index, count, fragment), SOURCE);
+            if (index > 0) {
+                assertNull(result);
+                // 重复的分片被忽略
+                assertNull(reassembler.onFragment(frame(1, index, count, fragment), SOURCE));
+            }
+        }
+        assertArrayEquals(message, result);
+        assertEquals(0, reassembler.getPendingCount());
+        assertEquals(0, reassembler.getPendingBytes());
+    }
+
+    @Test
+    public void dropsMessageWithLostFragmentAfterTimeout() throws InterruptedException {
+        Reassembler reassembler = new Reassembler(1024 * 1024, PAYLOAD, TimeUnit.MILLISECONDS.toNanos(50));
+        byte[] message = message(300);
+        // 第2个分片丢失
+        assertNull(reassembler.onFragment(frame(1, 0, 3, fragment(message, 0)), SOURCE));
+        assertNull(reassembler.onFragment(frame(1, 2, 3, fragment(message, 2)), SOURCE));
+        assertEquals(1, reassembler.getPendingCount());
+        Thread.sleep(100);
+        // 任意分片到达时清理超时的消息
+        byte[] other = message(50);
+        assertArrayEquals(other, reassembler.onFragment(frame(2, 0, 1, other), SOURCE));
+        assertEquals(1, reassembler.getTimeoutCount());
+        assertEquals(0, reassembler.getPendingCount());
+        assertEquals(0, reassembler.getPendingBytes());
+    }
+
+    @Test
+    public void rejectsFragmentCountBeyondLimit() {
+        Reassembler reassembler = new Reassembler(64 * 1024, PAYLOAD, TimeUnit.SECONDS.toNanos(5));
+        assertNull(reassembler.onFragment(frame(1, 0, 0xFFFF, new byte[1]), SOURCE));
+        assertEquals(1, reassembler.getMalformedCount());
+        assertEquals(0, reassembler.getPendingCount());
+        assertEquals(0, reassembler.getPendingBytes());
+    }
+
+    @Test
+    public void evictsUnderFirstFragmentFlood() {
+        long limit = 64 * 1024;
+        Reassembler reassembler = new Reassembler(limit, PAYLOAD, TimeUnit.SECONDS.toNanos(5));
+        // 每条消息声明600个分片，只发送第一个很小的分片，分片数组本身的内存也应被计入
+        int count = 600;
+        for (int id = 0; id < 10_000; id++) {
+            assertNull(reassembler.onFragment(frame(id, 0, count, new byte[1]), SOURCE));
+            assertTrue(reassembler.getPendingBytes() <= limit);
+        }
+        long perMessage = (long) count * Reassembler.PART_REFERENCE_BYTES + 1;
+        assertTrue(reassembler.getPendingCount() <= limit / perMessage);
+        assertTrue(reassembler.getEvictedCount() >= 10_000 - limit / perMessage);
+        // 淘汰后仍可正常重组
+        byte[] message = message(150);
+        assertNull(reassembler.onFragment(frame(-1, 1, 2, fragment(message, 1)), SOURCE));
+        assertArrayEquals(message, reassembler.onFragment(frame(-1, 0, 2, fragment(message, 0)), SOURCE));
+    }
+
+    private static byte[] message(int length) {
+        byte[] message = new byte[length];
+        for (int i = 0; i < length; i++) {
+            message[i] = (byte) i;
+        }
+        return message;
+    }
+
+    private static byte[] fragment(byte[] message, int index) {
+        int from = index * PAYLOAD;
+        return Arrays.copyOfRange(message, from, Math.min(message.length, from + PAYLOAD));
+    }
+
+    private static ByteBuffer frame(int messageId, int index, int count, byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(Frames.FRAGMENT_HEADER_LENGTH + payload.length);
+        frame.put(Frames.FRAGMENT).putInt(messageId).putShort((short) index).putShort((short) count).put(payload);
+        frame.flip();
+        return frame;
+    }
+}
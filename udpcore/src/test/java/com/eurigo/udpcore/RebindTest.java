@@ -0,0 +1,118 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 重新绑定测试：各接收模式下重新绑定后继续收发，发送中的消息都有回调
+ */
+public class RebindTest {
+
+    @Test
+    public void keepsReceivingAfterRebindInEveryMode() throws Exception {
+        for (ReceiveMode mode : ReceiveMode.values()) {
+            keepsReceivingAfterRebind(mode);
+        }
+    }
+
+    @Test
+    public void startsSocketWhenNotStarted() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        UdpEndpoint receiver = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        latch.countDown();
+                    }
+                })
+                .build();
+        UdpEndpoint sender = new UdpEndpoint.Builder()
+                .setHost("127.0.0.1")
+                .setPort(TestPorts.free())
+                .build();
+        try {
+            // 未打开UDP时重新绑定等同于打开
+            assertTrue(receiver.rebindUdpSocket());
+            assertTrue(sender.rebindUdpSocket());
+            sender.setUdpPort(receiver.getLocalPort());
+            sender.sendMessage("start");
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } finally {
+            sender.stopUdpSocket();
+            receiver.stopUdpSocket();
+        }
+    }
+
+    private void keepsReceivingAfterRebind(ReceiveMode mode) throws Exception {
+        final AtomicInteger received = new AtomicInteger();
+        UdpEndpoint receiver = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setReceiveMode(mode)
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        received.incrementAndGet();
+                    }
+                })
+                .build();
+        UdpEndpoint sender = new UdpEndpoint.Builder()
+                .setHost("127.0.0.1")
+                .setPort(TestPorts.free())
+                .setReceiveMode(mode)
+                .build();
+        receiver.startUdpSocket();
+        sender.startUdpSocket();
+        try {
+            int port = receiver.getLocalPort();
+            sender.setUdpPort(port);
+            int count = 2000;
+            final CountDownLatch completed = new CountDownLatch(count);
+            final AtomicInteger sent = new AtomicInteger();
+            OnSendCompleteListener callback = new OnSendCompleteListener() {
+                @Override
+                public void onComplete(SendResult result) {
+                    if (result.isSent()) {
+                        sent.incrementAndGet();
+                    }
+                    completed.countDown();
+                }
+            };
+            for (int i = 0; i < count; i++) {
+                sender.sendMessageAsync(new byte[16], callback);
+                if (i % 500 == 0) {
+                    // 发送过程中两端都重新绑定
+                    assertTrue(mode + " sender rebind", sender.rebindUdpSocket());
+                    assertTrue(mode + " receiver rebind", receiver.rebindUdpSocket());
+                }
+            }
+            assertTrue(completed.await(5, TimeUnit.SECONDS));
+            // 写入旧Socket失败的数据包在新Socket上重试
+            assertEquals(count, sent.get());
+            assertEquals(port, receiver.getLocalPort());
+
+            final CountDownLatch latch = new CountDownLatch(1);
+            assertTrue(receiver.rebindUdpSocket());
+            receiver.subscribe(1, new OnUdpByteReceiveListener() {
+                @Override
+                public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                    latch.countDown();
+                }
+            });
+            sender.sendToTopic(1, "after");
+            assertTrue(mode + " receive after rebind", latch.await(5, TimeUnit.SECONDS));
+            assertTrue(received.get() > 0);
+        } finally {
+            sender.stopUdpSocket();
+            receiver.stopUdpSocket();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.eurigo.udpcore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 本机回环上的可靠通道测试，收发双方都模拟丢包，以及发送队列已满时不持有通道锁
+ */
+public class ReliableChannelTest {
+
+    private static final int MESSAGE_COUNT = 500;
+
+    private UdpEndpoint receiver;
+    private UdpEndpoint sender;
+    private final List<Integer> received = new ArrayList<>();
+    private CountDownLatch latch;
+
+    @Before
+    public void setUp() throws InterruptedException, SocketException {
+        latch = new CountDownLatch(MESSAGE_COUNT);
+        receiver = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        synchronized (received) {
+                            received.add(data.getInt());
+                        }
+                        latch.countDown();
+                    }
+                })
+                .build();
+        receiver.startUdpSocket();
+        sender = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .build();
+        sender.startUdpSocket();
+        Thread.sleep(100);
+    }
+
+    @After
+    public void tearDown() {
+        sender.stopUdpSocket();
+        receiver.stopUdpSocket();
+    }
+
+    @Test
+    public void deliversInOrderWithoutLoss() throws InterruptedException {
+        receiver.setReliableReceiveEnabled(true);
+        sendAll(sender.openReliableChannel("127.0.0.1", receiver.getLocalPort()));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertInOrder();
+        assertEquals(0, sender.getMetrics().getReliableFailures());
+    }
+
+    @Test
+    public void deliversInOrderUnderLoss() throws InterruptedException {
+        receiver.setReliableReceiveEnabled(true);
+        // 数据帧和确认帧各丢20%
+        sender.setSimulatedLossRate(0.2);
+        receiver.setSimulatedLossRate(0.2);
+        ReliableChannel channel = sender.openReliableChannel("127.0.0.1", receiver.getLocalPort());
+        sendAll(channel);
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertInOrder();
+        assertTrue(channel.getRetransmitCount() > 0);
+        assertEquals(0, sender.getMetrics().getReliableFailures());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (channel.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, channel.getPendingCount());
+    }
+
+    @Test
+    public void deliversRawPayloadWithoutOptIn() throws InterruptedException {
+        // 未开启可靠接收时，以0xF8开头的二进制消息按原样回调，也不回复确认
+        byte[] message = new byte[64];
+        ByteBuffer.wrap(message).put(Frames.RELIABLE).put(ReliableChannel.TYPE_DATA).putInt(1).putInt(7);
+        sender.setUdpHost("127.0.0.1");
+        sender.setUdpPort(receiver.getLocalPort());
+        sender.sendMessage(message);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (latch.getCount() == MESSAGE_COUNT && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        synchronized (received) {
+            assertEquals(1, received.size());
+            assertEquals(Frames.RELIABLE, (byte) (received.get(0) >>> 24));
+        }
+        assertEquals(0, sender.getMetrics().getPacketsIn());
+    }
+
+    @Test
+    public void releasesLockWhileSendQueueIsFull() throws Exception {
+        // 队列容量2，限速每秒1个数据报，发送线程阻塞在入队时不应持有通道锁
+        UdpEndpoint throttled = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setSendQueueCapacity(2)
+                .build();
+        throttled.setSendRateLimit(0, 0, 1, 1);
+        throttled.startUdpSocket();
+        final ReliableChannel channel = throttled.openReliableChannel("127.0.0.1", receiver.getLocalPort());
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 8; i++) {
+                    channel.send(new byte[]{(byte) i});
+                }
+            }
+        });
+        producer.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (producer.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(Thread.State.TIMED_WAITING, producer.getState());
+            assertTrue(CompletableFuture.supplyAsync(new Supplier<Integer>() {
+                @Override
+                public Integer get() {
+                    return channel.getPendingCount();
+                }
+            }).get(1, TimeUnit.SECONDS) > 0);
+        } finally {
+            throttled.stopUdpSocket();
+            producer.join(5000);
+        }
+    }
+
+    private void sendAll(ReliableChannel channel) {
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            byte[] message = new byte[64];
+            ByteBuffer.wrap(message).putInt(i);
+            assertEquals(SendStatus.QUEUED, channel.send(message));
+        }
+    }
+
+    private void assertInOrder() throws InterruptedException {
+        // 等待可能的重复回调
+        Thread.sleep(200);
+        synchronized (received) {
+            assertEquals(MESSAGE_COUNT, received.size());
+            for (int i = 0; i < MESSAGE_COUNT; i++) {
+                assertEquals(i, (int) received.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 可靠通道接收端测试：会话切换和乱序交付
+ */
+public class ReliableReceiverTest {
+
+    private static final InetSocketAddress SOURCE = new InetSocketAddress("127.0.0.1", 9090);
+
+    private final ReliableReceiver receiver = new ReliableReceiver(new UdpMetrics());
+    private final List<Integer> delivered = new ArrayList<>();
+    private final ReliableReceiver.Delivery delivery = new ReliableReceiver.Delivery() {
+        @Override
+        public void onPayload(ByteBuffer payload, InetSocketAddress source, long receiveNanos) {
+            delivered.add(payload.getInt());
+        }
+    };
+
+    @Test
+    public void deliversOutOfOrderFramesInOrder() {
+        assertNotNull(receiver.onData(frame(1, 0), SOURCE, 0, delivery));
+        assertNotNull(receiver.onData(frame(1, 2), SOURCE, 0, delivery));
+        assertEquals(1, delivered.size());
+        assertNotNull(receiver.onData(frame(1, 1), SOURCE, 0, delivery));
+        assertEquals(3, delivered.size());
+        for (int i = 0; i < delivered.size(); i++) {
+            assertEquals(i, (int) delivered.get(i));
+        }
+    }
+
+    @Test
+    public void ignoresUnknownSessionNotStartingAtZero() {
+        assertNotNull(receiver.onData(frame(1, 0), SOURCE, 0, delivery));
+        // 未知会话的残留重传不应重置当前会话
+        assertNull(receiver.onData(frame(2, 5), SOURCE, 0, delivery));
+        assertNotNull(receiver.onData(frame(1, 1), SOURCE, 0, delivery));
+        assertEquals(2, delivered.size());
+        // 新会话从0开始时重置
+        assertNotNull(receiver.onData(frame(3, 0), SOURCE, 0, delivery));
+        assertEquals(3, delivered.size());
+        assertEquals(0, (int) delivered.get(2));
+        // 旧会话的残留数据帧被忽略
+        assertNull(receiver.onData(frame(1, 2), SOURCE, 0, delivery));
+        assertEquals(3, delivered.size());
+    }
+
+    /**
+     * @return 数据帧，position位于会话ID，载荷为序号
+     */
+    private static ByteBuffer frame(int session, int seq) {
+        ByteBuffer frame = ByteBuffer.allocate(12);
+        frame.putInt(session).putInt(seq).putInt(seq);
+        frame.flip();
+        return frame;
+    }
+}
@@ -0,0 +1,60 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 多Socket接收测试：广播只回调一次，多个Socket分担的只有单播
+ */
+public class ShardedReceiverTest {
+
+    @Test
+    public void deliversBroadcastOnce() throws Exception {
+        final AtomicInteger broadcasts = new AtomicInteger();
+        final CountDownLatch marker = new CountDownLatch(1);
+        UdpEndpoint receiver = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setReceiveMode(ReceiveMode.SHARDED)
+                .setReceiveShardCount(4)
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        if (data.get(0) == 1) {
+                            broadcasts.incrementAndGet();
+                        } else {
+                            marker.countDown();
+                        }
+                    }
+                })
+                .build();
+        UdpEndpoint sender = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .build();
+        receiver.startUdpSocket();
+        sender.startUdpSocket();
+        try {
+            assertTrue(receiver.getReceiveShardCount() > 1);
+            sender.setUdpPort(receiver.getLocalPort());
+            // 回环网卡的广播地址，内核会复制给每个绑定通配地址的Socket
+            sender.setUdpHost("127.255.255.255");
+            sender.sendMessage(new byte[]{1});
+            // 同一发送线程按顺序发出，收到单播时广播已经分发完
+            sender.setUdpHost("127.0.0.1");
+            sender.sendMessage(new byte[]{2});
+            assertTrue(marker.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            assertEquals(1, broadcasts.get());
+        } finally {
+            sender.stopUdpSocket();
+            receiver.stopUdpSocket();
+        }
+    }
+}
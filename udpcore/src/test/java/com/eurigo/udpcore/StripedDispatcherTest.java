@@ -0,0 +1,152 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分组回调测试：同一来源按接收顺序回调，不同来源分散到多个线程，慢回调只阻塞所在分组
+ */
+public class StripedDispatcherTest {
+
+    private static final int SOURCES = 16;
+
+    @Test
+    public void keepsPerSourceOrderAcrossStripes() throws InterruptedException {
+        StripedDispatcher dispatcher = new StripedDispatcher(4, 4096);
+        dispatcher.start();
+        try {
+            int perSource = 1000;
+            final CountDownLatch latch = new CountDownLatch(SOURCES * perSource);
+            final List<List<Integer>> orders = new ArrayList<>();
+            final List<Set<String>> threads = new ArrayList<>();
+            for (int s = 0; s < SOURCES; s++) {
+                orders.add(new ArrayList<Integer>());
+                threads.add(new HashSet<String>());
+            }
+            // 与接收线程相同，单个线程交替分发各来源的消息
+            for (int i = 0; i < perSource; i++) {
+                for (int s = 0; s < SOURCES; s++) {
+                    final int source = s;
+                    final int seq = i;
+                    assertTrue(dispatcher.dispatch(source(s), new Runnable() {
+                        @Override
+                        public void run() {
+                            synchronized (orders) {
+                                orders.get(source).add(seq);
+                                threads.get(source).add(Thread.currentThread().getName());
+                            }
+                            latch.countDown();
+                        }
+                    }));
+                }
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Set<String> used = new HashSet<>();
+            synchronized (orders) {
+                for (int s = 0; s < SOURCES; s++) {
+                    List<Integer> order = orders.get(s);
+                    assertEquals(perSource, order.size());
+                    for (int i = 0; i < perSource; i++) {
+                        assertEquals(i, order.get(i).intValue());
+                    }
+                    // 同一来源固定在一个分组线程
+                    assertEquals(1, threads.get(s).size());
+                    used.addAll(threads.get(s));
+                }
+            }
+            assertTrue(used.size() > 1);
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void slowCallbackBlocksOnlyItsStripe() throws InterruptedException {
+        StripedDispatcher dispatcher = new StripedDispatcher(4, 64);
+        dispatcher.start();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final CountDownLatch entered = new CountDownLatch(1);
+            assertTrue(dispatcher.dispatch(source(0), new Runnable() {
+                @Override
+                public void run() {
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            final CountDownLatch other = new CountDownLatch(1);
+            for (int s = 1; s < SOURCES; s++) {
+                dispatcher.dispatch(source(s), new Runnable() {
+                    @Override
+                    public void run() {
+                        other.countDown();
+                    }
+                });
+            }
+            // 其他分组的来源在慢回调返回前就已回调
+            assertTrue(other.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void dropsWhenStripeQueueIsFull() throws InterruptedException {
+        StripedDispatcher dispatcher = new StripedDispatcher(1, 2);
+        dispatcher.start();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final CountDownLatch entered = new CountDownLatch(1);
+            assertTrue(dispatcher.dispatch(source(0), new Runnable() {
+                @Override
+                public void run() {
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            Runnable noop = new Runnable() {
+                @Override
+                public void run() {
+                }
+            };
+            assertTrue(dispatcher.dispatch(source(1), noop));
+            assertTrue(dispatcher.dispatch(source(2), noop));
+            assertFalse(dispatcher.dispatch(source(3), noop));
+        } finally {
+            release.countDown();
+            dispatcher.stop();
+        }
+        // 停止后不再接受回调
+        assertFalse(dispatcher.dispatch(source(0), new Runnable() {
+            @Override
+            public void run() {
+            }
+        }));
+    }
+
+    private static InetSocketAddress source(int index) {
+        return new InetSocketAddress("192.168.1." + (index + 1), 9090);
+    }
+}
@@ -0,0 +1,22 @@
+package com.eurigo.udpcore;
+
+import java.net.DatagramSocket;
+import java.net.SocketException;
+
+/**
+ * 测试用端口，端点的端口0表示默认端口，先由系统分配空闲端口，避免与其他测试或本机服务冲突
+ */
+final class TestPorts {
+
+    private TestPorts() {
+    }
+
+    static int free() throws SocketException {
+        DatagramSocket socket = new DatagramSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 令牌桶与限速测试：突发量、欠账等待、补充上限以及端点上的实际发送速率
+ */
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void allowsBurstThenPaces() {
+        // 每秒1000个令牌，即每毫秒1个，突发10个
+        TokenBucket bucket = new TokenBucket(1000, 10, 0);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, bucket.reserve(1, 0));
+        }
+        // 令牌用完后仍然扣除，等待时间按欠账递增，连续发送时均匀间隔
+        assertEquals(MILLISECOND, bucket.reserve(1, 0));
+        assertEquals(2 * MILLISECOND, bucket.reserve(1, 0));
+        // 等待后欠账还清
+        assertEquals(0, bucket.reserve(0, 2 * MILLISECOND));
+        assertEquals(MILLISECOND, bucket.reserve(1, 2 * MILLISECOND));
+    }
+
+    @Test
+    public void capsAccumulatedTokensAtBurst() {
+        TokenBucket bucket = new TokenBucket(1000, 10, 0);
+        // 空闲很久也只积累突发量
+        long now = 100 * SECOND;
+        assertEquals(0, bucket.reserve(10, now));
+        assertTrue(bucket.reserve(1, now) > 0);
+        // 只查询不扣除，超过突发量时按突发量等待，否则永远等不到
+        assertEquals(11 * MILLISECOND, bucket.delay(100, now));
+        assertEquals(11 * MILLISECOND, bucket.delay(100, now));
+    }
+
+    @Test
+    public void reservesLargeAmountsAgainstByteRate() {
+        // 每秒1MB，突发64KB
+        TokenBucket bucket = new TokenBucket(1024 * 1024, 64 * 1024, 0);
+        assertEquals(0, bucket.reserve(64 * 1024, 0));
+        long wait = bucket.reserve(1024 * 1024, 0);
+        assertTrue(Math.abs(wait - SECOND) <= 1);
+    }
+
+    @Test
+    public void pacerUsesLongestWait() {
+        Pacer pacer = new Pacer();
+        assertFalse(pacer.isEnabled());
+        DestinationCache.Destination a = destination(9090);
+        DestinationCache.Destination b = destination(9091);
+        // 全局每秒100包，每个目标每秒10包，突发均为1
+        pacer.setGlobalLimit(new Pacer.Limit(0, 0, 100, 1));
+        pacer.setDestinationLimit(new Pacer.Limit(0, 0, 10, 1));
+        assertTrue(pacer.isEnabled());
+        assertEquals(0, pacer.reserve(a, 100, 0));
+        // 目标的桶更慢
+        assertEquals(100 * MILLISECOND, pacer.reserve(a, 100, 0));
+        // 另一个目标只受全局限制，全局已欠2个包
+        assertEquals(20 * MILLISECOND, pacer.reserve(b, 100, 0));
+        // 不限速的参数等同于关闭
+        pacer.setGlobalLimit(new Pacer.Limit(0, 0, 0, 0));
+        pacer.setDestinationLimit(null);
+        assertFalse(pacer.isEnabled());
+    }
+
+    @Test
+    public void defersOnlyTheThrottledDestination() {
+        final Pacer pacer = new Pacer();
+        DestinationCache.Destination a = destination(9090);
+        DestinationCache.Destination b = destination(9091);
+        // 每个目标每秒10包，突发1包
+        pacer.setDestinationLimit(new Pacer.Limit(0, 0, 10, 1));
+        assertFalse(pacer.defer(a, task(1), 0));
+        pacer.reserveDestination(a, 16, 0);
+        // 令牌用完后进入等待队列，之后的消息排在后面
+        assertTrue(pacer.defer(a, task(2), 0));
+        assertTrue(pacer.defer(a, task(3), 0));
+        // 其他目标不受影响
+        assertFalse(pacer.defer(b, task(4), 0));
+        final List<Byte> sent = new ArrayList<>();
+        final long[] now = new long[1];
+        Pacer.Output output = new Pacer.Output() {
+            @Override
+            public void send(DestinationCache.Destination destination, UdpSender.SendTask task) {
+                sent.add(task.data[0]);
+                pacer.reserveDestination(destination, task.data.length, now[0]);
+            }
+        };
+        assertEquals(100 * MILLISECOND, pacer.flushReady(0, output));
+        assertTrue(sent.isEmpty());
+        now[0] = 100 * MILLISECOND;
+        // 发出一条后令牌用完，剩下的消息再等一个间隔
+        assertEquals(100 * MILLISECOND, pacer.flushReady(now[0], output));
+        assertEquals("[2]", sent.toString());
+        final List<SendResult.Status> results = new ArrayList<>();
+        assertTrue(pacer.defer(a, new UdpSender.SendTask(new byte[]{5}, "127.0.0.1", 9090,
+                SendPriority.NORMAL, new OnSendCompleteListener() {
+            @Override
+            public void onComplete(SendResult result) {
+                results.add(result.getStatus());
+            }
+        }), now[0]));
+        assertEquals(2, pacer.dropAll());
+        assertEquals("[DROPPED]", results.toString());
+        assertEquals(Long.MAX_VALUE, pacer.flushReady(now[0], output));
+    }
+
+    @Test
+    public void throttledDestinationDoesNotDelayOthers() throws Exception {
+        final CountDownLatch slow = new CountDownLatch(25);
+        final CountDownLatch urgent = new CountDownLatch(5);
+        final CountDownLatch fast = new CountDownLatch(1);
+        UdpEndpoint slowReceiver = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        if (data.get(0) == 1) {
+                            urgent.countDown();
+                        }
+                        slow.countDown();
+                    }
+                })
+                .build();
+        UdpEndpoint fastReceiver = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        fast.countDown();
+                    }
+                })
+                .build();
+        // 每个目标每秒20包，突发1包，发往慢目标的20包至少需要950毫秒
+        UdpEndpoint sender = new UdpEndpoint.Builder()
+                .setHost("127.0.0.1")
+                .setPort(TestPorts.free())
+                .build();
+        sender.setDestinationRateLimit(0, 0, 20, 1);
+        slowReceiver.startUdpSocket();
+        fastReceiver.startUdpSocket();
+        sender.startUdpSocket();
+        try {
+            long start = System.nanoTime();
+            sender.setUdpPort(slowReceiver.getLocalPort());
+            for (int i = 0; i < 20; i++) {
+                sender.sendMessage(new byte[16]);
+            }
+            // 紧急消息不排在等待令牌的消息之后
+            for (int i = 0; i < 5; i++) {
+                sender.sendMessage(new byte[]{1}, SendPriority.URGENT);
+            }
+            // 另一个目标有自己的令牌，不排在慢目标之后
+            sender.setUdpPort(fastReceiver.getLocalPort());
+            sender.sendMessage(new byte[16]);
+            assertTrue(fast.await(5, TimeUnit.SECONDS));
+            assertTrue(urgent.await(5, TimeUnit.SECONDS));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+            assertTrue(slow.await(5, TimeUnit.SECONDS));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 900);
+        } finally {
+            sender.stopUdpSocket();
+            slowReceiver.stopUdpSocket();
+            fastReceiver.stopUdpSocket();
+        }
+    }
+
+    @Test
+    public void defaultsBurstToHundredMilliseconds() {
+        Pacer.Limit limit = new Pacer.Limit(100_000, 0, 50, 0);
+        assertEquals(10_000, limit.burstBytes);
+        assertEquals(5, limit.burstPackets);
+        // 速率很低时至少允许一个
+        assertEquals(1, new Pacer.Limit(0, 0, 5, 0).burstPackets);
+    }
+
+    @Test
+    public void pacesEndpointSends() throws Exception {
+        int count = 60;
+        final CountDownLatch latch = new CountDownLatch(count);
+        UdpEndpoint receiver = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        latch.countDown();
+                    }
+                })
+                .build();
+        // 每秒100包，默认突发10包，其余50包至少需要500毫秒
+        UdpEndpoint sender = new UdpEndpoint.Builder()
+                .setHost("127.0.0.1")
+                .setPort(TestPorts.free())
+                .setSendRateLimit(0, 100)
+                .build();
+        receiver.startUdpSocket();
+        sender.startUdpSocket();
+        try {
+            sender.setUdpPort(receiver.getLocalPort());
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sender.sendMessage(new byte[16]);
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis >= 450);
+            assertTrue(elapsedMillis < 3000);
+        } finally {
+            sender.stopUdpSocket();
+            receiver.stopUdpSocket();
+        }
+    }
+
+    private static UdpSender.SendTask task(int id) {
+        return new UdpSender.SendTask(new byte[]{(byte) id}, "127.0.0.1", 9090, SendPriority.NORMAL, null);
+    }
+
+    private static DestinationCache.Destination destination(int port) {
+        return new DestinationCache.Destination("127.0.0.1", port, new InetSocketAddress("127.0.0.1", port));
+    }
+}
@@ -0,0 +1,142 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 主题路由测试：路由表查找、订阅增删、来源过滤以及端点上的主题分发
+ */
+public class TopicRouterTest {
+
+    private static final OnUdpByteReceiveListener NOOP = new OnUdpByteReceiveListener() {
+        @Override
+        public void onReceived(ByteBuffer data, InetSocketAddress source) {
+        }
+    };
+
+    @Test
+    public void routesEveryTopic() {
+        TopicRouter router = new TopicRouter();
+        assertNull(router.route(1));
+        List<TopicSubscription> subscriptions = new ArrayList<>();
+        // 间隔取值的主题，哈希后存在冲突
+        for (int topic = 0; topic <= TopicRouter.MAX_TOPIC; topic += 97) {
+            TopicSubscription subscription = new TopicSubscription(router, topic, null, NOOP);
+            router.add(subscription);
+            subscriptions.add(subscription);
+        }
+        for (TopicSubscription subscription : subscriptions) {
+            TopicSubscription[] routed = router.route(subscription.getTopic());
+            assertEquals(1, routed.length);
+            assertTrue(routed[0] == subscription);
+        }
+        assertNull(router.route(1));
+        assertNull(router.route(TopicRouter.MAX_TOPIC));
+    }
+
+    @Test
+    public void addsAndRemovesSubscribers() {
+        TopicRouter router = new TopicRouter();
+        TopicSubscription first = new TopicSubscription(router, 7, null, NOOP);
+        TopicSubscription second = new TopicSubscription(router, 7, null, NOOP);
+        router.add(first);
+        router.add(second);
+        assertEquals(2, router.route(7).length);
+        first.cancel();
+        assertFalse(first.isActive());
+        assertEquals(1, router.route(7).length);
+        assertTrue(router.route(7)[0] == second);
+        // 重复取消没有影响
+        first.cancel();
+        second.cancel();
+        assertNull(router.route(7));
+    }
+
+    @Test
+    public void filtersBySource() {
+        TopicRouter router = new TopicRouter();
+        InetSocketAddress source = new InetSocketAddress("127.0.0.1", 9090);
+        InetSocketAddress other = new InetSocketAddress("127.0.0.2", 9090);
+        assertTrue(new TopicSubscription(router, 1, null, NOOP).accepts(source));
+        // 端口为0时匹配任意端口
+        TopicSubscription anyPort = new TopicSubscription(router, 1, new InetSocketAddress("127.0.0.1", 0), NOOP);
+        assertTrue(anyPort.accepts(source));
+        assertTrue(anyPort.accepts(new InetSocketAddress("127.0.0.1", 9091)));
+        assertFalse(anyPort.accepts(other));
+        TopicSubscription exact = new TopicSubscription(router, 1, source, NOOP);
+        assertTrue(exact.accepts(source));
+        assertFalse(exact.accepts(new InetSocketAddress("127.0.0.1", 9091)));
+    }
+
+    @Test
+    public void dispatchesTopicsOnEndpoint() throws Exception {
+        final List<String> events = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(2);
+        UdpEndpoint receiver = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        record(events, "global", data);
+                    }
+                })
+                .build();
+        receiver.subscribe(1, recorder(events, "first", latch));
+        receiver.subscribe(1, recorder(events, "second", latch));
+        // 来源不匹配的订阅
+        receiver.subscribe(2, new InetSocketAddress("127.0.0.2", 0), recorder(events, "filtered", latch));
+        UdpEndpoint sender = new UdpEndpoint.Builder()
+                .setHost("127.0.0.1")
+                .setPort(TestPorts.free())
+                .build();
+        receiver.startUdpSocket();
+        sender.startUdpSocket();
+        try {
+            sender.setUdpPort(receiver.getLocalPort());
+            sender.sendToTopic(2, "b");
+            sender.sendToTopic(3, "c");
+            sender.sendToTopic(1, "a");
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            synchronized (events) {
+                assertEquals(2, events.size());
+                assertTrue(events.contains("first:a"));
+                assertTrue(events.contains("second:a"));
+            }
+            assertEquals(2, receiver.getMetrics().getUnroutedMessages());
+        } finally {
+            sender.stopUdpSocket();
+            receiver.stopUdpSocket();
+        }
+    }
+
+    private static OnUdpByteReceiveListener recorder(final List<String> events, final String name,
+                                                     final CountDownLatch latch) {
+        return new OnUdpByteReceiveListener() {
+            @Override
+            public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                record(events, name, data);
+                latch.countDown();
+            }
+        };
+    }
+
+    private static void record(List<String> events, String name, ByteBuffer data) {
+        byte[] message = new byte[data.remaining()];
+        data.get(message);
+        synchronized (events) {
+            events.add(name + ":" + new String(message));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.BindException;
+import java.net.DatagramSocket;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 端点启动测试：多个线程同时首次打开UDP时只绑定一次，停止后端口全部释放
+ */
+public class UdpEndpointTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void startsOnceUnderConcurrentCalls() throws Exception {
+        for (int round = 0; round < 10; round++) {
+            int port = TestPorts.free();
+            final UdpEndpoint endpoint = new UdpEndpoint.Builder().setPort(port).build();
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread[] threads = new Thread[THREADS];
+            for (int i = 0; i < THREADS; i++) {
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        endpoint.startUdpSocket();
+                    }
+                });
+                threads[i].start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            endpoint.stopUdpSocket();
+            assertPortReleased(port);
+        }
+    }
+
+    /**
+     * 重复打开时泄漏的Socket一直占用端口，不开启SO_REUSEADDR的绑定会失败。
+     * 接收线程阻塞在receive时JDK会推迟释放文件描述符，因此短暂重试
+     */
+    private static void assertPortReleased(int port) throws Exception {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (true) {
+            try {
+                new DatagramSocket(port).close();
+                return;
+            } catch (BindException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.eurigo.udpcore;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 发送线程测试：完成回调、队列策略、优先级队列的取出顺序、DSCP标记以及停止时的回调
+ */
+public class UdpSenderTest {
+
+    private static final UdpThreadFactory THREAD_FACTORY = new UdpThreadFactory("UdpSenderTest");
+
+    /**
+     * 直接回调发送成功，记录发送顺序
+     */
+    private static class RecordingTransport implements UdpSender.Transport {
+        final List<byte[]> sent = new ArrayList<>();
+        volatile int pending;
+
+        @Override
+        public synchronized void send(UdpSender.SendTask task) {
+            sent.add(task.data);
+            task.complete(SendResult.SENT);
+        }
+
+        @Override
+        public long flush(long now) {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int dropPending() {
+            return pending;
+        }
+    }
+
+    @Test
+    public void completesEveryMessageInOrder() throws InterruptedException {
+        RecordingTransport transport = new RecordingTransport();
+        UdpSender sender = new UdpSender(16, OverflowPolicy.BLOCK, transport);
+        sender.start(THREAD_FACTORY);
+        int count = 1000;
+        final CountDownLatch latch = new CountDownLatch(count);
+        OnSendCompleteListener listener = new OnSendCompleteListener() {
+            @Override
+            public void onComplete(SendResult result) {
+                if (result.isSent()) {
+                    latch.countDown();
+                }
+            }
+        };
+        for (int i = 0; i < count; i++) {
+            assertEquals(SendStatus.QUEUED, sender.offer(new byte[]{(byte) i}, "127.0.0.1", 9090,
+                    SendPriority.NORMAL, listener));
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        sender.stop();
+        synchronized (transport) {
+            for (int i = 0; i < count; i++) {
+                assertEquals((byte) i, transport.sent.get(i)[0]);
+            }
+        }
+    }
+
+    @Test
+    public void completesDroppedWhenQueueOverflows() throws InterruptedException {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        UdpSender sender = new UdpSender(4, OverflowPolicy.DROP_OLDEST, new RecordingTransport() {
+            @Override
+            public void send(UdpSender.SendTask task) {
+                entered.countDown();
+                try {
+                    // 发送线程阻塞在第一条消息，后续消息留在队列中
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(task);
+            }
+        });
+        sender.start(THREAD_FACTORY);
+        final Map<SendResult.Status, AtomicInteger> results = new ConcurrentHashMap<>();
+        final CountDownLatch latch = new CountDownLatch(7);
+        OnSendCompleteListener listener = new OnSendCompleteListener() {
+            @Override
+            public void onComplete(SendResult result) {
+                results.putIfAbsent(result.getStatus(), new AtomicInteger());
+                results.get(result.getStatus()).incrementAndGet();
+                latch.countDown();
+            }
+        };
+        sender.offer(new byte[1], "127.0.0.1", 9090, SendPriority.NORMAL, listener);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 6; i++) {
+            assertEquals(SendStatus.QUEUED, sender.offer(new byte[1], "127.0.0.1", 9090,
+                    SendPriority.NORMAL, listener));
+        }
+        // 队列容量为4，最早的2条被丢弃
+        assertEquals(2, results.get(SendResult.Status.DROPPED).get());
+        release.countDown();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(5, results.get(SendResult.Status.SENT).get());
+        sender.stop();
+        assertEquals(2, sender.getDroppedCount());
+    }
+
+    @Test
+    public void urgentDrainsAheadOfFullBulkLane() throws InterruptedException {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RecordingTransport transport = blockingOnFirst(entered, release);
+        UdpSender sender = new UdpSender(4, OverflowPolicy.FAIL_FAST, transport);
+        sender.start(THREAD_FACTORY);
+        final CountDownLatch latch = new CountDownLatch(6);
+        OnSendCompleteListener listener = countDown(latch);
+        sender.offer(new byte[]{0}, "127.0.0.1", 9090, SendPriority.BULK, listener);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        // 批量队列已满，紧急消息仍可入队
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(SendStatus.QUEUED, sender.offer(new byte[]{(byte) i}, "127.0.0.1", 9090,
+                    SendPriority.BULK, listener));
+        }
+        assertEquals(SendStatus.REJECTED, sender.offer(new byte[]{5}, "127.0.0.1", 9090,
+                SendPriority.BULK, listener));
+        assertEquals(SendStatus.QUEUED, sender.offer(new byte[]{-1}, "127.0.0.1", 9090,
+                SendPriority.URGENT, listener));
+        assertEquals(4, sender.getQueueSize(SendPriority.BULK));
+        assertEquals(1, sender.getQueueSize(SendPriority.URGENT));
+        release.countDown();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        sender.stop();
+        // 正在发送的批量消息之后紧接着发送紧急消息
+        assertEquals("[0, -1, 1, 2, 3, 4]", firstBytes(transport));
+    }
+
+    @Test
+    public void weightedLanesDoNotStarveBulk() throws InterruptedException {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RecordingTransport transport = blockingOnFirst(entered, release);
+        UdpSender sender = new UdpSender(8, OverflowPolicy.FAIL_FAST, transport);
+        sender.setWeights(new int[]{4, 2, 1});
+        sender.start(THREAD_FACTORY);
+        final CountDownLatch latch = new CountDownLatch(9);
+        OnSendCompleteListener listener = countDown(latch);
+        sender.offer(new byte[]{0}, "127.0.0.1", 9090, SendPriority.NORMAL, listener);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 4; i++) {
+            sender.offer(new byte[]{(byte) i}, "127.0.0.1", 9090, SendPriority.NORMAL, listener);
+            sender.offer(new byte[]{(byte) (10 + i)}, "127.0.0.1", 9090, SendPriority.BULK, listener);
+        }
+        release.countDown();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        sender.stop();
+        // 每批按权重取出：普通2条、批量1条，批量消息不会等到普通队列清空
+        assertEquals("[0, 1, 2, 11, 3, 4, 12, 13, 14]", firstBytes(transport));
+    }
+
+    @Test
+    public void mapsPrioritiesToDscp() {
+        // IP_TOS的高6位为DSCP
+        assertEquals(46, SendPriority.URGENT.getTrafficClass() >> 2);
+        assertEquals(0, SendPriority.NORMAL.getTrafficClass() >> 2);
+        assertEquals(8, SendPriority.BULK.getTrafficClass() >> 2);
+        for (SendPriority priority : SendPriority.values()) {
+            // ECN位保持为0
+            assertEquals(0, priority.getTrafficClass() & 0x03);
+        }
+    }
+
+    @Test
+    public void deliversMarkedPrioritiesInEveryMode() throws Exception {
+        for (ReceiveMode mode : ReceiveMode.values()) {
+            deliversMarkedPriorities(mode);
+        }
+    }
+
+    private void deliversMarkedPriorities(ReceiveMode mode) throws Exception {
+        SendPriority[] priorities = SendPriority.values();
+        int count = 300;
+        final CountDownLatch latch = new CountDownLatch(count);
+        UdpEndpoint receiver = new UdpEndpoint.Builder()
+                .setPort(TestPorts.free())
+                .setByteReceiveListener(new OnUdpByteReceiveListener() {
+                    @Override
+                    public void onReceived(ByteBuffer data, InetSocketAddress source) {
+                        latch.countDown();
+                    }
+                })
+                .build();
+        UdpEndpoint sender = new UdpEndpoint.Builder()
+                .setHost("127.0.0.1")
+                .setPort(TestPorts.free())
+                .setReceiveMode(mode)
+                .setTrafficClassMarkingEnabled(true)
+                .build();
+        receiver.startUdpSocket();
+        sender.startUdpSocket();
+        try {
+            sender.setUdpPort(receiver.getLocalPort());
+            final AtomicInteger sent = new AtomicInteger();
+            final CountDownLatch completed = new CountDownLatch(count);
+            OnSendCompleteListener callback = new OnSendCompleteListener() {
+                @Override
+                public void onComplete(SendResult result) {
+                    if (result.isSent()) {
+                        sent.incrementAndGet();
+                    }
+                    completed.countDown();
+                }
+            };
+            for (int i = 0; i < count; i++) {
+                // 每个数据包的IP_TOS都与上一个不同
+                sender.sendMessageAsync(new byte[]{(byte) i}, priorities[i % priorities.length], callback);
+                if (i % 50 == 0) {
+                    Thread.sleep(1);
+                }
+            }
+            assertTrue(mode + " completed", completed.await(5, TimeUnit.SECONDS));
+            assertEquals(mode + " sent", count, sent.get());
+            assertTrue(mode + " received", latch.await(5, TimeUnit.SECONDS));
+        } finally {
+            sender.stopUdpSocket();
+            receiver.stopUdpSocket();
+        }
+    }
+
+    /**
+     * 发送线程阻塞在第一条消息，之后入队的消息在放行后按取出顺序发送
+     */
+    private static RecordingTransport blockingOnFirst(final CountDownLatch entered, final CountDownLatch release) {
+        return new RecordingTransport() {
+            @Override
+            public void send(UdpSender.SendTask task) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(task);
+            }
+        };
+    }
+
+    private static OnSendCompleteListener countDown(final CountDownLatch latch) {
+        return new OnSendCompleteListener() {
+            @Override
+            public void onComplete(SendResult result) {
+                if (result.isSent()) {
+                    latch.countDown();
+                }
+            }
+        };
+    }
+
+    private static String firstBytes(RecordingTransport transport) {
+        List<Byte> bytes = new ArrayList<>();
+        synchronized (transport) {
+            for (byte[] data : transport.sent) {
+                bytes.add(data[0]);
+            }
+        }
+        return bytes.toString();
+    }
+
+    @Test
+    public void countsPendingDataDroppedOnStop() {
+        RecordingTransport transport = new RecordingTransport();
+        transport.pending = 3;
+        UdpSender sender = new UdpSender(16, OverflowPolicy.BLOCK, transport);
+        sender.start(THREAD_FACTORY);
+        // stop()等待发送线程退出，退出前丢弃的延迟数据已计入
+        sender.stop();
+        assertEquals(3, sender.getDroppedCount());
+    }
+
+    @Test
+    public void blockDropsInsteadOfWaitingOnSenderThread() throws InterruptedException {
+        RecordingTransport transport = new RecordingTransport();
+        final UdpSender sender = new UdpSender(4, OverflowPolicy.BLOCK, transport);
+        sender.start(THREAD_FACTORY);
+        final List<SendStatus> statuses = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(4);
+        final OnSendCompleteListener listener = countDown(latch);
+        sender.offer(new byte[]{0}, "127.0.0.1", 9090, SendPriority.NORMAL, new OnSendCompleteListener() {
+            @Override
+            public void onComplete(SendResult result) {
+                // 在发送线程中填满队列，只有本线程能腾出空位
+                for (int i = 1; i <= 5; i++) {
+                    statuses.add(sender.offer(new byte[]{(byte) i}, "127.0.0.1", 9090,
+                            SendPriority.NORMAL, listener));
+                }
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        sender.stop();
+        assertEquals("[QUEUED, QUEUED, QUEUED, QUEUED, DROPPED]", statuses.toString());
+        assertEquals(1, sender.getDroppedCount());
+        assertEquals("[0, 1, 2, 3, 4]", firstBytes(transport));
+    }
+
+    @Test
+    public void completesMessagesQueuedWhileStopping() throws InterruptedException {
+        for (int round = 0; round < 50; round++) {
+            final UdpSender sender = new UdpSender(64, OverflowPolicy.DROP_NEWEST, new RecordingTransport());
+            sender.start(THREAD_FACTORY);
+            final AtomicInteger queued = new AtomicInteger();
+            final AtomicInteger completed = new AtomicInteger();
+            final AtomicBoolean isProducing = new AtomicBoolean(true);
+            final OnSendCompleteListener listener = new OnSendCompleteListener() {
+                @Override
+                public void onComplete(SendResult result) {
+                    completed.incrementAndGet();
+                }
+            };
+            Thread[] producers = new Thread[4];
+            for (int i = 0; i < producers.length; i++) {
+                producers[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        while (isProducing.get()) {
+                            if (sender.offer(new byte[1], "127.0.0.1", 9090, SendPriority.NORMAL, listener)
+                                    == SendStatus.QUEUED) {
+                                queued.incrementAndGet();
+                            }
+                        }
+                    }
+                });
+                producers[i].start();
+            }
+            Thread.sleep(2);
+            sender.stop();
+            isProducing.set(false);
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            // 停止后入队的消息同样回调丢弃
+            assertEquals(queued.get(), completed.get());
+        }
+    }
+}
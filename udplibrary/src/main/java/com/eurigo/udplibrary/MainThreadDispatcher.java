@@ -0,0 +1,111 @@
+package com.eurigo.udplibrary;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.eurigo.udpcore.UdpDispatcher;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Eurigo
+ * desc   : 在主线程中批量执行接收回调。接收线程只入队，队列从空变为非空时才向主线程post一次，
+ * 主线程一次执行积压的所有回调，不再每个数据包一次runOnUiThread；
+ * 单次执行超过时间预算时让出主线程，剩余的回调下一次继续执行，所有回调按接收顺序执行
+ */
+public class MainThreadDispatcher implements UdpDispatcher {
+
+    /**
+     * 默认积压上限，超过后丢弃新的回调
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+    /**
+     * 单次在主线程中执行的时间预算，约半帧
+     */
+    private static final long BATCH_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ConcurrentLinkedQueue<Runnable> mPending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mSize = new AtomicInteger();
+    private final AtomicBoolean isScheduled = new AtomicBoolean();
+    private final int mCapacity;
+    private volatile boolean isRunning;
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            // 先清除标记再执行，执行期间入队的回调会触发新的post，不会遗漏
+            isScheduled.set(false);
+            long deadline = System.nanoTime() + BATCH_BUDGET_NANOS;
+            Runnable callback;
+            while (isRunning && (callback = mPending.poll()) != null) {
+                mSize.decrementAndGet();
+                try {
+                    callback.run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    if (!mPending.isEmpty()) {
+                        schedule();
+                    }
+                    return;
+                }
+            }
+        }
+    };
+
+    public MainThreadDispatcher() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 积压上限，主线程繁忙时超过上限的回调被丢弃
+     */
+    public MainThreadDispatcher(int capacity) {
+        this.mCapacity = Math.max(1, capacity);
+    }
+
+    @Override
+    public boolean isInline() {
+        return false;
+    }
+
+    @Override
+    public void start() {
+        isRunning = true;
+    }
+
+    @Override
+    public boolean dispatch(InetSocketAddress source, Runnable callback) {
+        if (!isRunning) {
+            return false;
+        }
+        if (mSize.incrementAndGet() > mCapacity) {
+            mSize.decrementAndGet();
+            return false;
+        }
+        mPending.add(callback);
+        schedule();
+        return true;
+    }
+
+    private void schedule() {
+        if (isScheduled.compareAndSet(false, true)) {
+            mHandler.post(mDrain);
+        }
+    }
+
+    @Override
+    public void stop() {
+        isRunning = false;
+        mHandler.removeCallbacks(mDrain);
+        isScheduled.set(false);
+        mPending.clear();
+        mSize.set(0);
+    }
+}